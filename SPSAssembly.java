@@ -0,0 +1,149 @@
+package SPS1620;
+
+/*
+ *  SPSAssembly.java - embeddable interface, assembles programs held in memory and returns the results
+ *
+ *  IBM 1620 Jr Project, Computer History Museum, 2017-2024
+ *
+ *  To recreate the experience (visual, auditory, tactile, visceral) of running historic software on a 1960s-era computer.
+ *
+ *   Dave Babcock     - project lead, software, library
+ *   John M. Bohn Jr. - software
+ *   David Brock      - CHM sponsor
+ *   Steve Casner     - hardware, software
+ *   Joe Fredrick     - hardware, firmware
+ *   Len Shustek      - CHM advisor
+ *   Dag Spicer       - CHM advisor
+ *   David Wise       - IBM 1620 expert
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/*
+ *  Usage:   SPSAssembly result = SPSAssembly.Assemble("PROG", source, "-cmem", "-nowarn");
+ *
+ *  The options are the normal command line options; -lst, -cmem, -crd, -pt, and -img select which outputs are
+ *  kept, but nothing is read from or written to disk and the JVM is never exited.  Every call runs in
+ *  its own SPSContext, so calls may be made from any number of threads at once.  Cards gives the card
+ *  deck of the memory image one card at a time (see SPSCardDeck), whether or not -crd was given, or null
+ *  after errors, when no crd file would be written.
+ */
+
+public class SPSAssembly {
+
+	// Data
+
+	public boolean Completed;
+	public int Lines;
+	public int Errors;
+	public int Warnings;
+	public SPSMemory Memory;
+	public Map<String, SPSSymbol> Symbols;
+	public List<String> Diagnostics;
+	public String Console;
+	public byte[] Lst;
+	public byte[] Cmem;
+	public byte[] Crd;
+	public byte[] Pt;
+	public byte[] Img;
+
+	// Constructor
+
+	private SPSAssembly(SPSContext ctx, boolean completed, ByteArrayOutputStream console) {
+		this.Completed = completed;
+		this.Lines = ctx.lineCount;
+		this.Errors = ctx.errorCount;
+		this.Warnings = ctx.warningCount;
+		this.Memory = ctx.memory;
+		this.Symbols = ctx.symbolTable.ToMap();
+		this.Diagnostics = ctx.diagnostics;
+		this.Console = console.toString();
+		this.Lst = (ctx.lstBuffer != null) ? ctx.lstBuffer.toByteArray() : null;
+		this.Cmem = (ctx.cmemBuffer != null) ? ctx.cmemBuffer.toByteArray() : null;
+		this.Crd = (ctx.crdBuffer != null) ? ctx.crdBuffer.toByteArray() : null;
+		this.Pt = (ctx.ptBuffer != null) ? ctx.ptBuffer.toByteArray() : null;
+		this.Img = (ctx.imgBuffer != null) ? ctx.imgBuffer.toByteArray() : null;
+	}
+
+	// Methods
+
+	public static SPSAssembly Assemble(String name, String source, String... options) {
+		return Assemble(new String[]{name}, new String[]{source}, options);
+	}
+
+	public static SPSAssembly Assemble(String name, InputStream source, String... options) {
+		return Assemble(new String[]{name}, new InputStream[]{source}, options);
+	}
+
+	public static SPSAssembly Assemble(String[] names, InputStream[] sources, String... options) {
+		String[] texts = new String[sources.length];
+
+		for (int i = 0; i < sources.length; ++i) {
+			try {
+				texts[i] = new String(sources[i].readAllBytes(), Charset.defaultCharset());
+			} catch (IOException e) {
+				SPSContext ctx = NewContext();
+				ByteArrayOutputStream console = new ByteArrayOutputStream();
+				ctx.console = new PrintStream(console, true);
+				SPSOutput.ReportError(ctx, "cannot read source (" + names[i] + ")");
+				return new SPSAssembly(ctx, false, console);
+			}
+		}
+
+		return Assemble(names, texts, options);
+	}
+
+	public static SPSAssembly Assemble(String[] names, String[] sources, String... options) {
+		SPSContext ctx = NewContext();
+		ByteArrayOutputStream console = new ByteArrayOutputStream();
+		List<String> args = new ArrayList<String>(Arrays.asList(options));
+		boolean completed = false;
+
+		ctx.console = new PrintStream(console, true);
+		args.addAll(Arrays.asList(names));
+
+		try {
+			if (names.length != sources.length) {
+				SPSOutput.ReportError(ctx, "number of source names and sources differ");
+			} else if (!SPSMain.ParseCommandLine(ctx, args.toArray(new String[0]))) {
+				// -help or an invalid option, already reported
+			} else if (ctx.batchOption || ctx.serverOption) {
+				SPSOutput.ReportError(ctx, "batch and server options not allowed in an embedded assembly");
+			} else if (ctx.sourceFileCount != names.length) {
+				SPSOutput.ReportError(ctx, "source files not allowed in the options of an embedded assembly");
+			} else {
+				ctx.sourceTexts = sources;
+				completed = SPSMain.Assemble(ctx);
+			}
+		} catch (RuntimeException e) {
+			ctx.console.println("*** Error: internal error (" + e + ")");
+			ctx.diagnostics.add("Error: internal error (" + e + ")");
+		}
+		ctx.console.flush();
+
+		return new SPSAssembly(ctx, completed, console);
+	}
+
+	public Iterator<String> Cards() {
+		if (!Completed || (Errors != 0) || (Memory == null)) return null;
+		return new SPSCardDeck(Memory);
+	}
+
+	private static SPSContext NewContext() {
+		SPSStatement.Initialize();
+
+		SPSContext ctx = new SPSContext();
+		ctx.diagnostics = new ArrayList<String>();
+		ctx.outputBuffers = true;
+		return ctx;
+	}
+}
@@ -0,0 +1,202 @@
+package SPS1620;
+
+/*
+ *  SPSBatch.java - batch assembly of many independent programs in one JVM
+ *
+ *  IBM 1620 Jr Project, Computer History Museum, 2017-2024
+ *
+ *  To recreate the experience (visual, auditory, tactile, visceral) of running historic software on a 1960s-era computer.
+ *
+ *   Dave Babcock     - project lead, software, library
+ *   John M. Bohn Jr. - software
+ *   David Brock      - CHM sponsor
+ *   Steve Casner     - hardware, software
+ *   Joe Fredrick     - hardware, firmware
+ *   Len Shustek      - CHM advisor
+ *   Dag Spicer       - CHM advisor
+ *   David Wise       - IBM 1620 expert
+ */
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ *  Each batch job is one program: the command line options act as defaults and are followed by the
+ *  job's own options and source file(s), exactly as they would be given to a single assembly.  Jobs
+ *  run on a fixed pool of worker threads, each with its own SPSContext, and their console output is
+ *  replayed in job order once they finish.
+ */
+
+public class SPSBatch implements Runnable {
+
+	// Data
+
+	public int Number;
+	public String Program;
+	public String[] Args;
+	public String Status;
+	public int Lines;
+	public int Errors;
+	public int Warnings;
+	public long Time;
+
+	private SPSContext defaults;
+	private ByteArrayOutputStream console = new ByteArrayOutputStream();
+
+	// Constructor
+
+	public SPSBatch(SPSContext defaults, int number, String[] args) {
+		this.Number = number;
+		this.Program = "<none>";
+		this.Args = args;
+		this.Status = "waiting";
+		this.defaults = defaults;
+
+		for (String arg: args) {
+			if ((arg.length() > 0) && (arg.charAt(0) != '-')) {
+				this.Program = arg.endsWith(".sps") ? arg : arg + ".sps";
+				break;
+			}
+		}
+	}
+
+	// Methods
+
+	public static boolean Run(SPSContext defaults) {
+		List<SPSBatch> jobs = ReadJobs(defaults);
+		List<Future<?>> results = new ArrayList<Future<?>>();
+		boolean ok = true;
+
+		if (jobs == null) return false;
+		if (jobs.isEmpty()) {
+			SPSOutput.ReportError(defaults, "no programs in batch");
+			return false;
+		}
+
+		int workers = (defaults.batchJobs > 0) ? defaults.batchJobs : Runtime.getRuntime().availableProcessors();
+		workers = Math.max(1, Math.min(workers, jobs.size()));
+
+		long start = System.nanoTime();
+		ExecutorService pool = Executors.newFixedThreadPool(workers);
+		for (SPSBatch job: jobs) {
+			results.add(pool.submit(job));
+		}
+
+		for (int i = 0; i < jobs.size(); ++i) {
+			SPSBatch job = jobs.get(i);
+			try {
+				results.get(i).get();
+			} catch (InterruptedException | ExecutionException e) {
+				job.Status = "failed";
+			}
+			System.out.println("\n  ------ " + job.Number + ": " + job.Program + " --------------------------------------------------");
+			System.out.print(job.console.toString());
+			if (!job.Status.equals("ok") && !job.Status.equals("errors")) ok = false;
+		}
+		pool.shutdown();
+		long elapsed = (System.nanoTime() - start) / 1000000L;
+
+		String summary = Summary(jobs, workers, elapsed);
+		System.out.print(summary);
+
+		if (defaults.batchSummary != null) {
+			try (PrintWriter writer = new PrintWriter(defaults.batchSummary)) {
+				writer.write(summary);
+			} catch (IOException e) {
+				SPSOutput.ReportError(defaults, "cannot create summary file (" + defaults.batchSummary + ")");
+				ok = false;
+			}
+		}
+
+		return ok;
+	}
+
+	private static List<SPSBatch> ReadJobs(SPSContext defaults) {
+		List<SPSBatch> jobs = new ArrayList<SPSBatch>();
+
+		for (String program: defaults.batchPrograms) {
+			jobs.add(new SPSBatch(defaults, jobs.size() + 1, new String[]{program}));
+		}
+
+		if (defaults.batchManifest != null) {
+			try (BufferedReader reader = new BufferedReader(new FileReader(defaults.batchManifest))) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					line = SPSUtility.Trim(line);
+					if (SPSUtility.IsEmpty(line) || (line.charAt(0) == '#') || (line.charAt(0) == '*')) continue;
+					jobs.add(new SPSBatch(defaults, jobs.size() + 1, line.split("\\s+")));
+				}
+			} catch (IOException e) {
+				SPSOutput.ReportError(defaults, "cannot read batch manifest (" + defaults.batchManifest + ")");
+				return null;
+			}
+		}
+
+		return jobs;
+	}
+
+	private static String Summary(List<SPSBatch> jobs, int workers, long elapsed) {
+		StringBuilder str = new StringBuilder();
+		int lines = 0;
+		int errors = 0;
+		int warnings = 0;
+		long time = 0;
+		int failed = 0;
+
+		str.append(String.format("\n\nBatch summary: %d program(s), %d worker(s), %d ms elapsed\n\n", jobs.size(), workers, elapsed));
+		str.append("    Job  Program                           Lines  Errors  Warnings  Time (ms)  Status\n");
+		str.append("  -----  ------------------------------  -------  ------  --------  ---------  --------\n");
+		for (SPSBatch job: jobs) {
+			str.append(String.format("  %5d  %-30s  %7d  %6d  %8d  %9d  %s\n", job.Number, job.Program, job.Lines, job.Errors,
+									 job.Warnings, job.Time, job.Status));
+			lines += job.Lines;
+			errors += job.Errors;
+			warnings += job.Warnings;
+			time += job.Time;
+			if (!job.Status.equals("ok")) ++failed;
+		}
+		str.append("  -----  ------------------------------  -------  ------  --------  ---------  --------\n");
+		str.append(String.format("  %5s  %-30s  %7d  %6d  %8d  %9d  %d not ok\n", "", "Total", lines, errors, warnings, time, failed));
+
+		return str.toString();
+	}
+
+	public void run() {
+		SPSContext ctx = new SPSContext(defaults);
+		long start = System.nanoTime();
+
+		ctx.console = new PrintStream(console, true);
+
+		try {
+			if (!SPSMain.ParseCommandLine(ctx, Args)) {
+				Status = "invalid";
+			} else if (ctx.batchOption || ctx.serverOption || ctx.watchOption) {
+				SPSOutput.ReportError(ctx, "batch, server and watch options not allowed in a batch job");
+				Status = "invalid";
+			} else if (!SPSMain.Assemble(ctx)) {
+				Status = "aborted";
+			} else {
+				Status = (ctx.errorCount == 0) ? "ok" : "errors";
+			}
+		} catch (RuntimeException e) {
+			ctx.console.println("*** Error: internal error (" + e + ")");
+			Status = "failed";
+		}
+
+		Lines = ctx.lineCount;
+		Errors = ctx.errorCount;
+		Warnings = ctx.warningCount;
+		Time = (System.nanoTime() - start) / 1000000L;
+		ctx.console.flush();
+	}
+}
@@ -0,0 +1,91 @@
+package SPS1620;
+
+/*
+ *  SPSBenchmark.java - times operand evaluation and counts the bytes it allocates
+ *
+ *  IBM 1620 Jr Project, Computer History Museum, 2017-2024
+ *
+ *  To recreate the experience (visual, auditory, tactile, visceral) of running historic software on a 1960s-era computer.
+ *
+ *   Dave Babcock     - project lead, software, library
+ *   John M. Bohn Jr. - software
+ *   David Brock      - CHM sponsor
+ *   Steve Casner     - hardware, software
+ *   Joe Fredrick     - hardware, firmware
+ *   Len Shustek      - CHM advisor
+ *   Dag Spicer       - CHM advisor
+ *   David Wise       - IBM 1620 expert
+ */
+
+import java.lang.management.ManagementFactory;
+
+/*
+ *  Usage:   java SPS1620.SPSBenchmark [iterations]
+ *
+ *  Evaluates a fixed set of operands the way pass 2 does, after a warm-up, and reports the time and the
+ *  bytes allocated per EvalOperand call as seen by the thread's allocation counter.  The count should be 0.
+ */
+
+public class SPSBenchmark {
+
+	// Data
+
+	private static final String[] SYMBOLS = {"ALPHA", "BETA", "GAMMA", "TABLE", "LOOP", "X$COUNT"};
+
+	private static final String[] OPERANDS = {"ALPHA", "BETA+1", "*-12", "TABLE+5*2-1", "GAMMA/2", "-LOOP+20000",
+											  "X$COUNT", "$ALPHA", "TABLE(A3)", "ALPHA-BETA+GAMMA*3", "402", "*+11"};
+
+	// Methods
+
+	public static void main(String[] args) {
+		int iterations = (args.length > 0) ? Integer.parseInt(args[0]) : 1000000;
+		SPSContext ctx = new SPSContext();
+
+		SPSStatement.Initialize();
+
+		ctx.pass = 2;
+		ctx.symbolDivide = false;
+		ctx.lineNumber = 100;
+		for (int i = 0; i < SYMBOLS.length; ++i) {
+			long key = SPSSymbolTable.Key(' ', SYMBOLS[i], 0, SYMBOLS[i].length());
+			ctx.symbolTable.Add(key, 1000 + 100 * i, SPSStatement.StatementType.DS, i + 1);
+		}
+
+		long sum = Run(ctx, iterations);
+		long before = AllocatedBytes();
+		long start = System.nanoTime();
+		sum += Run(ctx, iterations);
+		long time = System.nanoTime() - start;
+		long after = AllocatedBytes();
+		long calls = (long)iterations * OPERANDS.length;
+
+		System.out.println("IBM 1620 Jr. SPS Assembler (v" + SPSData.VERSION + ") operand evaluation benchmark");
+		System.out.format("Calls:                %d%n", calls);
+		System.out.format("Time per call:        %.1f ns%n", (double)time / calls);
+		if ((before < 0) || (after < 0)) {
+			System.out.println("Bytes per call:       not supported by this JVM");
+		} else {
+			System.out.format("Bytes per call:       %.3f%n", (double)(after - before) / calls);
+		}
+		System.out.println("Errors:               " + ctx.errorCount + " (checksum " + sum + ")");
+	}
+
+	private static long Run(SPSContext ctx, int iterations) {
+		long sum = 0;
+		for (int n = 0; n < iterations; ++n) {
+			for (int i = 0; i < OPERANDS.length; ++i) {
+				sum += SPSStatement.EvalOperand(ctx, OPERANDS[i], 2000, true, true, SPSStatement.StatementCheck.REFERENCE);
+				sum += ctx.operandIndex;
+			}
+		}
+		return sum;
+	}
+
+	private static long AllocatedBytes() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean)bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,170 @@
+package SPS1620;
+
+/*
+ *  SPSCardDeck.java - the self-loading card deck of a memory image, encoded one card at a time
+ *
+ *  IBM 1620 Jr Project, Computer History Museum, 2017-2024
+ *
+ *  To recreate the experience (visual, auditory, tactile, visceral) of running historic software on a 1960s-era computer.
+ *
+ *   Dave Babcock     - project lead, software, library
+ *   John M. Bohn Jr. - software
+ *   David Brock      - CHM sponsor
+ *   Steve Casner     - hardware, software
+ *   Joe Fredrick     - hardware, firmware
+ *   Len Shustek      - CHM advisor
+ *   Dag Spicer       - CHM advisor
+ *   David Wise       - IBM 1620 expert
+ */
+
+import java.io.PrintWriter;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/*
+ *  Usage:   for (Iterator<String> cards = result.Cards(); cards.hasNext(); ) reader.Load(cards.next());
+ *
+ *  The deck is the two loader cards, a card for each run of up to 60 defined digits from address 240
+ *  on, the card that ends loading, and three cards of low core (160-239, 80-159 and 0-79), the same as
+ *  a crd file.  A data card is its first and last-plus-one addresses, as flagged 5-digit fields, then its
+ *  digits, ending at a record or group mark or else with "|"; undefined digits inside a run punch as
+ *  blanks and trailing blanks are dropped.
+ *
+ *  Each card is encoded into one reusable buffer when it is reached.  Write streams the rest of the deck
+ *  to a writer straight from that buffer, one card per line, and the iterator gives each card as a string
+ *  without its line end.  A crd file's writer (see SPSOutput.ChannelWriter) goes to disk in 64 KB blocks.
+ */
+
+public class SPSCardDeck implements Iterator<String> {
+
+	// Constants
+
+	private static final int SIZE_CARD = 80;
+	private static final int SIZE_DATA = 60;
+
+	private static final int LOADER_1 = 0;
+	private static final int LOADER_2 = 1;
+	private static final int DATA = 2;
+	private static final int LOW_CORE = 3;
+
+	// Data
+
+	private SPSMemory memory;
+	private char[] card = new char[SIZE_CARD];
+	private int length = 0;
+	private int state = LOADER_1;
+	private int address;
+	private boolean ready = false;
+
+	// Constructor
+
+	public SPSCardDeck(SPSMemory memory) {
+		this.memory = memory;
+		this.address = memory.NextDefined(240);
+	}
+
+	// Methods
+
+	public boolean hasNext() {
+		if (!ready) {
+			ready = Advance();
+		}
+		return ready;
+	}
+
+	public String next() {
+		if (!hasNext()) throw new NoSuchElementException();
+		ready = false;
+		return new String(card, 0, length);
+	}
+
+	public void Write(PrintWriter writer) {
+		while (hasNext()) {
+			ready = false;
+			writer.write(card, 0, length);
+			writer.write('\n');
+		}
+	}
+
+	private boolean Advance() {
+		switch (state) {
+
+			case LOADER_1:
+				Copy(SPSData.INIT_CRD_1);
+				state = LOADER_2;
+				return true;
+
+			case LOADER_2:
+				Copy(SPSData.INIT_CRD_2);
+				state = DATA;
+				return true;
+
+			case DATA:
+				if (address < memory.Size) {
+					EncodeData();
+					return true;
+				}
+				Copy(SPSData.INIT_CRD_3);
+				state = LOW_CORE;
+				return true;
+
+			case LOW_CORE:
+			case LOW_CORE + 1:
+			case LOW_CORE + 2:
+				int start = 160 - (80 * (state - LOW_CORE));
+				for (int i = 0; i < 80; ++i) {
+					card[i] = SPSData.crdChar[memory.Get(start + i) & SPSData.MASK_FLAG_DIGIT];
+				}
+				length = 80;
+				++state;
+				return true;
+
+			default:
+				return false;
+		}
+	}
+
+	private void EncodeData() {
+		int end = Math.min(address + SIZE_DATA, memory.Size);
+		int next;
+		boolean seen = false;
+
+		length = 10;
+		for (next = address; next < end; ++next) {
+			byte mem = memory.Get(next);
+			if (mem == SPSData.MEMORY_UNDEF) {
+				card[length++] = ' ';
+			} else {
+				card[length++] = SPSData.crdChar[mem & SPSData.MASK_FLAG_DIGIT];
+				if (SPSUtility.IsRMGM(mem)) {
+					seen = true;
+					++next;
+					break;
+				}
+			}
+		}
+		while ((length > 10) && (card[length - 1] == ' ')) {
+			--length;
+		}
+
+		AddressField(0, address);
+		AddressField(5, (address + length - 10) % memory.Size);
+		if (!seen) {
+			card[length++] = '|';
+		}
+		address = memory.NextDefined(next);
+	}
+
+	private void AddressField(int column, int address) {
+		card[column] = SPSData.crdChar[(address / 10000) | SPSData.MASK_FLAG];
+		card[column + 1] = SPSData.crdChar[(address / 1000) % 10];
+		card[column + 2] = SPSData.crdChar[(address / 100) % 10];
+		card[column + 3] = SPSData.crdChar[(address / 10) % 10];
+		card[column + 4] = SPSData.crdChar[address % 10];
+	}
+
+	private void Copy(String image) {
+		length = image.length() - 1;
+		image.getChars(0, length, card, 0);
+	}
+}
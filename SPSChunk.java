@@ -0,0 +1,104 @@
+package SPS1620;
+
+/*
+ *  SPSChunk.java - a run of source statements scanned and sized for pass 1 or processed for pass 2 on a worker context
+ *
+ *  IBM 1620 Jr Project, Computer History Museum, 2017-2024
+ *
+ *  To recreate the experience (visual, auditory, tactile, visceral) of running historic software on a 1960s-era computer.
+ *
+ *   Dave Babcock     - project lead, software, library
+ *   John M. Bohn Jr. - software
+ *   David Brock      - CHM sponsor
+ *   Steve Casner     - hardware, software
+ *   Joe Fredrick     - hardware, firmware
+ *   Len Shustek      - CHM advisor
+ *   Dag Spicer       - CHM advisor
+ *   David Wise       - IBM 1620 expert
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ *  In pass 1 the worker context scans the lines of its part of a source file into new source lines, sizes
+ *  each statement as far as it can without knowing its address (see SPSPasses.SizeSource), and cuts the
+ *  lines into segments (see SPSSegment) for SPSPasses to place in order.  Its labels are deferred, since
+ *  only SPSPasses knows where they are.
+ *
+ *  In pass 2 the worker context shares the complete symbol table from pass 1, which is only read, and logs
+ *  the symbol references it makes instead of adding them, as well as its lookups when they are to be saved
+ *  in the file cache.  Lines read back from the file cache are skipped.  The results stay on the source
+ *  lines; nothing is stored in memory or written until SPSPasses goes through the lines in order.
+ */
+
+public class SPSChunk implements Runnable {
+
+	// Data
+
+	public int Start;
+	public int End;
+	public List<SPSSourceLine> Lines;
+	public List<SPSSegment> Segments;
+
+	private SPSContext ctx;
+	private SPSContext worker;
+	private SPSScanner scanner;
+
+	// Constructors
+
+	public SPSChunk(SPSContext ctx, SPSScanner scanner) {
+		this.ctx = ctx;
+		this.scanner = scanner;
+		this.Lines = new ArrayList<SPSSourceLine>();
+
+		this.worker = new SPSContext(ctx);
+		this.worker.pass = 1;
+		this.worker.scanOnly = true;
+		this.worker.capturedDiagnostics = new ArrayList<String>();
+	}
+
+	public SPSChunk(SPSContext ctx, int start, int end) {
+		this.Start = start;
+		this.End = end;
+		this.ctx = ctx;
+
+		this.worker = new SPSContext(ctx);
+		this.worker.pass = 2;
+		this.worker.symbolTable = ctx.symbolTable;
+		this.worker.referenceLog = new int[256];
+		if (ctx.lookupLog != null) {
+			this.worker.lookupLog = new long[256];
+		}
+	}
+
+	// Methods
+
+	public void run() {
+		if (scanner != null) {
+			SPSInput.ScanLines(worker, scanner, Lines);
+			worker.scanOnly = false;
+			worker.deferLabels = true;
+			for (SPSSourceLine line: Lines) {
+				SPSPasses.SizeSource(worker, line);
+			}
+			Segments = SPSSegment.Split(ctx, Lines);
+			return;
+		}
+		for (int i = Start; i < End; ++i) {
+			SPSSourceLine line = ctx.sourceLines.get(i);
+			if (!line.Cached) {
+				SPSPasses.ReprocessSource(worker, line);
+			}
+		}
+	}
+
+	public void CommitReferences(SPSContext ctx) {
+		for (int i = 0; i < worker.referenceLogLength; i += 2) {
+			ctx.symbolTable.AddReference(worker.referenceLog[i], worker.referenceLog[i + 1]);
+		}
+		for (int i = 0; i < worker.lookupLogLength; i += 2) {
+			SPSSymbol.LogLookup(ctx, worker.lookupLog[i], (int)(worker.lookupLog[i + 1] >> 1), (worker.lookupLog[i + 1] & 1) != 0);
+		}
+	}
+}
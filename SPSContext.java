@@ -0,0 +1,206 @@
+package SPS1620;
+
+/*
+ *  SPSContext.java - per-assembly options and state
+ *
+ *  IBM 1620 Jr Project, Computer History Museum, 2017-2024
+ *
+ *  To recreate the experience (visual, auditory, tactile, visceral) of running historic software on a 1960s-era computer.
+ *
+ *   Dave Babcock     - project lead, software, library
+ *   John M. Bohn Jr. - software
+ *   David Brock      - CHM sponsor
+ *   Steve Casner     - hardware, software
+ *   Joe Fredrick     - hardware, firmware
+ *   Len Shustek      - CHM advisor
+ *   Dag Spicer       - CHM advisor
+ *   David Wise       - IBM 1620 expert
+ */
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ *  Everything that changes while a program is assembled lives in one SPSContext, so any number of
+ *  assemblies can run side by side in the same JVM.  Only the constant tables in SPSData and the
+ *  statement table built by SPSStatement.Initialize() are shared.  The copy constructor takes over
+ *  just the assembly options, e.g. to seed each program of a batch from the command line defaults.
+ */
+
+public class SPSContext {
+	
+	// Data
+	
+	public String dateTime;
+	public boolean dateFixed = false;
+	
+	public SPSData.SourceFormat sourceFormat = SPSData.SourceFormat.FIXED;
+	public SPSData.SystemType systemType = SPSData.SystemType.MODEL_1;
+	public boolean indexOk = false;
+	public int memorySize = 60000;
+	public boolean includeTables = true;
+	public boolean loadHalt = true;
+	public boolean produceWarnings = true;
+	public boolean pass1Errors = false;
+	public byte[] tabTable = null;
+	public boolean symbolDivide = true;
+	public boolean byteScan = true;
+	public boolean onePass = false;
+	public boolean parallel = false;
+	public SPSWriter outputWriter = null;
+	public String cacheDirectory = null;
+	public int cacheSize = SPSData.SIZE_CACHE;
+	
+	public PrintStream console = System.out;
+	public List<String> diagnostics = null;
+	public File directory = null;
+	public boolean abort = false;
+	
+	public boolean batchOption = false;
+	public String batchManifest = null;
+	public int batchJobs = 0;
+	public String batchSummary = null;
+	public List<String> batchPrograms = new ArrayList<String>();
+	
+	public boolean serverOption = false;
+	public String serverSocket = null;
+	
+	public boolean watchOption = false;
+	
+	public boolean sourceMultipleFiles = false;
+	public int sourceFileCount = 0;
+	public int sourceCurrentFile = -1;
+	public String[] sourceFilenames = new String[SPSData.SIZE_SOURCE_TABLE];
+	public File sourceFile = null;
+	public BufferedReader sourceReader = null;
+	public SPSScanner sourceScanner = null;
+	public String[] sourceTexts = null;
+	public List<SPSSourceLine> sourceLines = new ArrayList<SPSSourceLine>();
+	public int[] sourceFileStart = new int[SPSData.SIZE_SOURCE_TABLE];
+	
+	public boolean outputBuffers = false;
+	
+	public boolean lstOption = true;
+	public String lstFilename = null;
+	public File lstFile = null;
+	public PrintWriter lstWriter = null;
+	public SPSListLine lstLine = null;
+	public ByteArrayOutputStream lstBuffer = null;
+	
+	public boolean cmemOption = false;
+	public String cmemFilename = null;
+	public File cmemFile = null;
+	public PrintWriter cmemWriter = null;
+	public SPSListLine cmemLine = null;
+	public ByteArrayOutputStream cmemBuffer = null;
+	
+	public boolean crdOption = false;
+	public String crdFilename = null;
+	public File crdFile = null;
+	public PrintWriter crdWriter = null;
+	public ByteArrayOutputStream crdBuffer = null;
+	
+	public boolean ptOption = false;
+	public String ptFilename = null;
+	public File ptFile = null;
+	public OutputStream ptStream = null;
+	public ByteArrayOutputStream ptBuffer = null;
+	
+	public boolean imgOption = false;
+	public String imgFilename = null;
+	public ByteArrayOutputStream imgBuffer = null;
+	
+	public int pass = 0;
+	public int lineNumber = 0;
+	public int lineCount = 0;
+	public int errorCount = 0;
+	public int warningCount = 0;
+	public int initialAddressCounter = 402;
+	public int addressCounter = 0;
+	public int lastAddress = 0;
+	public char symbolHead = ' ';
+	public SPSData.DendStatus dendStatus = SPSData.DendStatus.NOT_SEEN;
+	public int dendAddress = 0;
+	
+	public int operandIndex = 0;
+	public long[] expressionStack = new long[SPSData.SIZE_EXPR_STACK];
+	
+	public String inputLine = null;
+	public String inputLabel = null;
+	public String inputOperation = null;
+	public String inputOperands = null;
+	public String[] inputOperand = null;
+	public SPSStatement inputStatement = null;
+	public String inputMessages = null;
+	public List<String> inputDiagnostics = null;
+	
+	public boolean onePassDefine = false;
+	public boolean scanOnly = false;
+	public boolean deferLabels = false;
+	public boolean termAsterisk = false;
+	public boolean termSymbol = false;
+	public boolean unresolvedSymbol = false;
+	public boolean ownLabelReference = false;
+	public List<String> capturedDiagnostics = null;
+	public int[] referenceLog = null;
+	public int referenceLogLength = 0;
+	public long[] lookupLog = null;
+	public int lookupLogLength = 0;
+	
+	public int labelAddress = 0;
+	public int address = 0;
+	public int length = 0;
+	public int count = 0;
+	public byte[] value = null;
+	
+	public SPSMemory memory = null;
+	
+	public SPSSymbolTable symbolTable = new SPSSymbolTable();
+	public Map<String, SPSExpression> expressions = new HashMap<String, SPSExpression>();
+	
+	// Constructors
+	
+	public SPSContext() {
+		synchronized (SPSData.FORMAT_DATE) {
+			this.dateTime = SPSData.FORMAT_DATE.format(new Date());
+		}
+	}
+	
+	public SPSContext(SPSContext options) {
+		this();
+		if (options.dateFixed) {
+			this.dateTime = options.dateTime;
+			this.dateFixed = true;
+		}
+		this.sourceFormat = options.sourceFormat;
+		this.systemType = options.systemType;
+		this.indexOk = options.indexOk;
+		this.memorySize = options.memorySize;
+		this.includeTables = options.includeTables;
+		this.loadHalt = options.loadHalt;
+		this.produceWarnings = options.produceWarnings;
+		this.pass1Errors = options.pass1Errors;
+		this.tabTable = options.tabTable;
+		this.symbolDivide = options.symbolDivide;
+		this.byteScan = options.byteScan;
+		this.onePass = options.onePass;
+		this.parallel = options.parallel;
+		this.cacheDirectory = options.cacheDirectory;
+		this.cacheSize = options.cacheSize;
+		this.lstOption = options.lstOption;
+		this.cmemOption = options.cmemOption;
+		this.crdOption = options.crdOption;
+		this.ptOption = options.ptOption;
+		this.imgOption = options.imgOption;
+		this.initialAddressCounter = options.initialAddressCounter;
+	}
+}
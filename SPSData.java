@@ -1,7 +1,7 @@
 package SPS1620;
 
 /*
- *  SPSData.java - global constants, data, and tables
+ *  SPSData.java - global constants and tables
  *
  *  IBM 1620 Jr Project, Computer History Museum, 2017-2024
  *
@@ -17,9 +17,7 @@ package SPS1620;
  *   David Wise       - IBM 1620 expert
  */
 
-import java.io.*;
 import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.regex.Pattern;
 
 public class SPSData {
@@ -34,6 +32,12 @@ public class SPSData {
 	public static final int SIZE_EXPR_STACK   = 80;
 	public static final int SIZE_TAB_TABLE    = 80;
 	public static final int SIZE_XREF_LINE    = 8;
+	public static final int SIZE_CHUNK        = 1024;
+	public static final int SIZE_SCAN_CHUNK   = 65536;
+	public static final int SIZE_WRITE_BLOCK  = 65536;
+	public static final int SIZE_CACHE        = 256;
+	public static final int SIZE_OUTPUT_QUEUE = 4096;
+	public static final int SIZE_PAGE         = 1000;
 	
 	public static final byte DEFAULT_TABS = 8;
 	
@@ -63,6 +67,14 @@ public class SPSData {
 	
 	public static final byte CHAR_EOL = (byte)0x80;
 	
+	public static final byte CLASS_LINE    = 0x01;
+	public static final byte CLASS_SYMBOL  = 0x02;
+	public static final byte CLASS_SYMBOLX = 0x04;
+	public static final byte CLASS_DIGIT   = 0x08;
+	public static final byte CLASS_NUMBERX = 0x10;
+	public static final byte CLASS_ALPHA   = 0x20;
+	public static final byte CLASS_ALNUM   = 0x40;
+	
 	public static final SimpleDateFormat FORMAT_DATE = new SimpleDateFormat("M/dd/yyyy @ HH:mm");
 	
 	public static final String VALID_HEAD   = " ABCDEFGHIJKLMNOPQRSTUVWXY0123456789";
@@ -90,6 +102,8 @@ public class SPSData {
 	
 	public static enum DendStatus {NOT_SEEN, SEEN, WARNING};
 	
+	public static enum Sizing {NONE, FLOW, RESET, PLACED, ANCHOR, HEAD, DEND};
+	
 	// Constant Arrays
 	
 	public static final byte[] multiplyTable =
@@ -155,6 +169,16 @@ public class SPSData {
 		 0x0000, 0x0000, 0x0000, 0x0000, 0x0000, 0x0000, 0x0000, 0x0000, 0x0000, 0x0000, 0x0000, 0x0000, 0x0000, 0x0000, 0x0000, 0x0000,
 		 0x0000, 0x0000, 0x0000, 0x0000, 0x0000, 0x0000, 0x0000, 0x0000, 0x0000, 0x0000, 0x0000, 0x0000, 0x0000, 0x0000, 0x0000, 0x0000};
 	
+	public static final byte[] charClass =
+		{0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00,
+		 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00,
+		 0x21, 0x01, 0x01, 0x00, 0x21, 0x00, 0x00, 0x00, 0x21, 0x21, 0x21, 0x21, 0x21, 0x21, 0x27, 0x23,
+		 0x7f, 0x7f, 0x7f, 0x7f, 0x7f, 0x7f, 0x7f, 0x7f, 0x7f, 0x7f, 0x00, 0x00, 0x00, 0x27, 0x00, 0x00,
+		 0x27, 0x67, 0x67, 0x67, 0x67, 0x67, 0x67, 0x67, 0x67, 0x67, 0x77, 0x77, 0x77, 0x77, 0x77, 0x77,
+		 0x77, 0x77, 0x77, 0x67, 0x67, 0x67, 0x67, 0x67, 0x67, 0x67, 0x67, 0x00, 0x00, 0x31, 0x00, 0x00,
+		 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00,
+		 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x01, 0x01, 0x01, 0x00};
+	
 	public static final char[] opCodeChar =
 		{'0', '0', '0', '0', '0', '0', '0', '0', '0', '0', '0', '0', '0', '0', '0', '0',
 		 '0', '0', '0', '0', '0', '0', '0', '0', '0', '0', '0', '0', '0', '0', '0', '0',
@@ -204,76 +228,4 @@ public class SPSData {
 	public static final String INIT_CRD_1 = "41000000050036001100050026000470011925001090000026000660011431000000012000000000\n";
 	public static final String INIT_CRD_2 = "]0072]0108260009000119250000000109490001200000|000000000000000000000000000000000\n";
 	public static final String INIT_CRD_3 = "]0028]01093600160005003600080005001600001000L6490000004900028|000000000000000000\n";
-	
-	// Data
-	
-	public static String dateTime = FORMAT_DATE.format(new Date());
-	
-	public static SourceFormat sourceFormat = SourceFormat.FIXED;
-	public static SystemType systemType = SystemType.MODEL_1;
-	public static boolean indexOk = false;
-	public static int memorySize = 60000;
-	public static boolean includeTables = true;
-	public static boolean loadHalt = true;
-	public static boolean produceWarnings = true;
-	public static boolean pass1Errors = false;
-	public static byte[] tabTable = null;
-	public static boolean symbolDivide = true;
-	
-	public static boolean sourceMultipleFiles = false;
-	public static int sourceFileCount = 0;
-	public static int sourceCurrentFile = -1;
-	public static String[] sourceFilenames = new String[SIZE_SOURCE_TABLE];
-	public static File sourceFile = null;
-	public static BufferedReader sourceReader = null;
-	
-	public static boolean lstOption = true;
-	public static String lstFilename = null;
-	public static File lstFile = null;
-	public static PrintWriter lstWriter = null;
-	
-	public static boolean cmemOption = false;
-	public static String cmemFilename = null;
-	public static File cmemFile = null;
-	public static PrintWriter cmemWriter = null;
-	
-	public static boolean crdOption = false;
-	public static String crdFilename = null;
-	public static File crdFile = null;
-	public static PrintWriter crdWriter = null;
-	
-	public static boolean ptOption = false;
-	public static String ptFilename = null;
-	public static File ptFile = null;
-	public static FileOutputStream ptStream = null;
-	
-	public static int pass = 0;
-	public static int lineNumber = 0;
-	public static int lineCount = 0;
-	public static int errorCount = 0;
-	public static int warningCount = 0;
-    public static int initialAddressCounter = 402;
-	public static int addressCounter = 0;
-	public static int lastAddress = 0;
-	public static char symbolHead = ' ';
-	public static DendStatus dendStatus = DendStatus.NOT_SEEN;
-	public static int dendAddress = 0;
-	
-	public static int operandIndex = 0;
-	
-	public static String inputLine = null;
-	public static String inputLabel = null;
-	public static String inputOperation = null;
-	public static String inputOperands = null;
-	public static String[] inputOperand = null;
-	public static SPSStatement inputStatement = null;
-	public static String inputMessages = null;
-	
-	public static int labelAddress = 0;
-	public static int address = 0;
-	public static int length = 0;
-	public static int count = 0;
-	public static byte[] value = null;
-	
-	public static byte[] memory = new byte[memorySize];
 }
@@ -0,0 +1,293 @@
+package SPS1620;
+
+/*
+ *  SPSExpression.java - operand expression compiled once into terms and a postfix program
+ *
+ *  IBM 1620 Jr Project, Computer History Museum, 2017-2024
+ *
+ *  To recreate the experience (visual, auditory, tactile, visceral) of running historic software on a 1960s-era computer.
+ *
+ *   Dave Babcock     - project lead, software, library
+ *   John M. Bohn Jr. - software
+ *   David Brock      - CHM sponsor
+ *   Steve Casner     - hardware, software
+ *   Joe Fredrick     - hardware, firmware
+ *   Len Shustek      - CHM advisor
+ *   Dag Spicer       - CHM advisor
+ *   David Wise       - IBM 1620 expert
+ */
+
+/*
+ *  An operand is split into terms exactly as EvalOperand always did.  Evaluation first loads every term in
+ *  order (so symbol references and symbol errors come out as before), stopping at an invalid term, and only
+ *  then runs the postfix program, * and / binding tighter than + and -, all left to right.  A symbol without
+ *  a head of its own keeps its unheaded key; the current HEAD character is applied when it is looked up.
+ *  Compiled expressions are kept per context, keyed by the operand text, and shared by both passes.
+ *
+ *  Term values and the evaluation stack share the context's expressionStack (values first, stack above
+ *  them), so evaluating an expression that has already been compiled allocates nothing.
+ *
+ *  Loading a * or symbol term sets the context's termAsterisk or termSymbol flag; a parallel pass 1 clears
+ *  them before sizing a statement to tell whether its size depends on where it is.
+ */
+
+public class SPSExpression {
+
+	// Constants
+
+	private static final byte TERM_NUMBER   = 0;
+	private static final byte TERM_ASTERISK = 1;
+	private static final byte TERM_SYMBOL   = 2;
+	private static final byte TERM_HEADED   = 3;
+	private static final byte TERM_LOOKUP   = 4;
+	private static final byte TERM_INVALID  = 5;
+
+	private static final int OP_ADD      = -1;
+	private static final int OP_SUBTRACT = -2;
+	private static final int OP_MULTIPLY = -3;
+	private static final int OP_DIVIDE   = -4;
+
+	// Data
+
+	private String operand;
+	private boolean empty = false;
+	private boolean trailing = false;
+
+	private int termCount = 0;
+	private byte[] termTypes;
+	private long[] termValues;
+	private String[] termSymbols;
+	private int[] termPositions;
+
+	private int[] program;
+	private int programLength = 0;
+
+	private boolean indexed = false;
+	private String indexText = "";
+	private int index = -1;
+
+	// Constructor
+
+	private SPSExpression(SPSContext ctx, String operand) {
+		this.operand = operand;
+		Compile(ctx);
+	}
+
+	// Methods
+
+	public static SPSExpression Get(SPSContext ctx, String operand) {
+		SPSExpression expr = ctx.expressions.get(operand);
+		if (expr == null) {
+			expr = new SPSExpression(ctx, operand);
+			ctx.expressions.put(operand, expr);
+		}
+		return expr;
+	}
+
+	public boolean IsConstant() {
+		for (int i = 0; i < termCount; ++i) {
+			if ((termTypes[i] != TERM_NUMBER) && (termTypes[i] != TERM_INVALID)) return false;
+		}
+		return true;
+	}
+
+	public long Evaluate(SPSContext ctx, int asterisk, boolean indexOk, boolean symbolCheck, SPSStatement.StatementCheck valueCheck) {
+		ctx.operandIndex = 0;
+
+		if (empty) return 0L;
+
+		if (ctx.expressionStack.length < (2 * termCount)) {
+			ctx.expressionStack = new long[2 * termCount];
+		}
+		long[] values = ctx.expressionStack;
+		for (int i = 0; i < termCount; ++i) {
+			switch (termTypes[i]) {
+				case TERM_NUMBER:
+					values[i] = termValues[i];
+					break;
+				case TERM_ASTERISK:
+					ctx.termAsterisk = true;
+					values[i] = asterisk;
+					break;
+				case TERM_SYMBOL:
+					ctx.termSymbol = true;
+					values[i] = SPSSymbol.Lookup(ctx, termValues[i], termSymbols[i], termPositions[i], ctx.lineNumber, symbolCheck);
+					break;
+				case TERM_HEADED:
+					ctx.termSymbol = true;
+					values[i] = SPSSymbol.Lookup(ctx, SPSSymbolTable.Key(ctx.symbolHead, termValues[i]), termSymbols[i], -1,
+												 ctx.lineNumber, symbolCheck);
+					break;
+				case TERM_LOOKUP:
+					ctx.termSymbol = true;
+					values[i] = SPSSymbol.Lookup(ctx, termSymbols[i], ctx.lineNumber, symbolCheck);
+					break;
+				default:
+					SPSOutput.ReportError(ctx, "invalid operand (" + operand + ")");
+					return 0L;
+			}
+		}
+
+		if (indexed & !indexOk) {
+			SPSOutput.ReportError(ctx, "indexing not supported " + indexText);
+		}
+
+		if (trailing) {
+			SPSOutput.ReportError(ctx, "invalid operand (" + operand + ")");
+			return 0L;
+		}
+
+		long[] stack = values;
+		int top = termCount - 1;
+		for (int i = 0; i < programLength; ++i) {
+			int op = program[i];
+			if (op >= 0) {
+				stack[++top] = values[op];
+				continue;
+			}
+			long right = stack[top--];
+			switch (op) {
+				case OP_ADD:
+					stack[top] += right;
+					break;
+				case OP_SUBTRACT:
+					stack[top] -= right;
+					break;
+				case OP_MULTIPLY:
+					stack[top] *= right;
+					break;
+				default:
+					if (right == 0) {
+						SPSOutput.ReportError(ctx, "divide by zero");
+						return 0L;
+					}
+					stack[top] /= right;
+					break;
+			}
+		}
+
+		long value = SPSStatement.CheckValue(ctx, stack[termCount], valueCheck);
+
+		if (indexed && indexOk) {
+			if (index >= 0)  {
+				ctx.operandIndex = index;
+			} else {
+				SPSOutput.ReportError(ctx, "invalid index " + indexText);
+			}
+		}
+
+		return value;
+	}
+
+	private void Compile(SPSContext ctx) {
+		int size = operand.length();
+		int pos = 0;
+		char chr = 0;
+		int operatorCount = 0;
+
+		if (SPSUtility.IsEmpty(operand)) {
+			empty = true;
+			return;
+		}
+
+		int terms = 2;
+		for (int i = 0; i < size; ++i) {
+			chr = operand.charAt(i);
+			if ((chr == '+') || (chr == '-') || (chr == '*') || (chr == '/')) ++terms;
+		}
+		int[] operators = new int[terms];
+		termTypes = new byte[terms];
+		termValues = new long[terms];
+		termSymbols = new String[terms];
+		termPositions = new int[terms];
+		program = new int[2 * terms];
+
+		if (operand.charAt(0) == '-') {
+			termTypes[termCount++] = TERM_NUMBER;
+			operators[operatorCount++] = OP_SUBTRACT;
+			++pos;
+			if (pos == size) {
+				empty = true;
+				return;
+			}
+		}
+
+		while (true) {
+			int start = pos++;
+			while (pos < size) {
+				chr = operand.charAt(pos);
+				if ((chr == '+') || (chr == '-') || (chr == '*') || ((chr == '/') && !ctx.symbolDivide)) break;
+				if (chr == '(') {
+					indexed = true;
+					break;
+				}
+				++pos;
+			}
+			AddTerm(ctx, operand.substring(start, pos));
+			if (termTypes[termCount - 1] == TERM_INVALID) break;
+			if ((pos == size) || indexed) break;
+
+			operators[operatorCount++] = (chr == '+') ? OP_ADD : (chr == '-') ? OP_SUBTRACT : (chr == '*') ? OP_MULTIPLY : OP_DIVIDE;
+			++pos;
+			if (pos == size) break;
+		}
+
+		if (indexed) {
+			indexText = SPSUtility.Substring(operand, pos, size);
+			if (SPSUtility.IsValidIndex(indexText)) {
+				index = SPSUtility.CharAt(operand, size - 2) - '0';
+			}
+		}
+
+		if (operatorCount == termCount) {
+			trailing = true;
+		} else {
+			int[] pending = new int[operatorCount];
+			int top = -1;
+			program[programLength++] = 0;
+			for (int i = 0; i < operatorCount; ++i) {
+				while ((top >= 0) && (Precedence(pending[top]) >= Precedence(operators[i]))) {
+					program[programLength++] = pending[top--];
+				}
+				pending[++top] = operators[i];
+				program[programLength++] = i + 1;
+			}
+			while (top >= 0) {
+				program[programLength++] = pending[top--];
+			}
+		}
+	}
+
+	private void AddTerm(SPSContext ctx, String term) {
+		int i = termCount++;
+
+		if (term.equals("*")) {
+			termTypes[i] = TERM_ASTERISK;
+		} else if (SPSUtility.IsValidNumber(term)) {
+			termTypes[i] = TERM_NUMBER;
+			termValues[i] = Long.parseLong(term);
+		} else if (SPSUtility.IsValidSymbol(ctx, term)) {
+			int pos = term.indexOf('$');
+			termSymbols[i] = term;
+			termPositions[i] = pos;
+			if (pos == -1) {
+				termTypes[i] = (term.length() < 6) ? TERM_HEADED : TERM_SYMBOL;
+				termValues[i] = SPSSymbolTable.Key(' ', term, 0, term.length());
+			} else if (pos == 0) {
+				termTypes[i] = TERM_SYMBOL;
+				termValues[i] = SPSSymbolTable.Key(' ', term, 1, term.length());
+			} else if ((pos == 1) && SPSUtility.IsValidHead(term.charAt(0)) && SPSUtility.IsValidSymbol(ctx, term, 2, term.length())) {
+				termTypes[i] = TERM_SYMBOL;
+				termValues[i] = SPSSymbolTable.Key(' ', term, 0, term.length());
+			} else {
+				termTypes[i] = TERM_LOOKUP;
+			}
+		} else {
+			termTypes[i] = TERM_INVALID;
+		}
+	}
+
+	private static int Precedence(int op) {
+		return ((op == OP_MULTIPLY) || (op == OP_DIVIDE)) ? 2 : 1;
+	}
+}
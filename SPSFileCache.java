@@ -0,0 +1,328 @@
+package SPS1620;
+
+/*
+ *  SPSFileCache.java - pass 2 results of each source file saved on disk under a hash of its lines
+ *
+ *  IBM 1620 Jr Project, Computer History Museum, 2017-2024
+ *
+ *  To recreate the experience (visual, auditory, tactile, visceral) of running historic software on a 1960s-era computer.
+ *
+ *   Dave Babcock     - project lead, software, library
+ *   John M. Bohn Jr. - software
+ *   David Brock      - CHM sponsor
+ *   Steve Casner     - hardware, software
+ *   Joe Fredrick     - hardware, firmware
+ *   Len Shustek      - CHM advisor
+ *   Dag Spicer       - CHM advisor
+ *   David Wise       - IBM 1620 expert
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ *  The key is a SHA-256 digest of the version, the options that change how a statement is processed, the
+ *  file's place in the program and its lines as pass 1 scanned them.  Processing a line in pass 2 depends
+ *  on nothing else but the addresses, head and DEND state it starts from and the symbols it looks up, so an
+ *  entry keeps those next to the results: the state each line started from, the address and defining line
+ *  of every symbol the file looked up (or that it was undefined), the references it made, and each line's
+ *  results and diagnostics.
+ *
+ *  Load only uses an entry whose symbols are all unchanged in the complete symbol table and whose lines
+ *  start from the same state, which in a sequential pass 2 is the state the file starts from and in a
+ *  parallel one the state pass 1 gave each line (as each line is processed from its own).  Its lines then
+ *  take their results from the entry, are marked Cached, and are not processed; the outputs are written
+ *  from them as usual.  Anything else is a miss: the file is processed, with its lookups logged (see
+ *  SPSSymbol.LogLookup, which packs the line and whether a reference was made into one long), and saved.
+ *
+ *  A file with a line that pass 2 has to scan again, since pass 1 read it on the other side of DEND, is
+ *  not saved.  Entries are mapped rather than read into an array, as one takes about 90 bytes a line, and
+ *  are checked to the end before any line is marked Cached, so a damaged one is simply a miss whose lines
+ *  are processed again.  They are written to a temporary name and renamed, and count towards -cachesize
+ *  like whole assemblies (see SPSOutputCache.Evict).
+ */
+
+public class SPSFileCache {
+
+	// Constants
+
+	private static final int MAGIC = 0x53504632;
+	public static final String SUFFIX = ".p2";
+
+	// Data
+
+	public int Start;
+	public int End;
+
+	private String key;
+
+	// Constructor
+
+	public SPSFileCache(SPSContext ctx, int file) {
+		this.Start = ctx.sourceFileStart[file];
+		this.End = ((file + 1) < ctx.sourceFileCount) ? ctx.sourceFileStart[file + 1] : ctx.sourceLines.size();
+		this.key = (Start < End) ? Key(ctx, file, Start, End) : null;
+	}
+
+	// Methods
+
+	public boolean Load(SPSContext ctx, boolean flowing) {
+		if (key == null) return true;
+
+		File file = SPSUtility.GetFile(ctx, ctx.cacheDirectory + File.separator + key + SUFFIX);
+		if (!file.isFile()) return false;
+
+		SPSSymbolTable table = ctx.symbolTable;
+		int count = End - Start;
+		SPSData.DendStatus[] statuses = SPSData.DendStatus.values();
+		SPSStatement.StatementListing[] listings = SPSStatement.StatementListing.values();
+		int[] entries;
+		int[] references;
+		byte[] listing = new byte[count];
+		char symbolHead;
+		SPSData.DendStatus dendStatus;
+		try {
+			ByteBuffer in;
+			try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+				in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			}
+			if ((in.getInt() != MAGIC) || !GetString(in).equals(SPSData.VERSION) || (in.getInt() != count)) return false;
+
+			entries = new int[in.getInt()];
+			for (int i = 0; i < entries.length; ++i) {
+				long symbol = in.getLong();
+				boolean found = in.get() != 0;
+				int address = in.getInt();
+				int defined = in.getInt();
+				entries[i] = table.Find(symbol);
+				if (found ? ((entries[i] == -1) || (table.Address(entries[i]) != address) || (table.Defined(entries[i]) != defined))
+						  : (entries[i] != -1)) return false;
+			}
+			references = new int[in.getInt()];
+			for (int i = 0; i < references.length; i += 2) {
+				references[i] = entries[in.getInt()];
+				references[i + 1] = in.getInt();
+			}
+
+			for (int i = 0; i < count; ++i) {
+				SPSSourceLine line = ctx.sourceLines.get(Start + i);
+				int addressCounter = in.getInt();
+				int lastAddress = in.getInt();
+				char head = in.getChar();
+				SPSData.DendStatus status = statuses[in.get()];
+				if (flowing ? ((i == 0) && ((addressCounter != ctx.addressCounter) || (lastAddress != ctx.lastAddress) ||
+											(head != ctx.symbolHead) || (status != ctx.dendStatus)))
+							: ((addressCounter != line.AddressCounter) || (lastAddress != line.LastAddress) ||
+							   (head != line.SymbolHead) || (status != line.DendStatus))) return false;
+				if (flowing) {
+					line.AddressCounter = addressCounter;
+					line.LastAddress = lastAddress;
+					line.SymbolHead = head;
+					line.DendStatus = status;
+				}
+			}
+
+			for (int i = 0; i < count; ++i) {
+				SPSSourceLine line = ctx.sourceLines.get(Start + i);
+				line.Processed = in.get() != 0;
+				listing[i] = in.get();
+				line.LabelAddress = in.getInt();
+				line.Address = in.getInt();
+				line.Length = in.getInt();
+				line.Count = in.getInt();
+				int length = in.getInt();
+				line.Value = (length < 0) ? null : new byte[length];
+				if (length > 0) {
+					in.get(line.Value);
+				}
+				int messages = in.getInt();
+				line.Messages = (messages == 0) ? null : new ArrayList<String>(messages);
+				for (int j = 0; j < messages; ++j) {
+					line.Messages.add(GetString(in));
+				}
+				line.NextAddressCounter = in.getInt();
+				line.NextLastAddress = in.getInt();
+				line.NextSymbolHead = in.getChar();
+				line.NextDendStatus = statuses[in.get()];
+			}
+			if (in.hasRemaining()) return false;
+
+		} catch (IOException | RuntimeException e) {
+			return false;
+		}
+
+		for (int i = 0; i < references.length; i += 2) {
+			table.AddReference(references[i], references[i + 1]);
+		}
+		for (int i = 0; i < count; ++i) {
+			SPSSourceLine line = ctx.sourceLines.get(Start + i);
+			if (line.Statement.Listing != listings[listing[i]]) {
+				line.Statement = new SPSStatement(line.Statement);
+				line.Statement.Listing = listings[listing[i]];
+			}
+			line.Cached = true;
+			if (flowing && line.Processed && (line.Statement.Type == SPSStatement.StatementType.DEND)) {
+				ctx.dendAddress = line.LabelAddress;
+			}
+		}
+		if (flowing) {
+			SPSSourceLine last = ctx.sourceLines.get(End - 1);
+			ctx.addressCounter = last.NextAddressCounter;
+			ctx.lastAddress = last.NextLastAddress;
+			ctx.symbolHead = last.NextSymbolHead;
+			ctx.dendStatus = last.NextDendStatus;
+		}
+		file.setLastModified(System.currentTimeMillis());
+		return true;
+	}
+
+	public void Save(SPSContext ctx) {
+		if (key == null) return;
+
+		for (int i = Start; i < End; ++i) {
+			SPSSourceLine line = ctx.sourceLines.get(i);
+			if (line.Scanned != (line.DendStatus == SPSData.DendStatus.NOT_SEEN)) return;
+		}
+
+		int first = ctx.sourceLines.get(Start).LineNumber;
+		int last = ctx.sourceLines.get(End - 1).LineNumber;
+		long[] symbols = new long[ctx.lookupLogLength / 2];
+		int count = 0;
+		for (int i = 0; i < ctx.lookupLogLength; i += 2) {
+			int line = (int)(ctx.lookupLog[i + 1] >> 1);
+			if ((line >= first) && (line <= last)) symbols[count++] = ctx.lookupLog[i];
+		}
+		Arrays.sort(symbols, 0, count);
+		int distinct = 0;
+		for (int i = 0; i < count; ++i) {
+			if ((distinct == 0) || (symbols[i] != symbols[distinct - 1])) symbols[distinct++] = symbols[i];
+		}
+
+		File directory = SPSUtility.GetFile(ctx, ctx.cacheDirectory);
+		File file = new File(directory, key + SUFFIX);
+		File temp = new File(directory, key + "." + Thread.currentThread().getId() + ".tmp");
+
+		SPSSymbolTable table = ctx.symbolTable;
+		directory.mkdirs();
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+			out.writeInt(MAGIC);
+			PutString(out, SPSData.VERSION);
+			out.writeInt(End - Start);
+
+			out.writeInt(distinct);
+			for (int i = 0; i < distinct; ++i) {
+				int entry = table.Find(symbols[i]);
+				out.writeLong(symbols[i]);
+				out.writeByte((entry != -1) ? 1 : 0);
+				out.writeInt((entry != -1) ? table.Address(entry) : 0);
+				out.writeInt((entry != -1) ? table.Defined(entry) : 0);
+			}
+			int references = 0;
+			for (int i = 0; i < ctx.lookupLogLength; i += 2) {
+				int line = (int)(ctx.lookupLog[i + 1] >> 1);
+				if ((line >= first) && (line <= last) && ((ctx.lookupLog[i + 1] & 1) != 0)) ++references;
+			}
+			out.writeInt(2 * references);
+			for (int i = 0; i < ctx.lookupLogLength; i += 2) {
+				int line = (int)(ctx.lookupLog[i + 1] >> 1);
+				if ((line >= first) && (line <= last) && ((ctx.lookupLog[i + 1] & 1) != 0)) {
+					out.writeInt(Arrays.binarySearch(symbols, 0, distinct, ctx.lookupLog[i]));
+					out.writeInt(line);
+				}
+			}
+
+			for (int i = Start; i < End; ++i) {
+				SPSSourceLine line = ctx.sourceLines.get(i);
+				out.writeInt(line.AddressCounter);
+				out.writeInt(line.LastAddress);
+				out.writeChar(line.SymbolHead);
+				out.writeByte(line.DendStatus.ordinal());
+			}
+
+			for (int i = Start; i < End; ++i) {
+				SPSSourceLine line = ctx.sourceLines.get(i);
+				out.writeByte(line.Processed ? 1 : 0);
+				out.writeByte(line.Statement.Listing.ordinal());
+				out.writeInt(line.LabelAddress);
+				out.writeInt(line.Address);
+				out.writeInt(line.Length);
+				out.writeInt(line.Count);
+				out.writeInt((line.Value == null) ? -1 : line.Value.length);
+				if (line.Value != null) {
+					out.write(line.Value);
+				}
+				out.writeInt((line.Messages == null) ? 0 : line.Messages.size());
+				if (line.Messages != null) {
+					for (String message: line.Messages) {
+						PutString(out, message);
+					}
+				}
+				out.writeInt(line.NextAddressCounter);
+				out.writeInt(line.NextLastAddress);
+				out.writeChar(line.NextSymbolHead);
+				out.writeByte(line.NextDendStatus.ordinal());
+			}
+
+		} catch (IOException | RuntimeException e) {
+			temp.delete();
+			return;
+		}
+		if (!temp.renameTo(file)) {
+			temp.delete();
+			return;
+		}
+
+		SPSOutputCache.Evict(ctx);
+	}
+
+	private static String Key(SPSContext ctx, int file, int start, int end) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 not available", e);
+		}
+
+		StringBuilder options = new StringBuilder();
+		options.append(SPSData.VERSION).append('|').append(ctx.sourceFormat).append('|').append(ctx.systemType).append('|')
+			   .append(ctx.indexOk).append('|').append(ctx.memorySize).append('|').append(ctx.produceWarnings).append('|')
+			   .append(ctx.symbolDivide).append('|').append(ctx.sourceMultipleFiles).append('|').append(file).append('|');
+		digest.update(options.toString().getBytes(StandardCharsets.UTF_8));
+
+		for (int i = start; i < end; ++i) {
+			SPSSourceLine line = ctx.sourceLines.get(i);
+			digest.update(line.Line.getBytes(StandardCharsets.UTF_8));
+			digest.update((byte)(line.Scanned ? '\n' : '\r'));
+		}
+
+		StringBuilder key = new StringBuilder();
+		for (byte b: digest.digest()) {
+			key.append(String.format("%02x", b));
+		}
+		return key.toString();
+	}
+
+	private static String GetString(ByteBuffer in) {
+		byte[] bytes = new byte[in.getInt()];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void PutString(DataOutputStream out, String string) throws IOException {
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+}
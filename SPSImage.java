@@ -0,0 +1,157 @@
+package SPS1620;
+
+/*
+ *  SPSImage.java - binary core image file, written with the other outputs and read back by simulators
+ *
+ *  IBM 1620 Jr Project, Computer History Museum, 2017-2024
+ *
+ *  To recreate the experience (visual, auditory, tactile, visceral) of running historic software on a 1960s-era computer.
+ *
+ *   Dave Babcock     - project lead, software, library
+ *   John M. Bohn Jr. - software
+ *   David Brock      - CHM sponsor
+ *   Steve Casner     - hardware, software
+ *   Joe Fredrick     - hardware, firmware
+ *   Len Shustek      - CHM advisor
+ *   Dag Spicer       - CHM advisor
+ *   David Wise       - IBM 1620 expert
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/*
+ *  Usage:   SPSImage image = SPSImage.Read(new File("PROG.img"));
+ *
+ *  An image file is big-endian and made of three parts, each starting where the one before it ends:
+ *
+ *     header     32 bytes    "SPSI", format version, model (1 or 2), memory size, entry address from DEND,
+ *                            number of segments, CRC-32 of the segment table and digits, and 0
+ *     segments   12 bytes    start address, number of digits, and file offset of the digits
+ *                each
+ *     digits                 each segment's digits, one byte each, as held in memory (flag 0x10, digit 0x0f)
+ *
+ *  The segments are the written ranges of memory in ascending order (see SPSMemory), so every digit
+ *  outside them is undefined.  A loader can map the file and copy each segment straight into its core
+ *  memory from the given offset.  Like the crd and pt files, no image is written after errors.
+ */
+
+public class SPSImage {
+
+	// Constants
+
+	private static final int MAGIC = 0x53505349;
+	private static final int VERSION = 1;
+	private static final int SIZE_HEADER = 32;
+	private static final int SIZE_SEGMENT = 12;
+
+	// Data
+
+	public int Model;
+	public int MemorySize;
+	public int EntryAddress;
+	public SPSMemory Memory;
+
+	// Methods
+
+	public static void Write(SPSContext ctx) {
+		ByteBuffer image = Encode(ctx);
+
+		if (ctx.outputBuffers) {
+			ctx.imgBuffer = new ByteArrayOutputStream(image.remaining());
+			ctx.imgBuffer.write(image.array(), 0, image.remaining());
+			return;
+		}
+
+		File file = SPSUtility.GetFile(ctx, ctx.imgFilename);
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+													StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (image.hasRemaining()) {
+				channel.write(image);
+			}
+		} catch (IOException e) {
+			SPSOutput.ReportError(ctx, "cannot write img file (" + ctx.imgFilename + ")");
+		}
+	}
+
+	public static void Delete(SPSContext ctx) {
+		if (ctx.outputBuffers) {
+			ctx.imgBuffer = null;
+		} else if (ctx.imgFilename != null) {
+			SPSUtility.GetFile(ctx, ctx.imgFilename).delete();
+		}
+	}
+
+	public static SPSImage Read(File file) throws IOException {
+		ByteBuffer in;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			if (channel.size() < SIZE_HEADER) throw new IOException("not an image file (" + file + ")");
+			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			in = mapped;
+		}
+
+		if ((in.getInt(0) != MAGIC) || (in.getInt(4) != VERSION)) throw new IOException("not an image file (" + file + ")");
+
+		SPSImage image = new SPSImage();
+		image.Model = in.getInt(8);
+		image.MemorySize = in.getInt(12);
+		image.EntryAddress = in.getInt(16);
+		int segments = in.getInt(20);
+		int checksum = in.getInt(24);
+		if ((image.MemorySize <= 0) || (segments < 0) || (segments > ((in.capacity() - SIZE_HEADER) / SIZE_SEGMENT))) {
+			throw new IOException("damaged image file (" + file + ")");
+		}
+
+		CRC32 crc = new CRC32();
+		crc.update(in.duplicate().position(SIZE_HEADER));
+		if ((int)crc.getValue() != checksum) throw new IOException("damaged image file (" + file + ")");
+
+		image.Memory = new SPSMemory(image.MemorySize);
+		for (int i = 0; i < segments; ++i) {
+			int entry = SIZE_HEADER + (i * SIZE_SEGMENT);
+			int start = in.getInt(entry);
+			int length = in.getInt(entry + 4);
+			int offset = in.getInt(entry + 8);
+			if ((start < 0) || (length < 0) || (length > (image.MemorySize - start)) || (offset < 0) ||
+				(length > (in.capacity() - offset))) {
+				throw new IOException("damaged image file (" + file + ")");
+			}
+			byte[] digits = new byte[length];
+			in.get(offset, digits);
+			image.Memory.Store(start, digits);
+		}
+		return image;
+	}
+
+	private static ByteBuffer Encode(SPSContext ctx) {
+		SPSRanges segments = ctx.memory.Ranges;
+		int digits = 0;
+		for (int i = 0; i < segments.Count; ++i) {
+			digits += segments.End(i) - segments.Start(i);
+		}
+
+		int offset = SIZE_HEADER + (segments.Count * SIZE_SEGMENT);
+		ByteBuffer image = ByteBuffer.allocate(offset + digits);
+		image.putInt(MAGIC).putInt(VERSION).putInt((ctx.systemType == SPSData.SystemType.MODEL_1) ? 1 : 2)
+			 .putInt(ctx.memorySize).putInt(ctx.dendAddress).putInt(segments.Count).putInt(0).putInt(0);
+
+		for (int i = 0; i < segments.Count; ++i) {
+			int length = segments.End(i) - segments.Start(i);
+			image.putInt(segments.Start(i)).putInt(length).putInt(offset);
+			ctx.memory.Get(segments.Start(i), image.array(), offset, length);
+			offset += length;
+		}
+
+		CRC32 crc = new CRC32();
+		crc.update(image.array(), SIZE_HEADER, image.capacity() - SIZE_HEADER);
+		image.putInt(24, (int)crc.getValue());
+		image.clear();
+		return image;
+	}
+}
@@ -19,208 +19,404 @@ package SPS1620;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.regex.Matcher;
 
 public class SPSInput {
 	
 	// Methods
 	
-	public static void OpenSource() {
+	public static void OpenSource(SPSContext ctx) {
 		
-		if (++SPSData.sourceCurrentFile < SPSData.sourceFileCount) {
-			SPSData.sourceFile = new File(SPSData.sourceFilenames[SPSData.sourceCurrentFile]);
+		if (++ctx.sourceCurrentFile < ctx.sourceFileCount) {
+			ctx.sourceFile = SPSUtility.GetFile(ctx, ctx.sourceFilenames[ctx.sourceCurrentFile]);
 		} else {
-			SPSData.sourceFile = null;
+			ctx.sourceFile = null;
 			return;
 		}
 		
 		try {
-			SPSData.sourceReader = new BufferedReader(new FileReader(SPSData.sourceFile));
-		} catch (FileNotFoundException e) {
-			SPSData.pass = 0;
-			SPSOutput.ReportError("cannot open source file (" + SPSData.sourceFilenames[SPSData.sourceCurrentFile] + ")");
-			System.exit(1);
+			if (ctx.byteScan && (ctx.sourceTexts != null)) {
+				ctx.sourceScanner = new SPSScanner(ctx.sourceTexts[ctx.sourceCurrentFile].getBytes(StandardCharsets.UTF_8),
+												   StandardCharsets.UTF_8);
+			} else if (ctx.byteScan && SPSScanner.IsAsciiCompatible(Charset.defaultCharset())) {
+				ctx.sourceScanner = new SPSScanner(Files.readAllBytes(ctx.sourceFile.toPath()), Charset.defaultCharset());
+			} else if (ctx.sourceTexts != null) {
+				ctx.sourceReader = new BufferedReader(new StringReader(ctx.sourceTexts[ctx.sourceCurrentFile]));
+			} else {
+				ctx.sourceReader = new BufferedReader(new FileReader(ctx.sourceFile));
+			}
+		} catch (IOException e) {
+			ctx.pass = 0;
+			SPSOutput.ReportError(ctx, "cannot open source file (" + ctx.sourceFilenames[ctx.sourceCurrentFile] + ")");
+			ctx.sourceFile = null;
+			ctx.abort = true;
+			return;
 		}
 		
-		if (SPSData.sourceMultipleFiles) {
-			SPSData.lineNumber = (SPSData.sourceCurrentFile + 1) << 18;
-		} else {
-			SPSData.lineNumber = 0;
+		if (ctx.pass == 1) {
+			ctx.sourceFileStart[ctx.sourceCurrentFile] = ctx.sourceLines.size();
 		}
 		
-		if ((SPSData.pass == 2) && SPSData.sourceMultipleFiles) {
-			SPSOutput.PrintFile();
+		if (ctx.sourceMultipleFiles) {
+			ctx.lineNumber = (ctx.sourceCurrentFile + 1) << 18;
+		} else {
+			ctx.lineNumber = 0;
 		}
 	}
 	
-	public static boolean ReadSource() {
+	public static boolean ReadSource(SPSContext ctx) {
 		
-		SPSData.inputLabel = "";
-		SPSData.inputOperation = "";
-		SPSData.inputOperands = "";
-		SPSData.inputOperand = new String[0];
-		SPSData.inputStatement = null;
-		SPSData.inputMessages = "";
+		ctx.inputStatement = null;
+		ctx.inputMessages = "";
+		ctx.inputDiagnostics = null;
 		
 		String input = null;
-		while (input == null) {
-			if (SPSData.sourceFile == null) return false;
+		SPSScanner scanner = null;
+		while ((input == null) && (scanner == null)) {
+			if (ctx.sourceFile == null) return false;
+			if (ctx.sourceScanner != null) {
+				if (!ctx.sourceScanner.NextLine(ctx)) {
+					CloseSource(ctx);
+					OpenSource(ctx);
+				} else if (ctx.sourceScanner.Ascii) {
+					scanner = ctx.sourceScanner;
+				} else {
+					input = ctx.sourceScanner.Text;
+				}
+				continue;
+			}
 			try {
-				input = SPSData.sourceReader.readLine();
+				input = ctx.sourceReader.readLine();
 				if (input == null) {
-					CloseSource();
-					OpenSource();
+					CloseSource(ctx);
+					OpenSource(ctx);
 				}
 			} catch (IOException e) {
-				SPSOutput.ReportError("error reading source file (" + e.getMessage() + ")");
-				CloseSource();
-				OpenSource();
+				Error(ctx, "error reading source file (" + e.getMessage() + ")");
+				CloseSource(ctx);
+				OpenSource(ctx);
 			}
 		}
-		SPSData.inputLine = SPSUtility.ExpandTabs(input.toUpperCase());
-		++SPSData.lineNumber;
-		++SPSData.lineCount;
+		if (scanner != null) {
+			ctx.inputLine = scanner.LineString();
+		} else {
+			ctx.inputLine = SPSUtility.ExpandTabs(ctx, input.toUpperCase());
+		}
+		++ctx.lineNumber;
+		++ctx.lineCount;
 		
-		if (!SPSUtility.IsValidLine(SPSData.inputLine)) {
-			SPSOutput.ReportError("invalid character(s) in statement");
-			SPSData.inputStatement = SPSStatement.Get("????");
-			return true;
+		ScanSource(ctx, scanner);
+		
+		if (ctx.pass == 1) {
+			ctx.sourceLines.add(new SPSSourceLine(ctx));
 		}
 		
-		if (SPSData.dendStatus != SPSData.DendStatus.NOT_SEEN) {
-			SPSData.inputStatement = SPSStatement.Get("????");
-			return true;
+		return true;
+	}
+	
+	public static void ScanLines(SPSContext ctx, SPSScanner scanner, List<SPSSourceLine> lines) {
+		
+		while (scanner.NextLine(ctx)) {
+			ctx.inputStatement = null;
+			ctx.inputMessages = "";
+			ctx.inputDiagnostics = null;
+			
+			if (scanner.Ascii) {
+				ctx.inputLine = scanner.LineString();
+				ScanSource(ctx, scanner);
+			} else {
+				ctx.inputLine = SPSUtility.ExpandTabs(ctx, scanner.Text.toUpperCase());
+				ScanSource(ctx, null);
+			}
+			lines.add(new SPSSourceLine(ctx));
+		}
+	}
+	
+	public static void AcceptSource(SPSContext ctx, SPSSourceLine line) {
+		
+		ctx.inputMessages = "";
+		ctx.inputDiagnostics = null;
+		ctx.inputLine = line.Line;
+		ctx.lineNumber = line.LineNumber;
+		++ctx.lineCount;
+		
+		if (ctx.dendStatus != SPSData.DendStatus.NOT_SEEN) {
+			ScanSource(ctx, null);
+		} else {
+			ctx.inputLabel = line.Label;
+			ctx.inputOperation = line.Operation;
+			ctx.inputOperands = line.Operands;
+			ctx.inputOperand = line.Operand;
+			ctx.inputStatement = line.Statement;
+			ctx.inputDiagnostics = line.Diagnostics;
+			
+			ReplayDiagnostics(ctx, line.Diagnostics);
+			
+			if ((ctx.inputStatement.Type == SPSStatement.StatementType.DAC) ||
+				(ctx.inputStatement.Type == SPSStatement.StatementType.DSAC)) {
+				SplitOperands(ctx);
+			}
+		}
+		
+		ctx.sourceLines.add(new SPSSourceLine(ctx));
+	}
+	
+	public static void ResumeSource(SPSContext ctx, SPSSourceLine line) {
+		
+		ctx.inputMessages = "";
+		ctx.inputLine = line.Line;
+		ctx.lineNumber = line.LineNumber;
+		ctx.inputLabel = line.Label;
+		ctx.inputOperation = line.Operation;
+		ctx.inputOperands = line.Operands;
+		ctx.inputOperand = line.Operand;
+		ctx.inputStatement = line.Statement;
+		ctx.inputDiagnostics = line.Diagnostics;
+		
+		if ((ctx.inputStatement.Type == SPSStatement.StatementType.DAC) ||
+			(ctx.inputStatement.Type == SPSStatement.StatementType.DSAC)) {
+			SplitOperands(ctx);
+			line.Operand = ctx.inputOperand;
+		}
+	}
+	
+	public static void LoadSource(SPSContext ctx, SPSSourceLine line) {
+		
+		ctx.inputMessages = "";
+		ctx.inputDiagnostics = null;
+		ctx.inputLine = line.Line;
+		ctx.lineNumber = line.LineNumber;
+		++ctx.lineCount;
+		
+		if (line.Scanned != (ctx.dendStatus == SPSData.DendStatus.NOT_SEEN)) {
+			ScanSource(ctx, null);
+			return;
+		}
+		
+		ctx.inputLabel = line.Label;
+		ctx.inputOperation = line.Operation;
+		ctx.inputOperands = line.Operands;
+		ctx.inputOperand = line.Operand;
+		ctx.inputStatement = line.Statement;
+		
+		ReplayDiagnostics(ctx, line.Diagnostics);
+		
+		if (line.Scanned && ((ctx.inputStatement.Type == SPSStatement.StatementType.DAC) ||
+							 (ctx.inputStatement.Type == SPSStatement.StatementType.DSAC))) {
+			SplitOperands(ctx);
+		}
+	}
+	
+	public static void ReplayDiagnostics(SPSContext ctx, List<String> diagnostics) {
+		
+		if (diagnostics == null) return;
+		
+		for (String diagnostic: diagnostics) {
+			if (diagnostic.charAt(0) == 'E') {
+				SPSOutput.ReportError(ctx, diagnostic.substring(1));
+			} else {
+				SPSOutput.ReportWarning(ctx, diagnostic.substring(1));
+			}
+		}
+	}
+	
+	private static void ScanSource(SPSContext ctx, SPSScanner scanner) {
+		
+		ctx.inputLabel = "";
+		ctx.inputOperation = "";
+		ctx.inputOperands = "";
+		ctx.inputOperand = new String[0];
+		
+		if ((scanner != null) ? !scanner.Valid : !SPSUtility.IsValidLine(ctx.inputLine)) {
+			Error(ctx, "invalid character(s) in statement");
+			ctx.inputStatement = SPSStatement.Get("????");
+			return;
+		}
+		
+		if (ctx.dendStatus != SPSData.DendStatus.NOT_SEEN) {
+			ctx.inputStatement = SPSStatement.Get("????");
+			return;
 		}
 					
-		if (SPSData.sourceFormat == SPSData.SourceFormat.FIXED) {
-			if (SPSUtility.IsEmpty(SPSUtility.Substring(SPSData.inputLine, 5, 75)) || (SPSUtility.CharAt(SPSData.inputLine, 5) == '*')) {
-				SPSData.inputStatement = SPSStatement.Get("*");
-				return true;
+		if (scanner != null) {
+			scanner.Fields(ctx);
+			if (scanner.Comment) {
+				ctx.inputStatement = SPSStatement.Get("*");
+				return;
+			} else {
+				ctx.inputLabel = scanner.Field(scanner.LabelStart, scanner.LabelEnd);
+				ctx.inputOperation = scanner.Field(scanner.OperationStart, scanner.OperationEnd);
+				ctx.inputOperands = scanner.Field(scanner.OperandsStart, scanner.OperandsEnd);
+			}
+		} else if (ctx.sourceFormat == SPSData.SourceFormat.FIXED) {
+			if (SPSUtility.IsEmpty(SPSUtility.Substring(ctx.inputLine, 5, 75)) || (SPSUtility.CharAt(ctx.inputLine, 5) == '*')) {
+				ctx.inputStatement = SPSStatement.Get("*");
+				return;
 			} else {
-				SPSData.inputLabel = SPSUtility.RTrim(SPSUtility.Substring(SPSData.inputLine, 5, 11));
-				SPSData.inputOperation = SPSUtility.RTrim(SPSUtility.Substring(SPSData.inputLine, 11, 15));
-				SPSData.inputOperands = SPSUtility.LTrim(SPSUtility.Substring(SPSData.inputLine, 15, 75));
+				ctx.inputLabel = SPSUtility.RTrim(SPSUtility.Substring(ctx.inputLine, 5, 11));
+				ctx.inputOperation = SPSUtility.RTrim(SPSUtility.Substring(ctx.inputLine, 11, 15));
+				ctx.inputOperands = SPSUtility.LTrim(SPSUtility.Substring(ctx.inputLine, 15, 75));
 			}
 		} else {
-			if (SPSUtility.IsEmpty(SPSData.inputLine) || (SPSUtility.CharAt(SPSData.inputLine, 0) == '*')) {
-				SPSData.inputStatement = SPSStatement.Get("*");
-				return true;
+			if (SPSUtility.IsEmpty(ctx.inputLine) || (SPSUtility.CharAt(ctx.inputLine, 0) == '*')) {
+				ctx.inputStatement = SPSStatement.Get("*");
+				return;
 			} else {
-				Matcher match = SPSData.PATTERN_FREEFORM.matcher(SPSData.inputLine);
+				Matcher match = SPSData.PATTERN_FREEFORM.matcher(ctx.inputLine);
 				if (match.matches()) {
 					if (match.group(1) != null) {
-						SPSData.inputLabel = match.group(1);
+						ctx.inputLabel = match.group(1);
 					}
 					if (match.group(2) != null) {
-						SPSData.inputOperation = match.group(2);
+						ctx.inputOperation = match.group(2);
 					}
 					if (match.group(4) != null) {
-						SPSData.inputOperands = SPSUtility.LTrim(match.group(3));
+						ctx.inputOperands = SPSUtility.LTrim(match.group(3));
 					}
 				}
 			}
 		}
 		
-		if (!SPSUtility.IsEmpty(SPSData.inputOperation)) {
-			SPSData.inputStatement = SPSStatement.Get(SPSData.inputOperation);
-			if (SPSData.inputStatement == null) {
-				char op1 = SPSUtility.CharAt(SPSData.inputOperation, 0);
-				if ((op1 >= '0') && (op1 <= '9') && (SPSData.inputOperation.length() > 1)) {
-					String op = Character.toString(op1) + Character.toString(SPSData.opCodeChar[SPSUtility.CharAt(SPSData.inputOperation, 1)]);
-					SPSData.inputStatement = SPSStatement.Get(op);
-					if (SPSData.inputStatement == null) {
+		if (!SPSUtility.IsEmpty(ctx.inputOperation)) {
+			ctx.inputStatement = SPSStatement.Get(ctx.inputOperation);
+			if (ctx.inputStatement == null) {
+				char op1 = SPSUtility.CharAt(ctx.inputOperation, 0);
+				if ((op1 >= '0') && (op1 <= '9') && (ctx.inputOperation.length() > 1)) {
+					String op = Character.toString(op1) + Character.toString(SPSData.opCodeChar[SPSUtility.CharAt(ctx.inputOperation, 1)]);
+					ctx.inputStatement = SPSStatement.Get(op);
+					if (ctx.inputStatement == null) {
 						int opCode;
 						try {
-							opCode = Integer.parseInt(SPSData.inputOperation);
+							opCode = Integer.parseInt(ctx.inputOperation);
 						} catch (NumberFormatException ex) {
 							opCode = 0;
 						}
-						SPSOutput.ReportWarning("invalid numeric operation code (" + SPSData.inputOperation + ")");
-						SPSData.inputStatement = SPSStatement.Get(opCode);
-					} else if ((SPSData.inputStatement.Model == SPSData.SystemType.MODEL_2) && (SPSData.systemType != SPSData.SystemType.MODEL_2)) {
-						SPSOutput.ReportError("model 2 instruction (" + SPSData.inputOperation + ")");
+						Warning(ctx, "invalid numeric operation code (" + ctx.inputOperation + ")");
+						ctx.inputStatement = SPSStatement.Get(opCode);
+					} else if ((ctx.inputStatement.Model == SPSData.SystemType.MODEL_2) && (ctx.systemType != SPSData.SystemType.MODEL_2)) {
+						Error(ctx, "model 2 instruction (" + ctx.inputOperation + ")");
 					}
 				} else {
-					SPSOutput.ReportError("invalid operation (" + SPSData.inputOperation + ")");
-					SPSData.inputStatement = SPSStatement.Get("????");
+					Error(ctx, "invalid operation (" + ctx.inputOperation + ")");
+					ctx.inputStatement = SPSStatement.Get("????");
 				}
-			} else if ((SPSData.inputStatement.Model == SPSData.SystemType.MODEL_2) && (SPSData.systemType != SPSData.SystemType.MODEL_2)) {
-				SPSOutput.ReportError("model 2 instruction (" + SPSData.inputOperation + ")");
+			} else if ((ctx.inputStatement.Model == SPSData.SystemType.MODEL_2) && (ctx.systemType != SPSData.SystemType.MODEL_2)) {
+				Error(ctx, "model 2 instruction (" + ctx.inputOperation + ")");
 			}
 		} else {
-			SPSOutput.ReportError("missing operation");
-			SPSData.inputStatement = SPSStatement.Get("????");
+			Error(ctx, "missing operation");
+			ctx.inputStatement = SPSStatement.Get("????");
 		}
 		
-		if ((SPSData.inputStatement.Type == SPSStatement.StatementType.DAC) ||
-			(SPSData.inputStatement.Type == SPSStatement.StatementType.DSAC)) {
-			SPSData.inputOperand = new String[3];
-			int pos = SPSData.inputOperands.indexOf(',');
-			int size = SPSData.inputOperands.length();
+		SplitOperands(ctx);
+	}
+	
+	private static void SplitOperands(SPSContext ctx) {
+		
+		if ((ctx.inputStatement.Type == SPSStatement.StatementType.DAC) ||
+			(ctx.inputStatement.Type == SPSStatement.StatementType.DSAC)) {
+			if (ctx.scanOnly) return;
+			ctx.inputOperand = new String[3];
+			int pos = ctx.inputOperands.indexOf(',');
+			int size = ctx.inputOperands.length();
 			if (pos == -1) {
-				SPSData.inputOperand[0] = SPSUtility.Strip(SPSData.inputOperands);
-				SPSData.inputOperand[1] = "";
-				SPSData.inputOperand[2] = "";
+				ctx.inputOperand[0] = SPSUtility.Strip(ctx.inputOperands);
+				ctx.inputOperand[1] = "";
+				ctx.inputOperand[2] = "";
 			} else {
-				SPSData.inputOperand[0] = SPSUtility.Strip(SPSData.inputOperands.substring(0, pos));
+				ctx.inputOperand[0] = SPSUtility.Strip(ctx.inputOperands.substring(0, pos));
 				if ((pos + 1) == size) {
-					SPSData.inputOperand[1] = "";
-					SPSData.inputOperand[2] = "";
+					ctx.inputOperand[1] = "";
+					ctx.inputOperand[2] = "";
 				} else {
-					int len = (int)SPSStatement.EvalOperand(SPSData.inputOperand[0], SPSData.lastAddress, false, true,
+					int len = (int)SPSStatement.EvalOperand(ctx, ctx.inputOperand[0], ctx.lastAddress, false, true,
 															SPSStatement.StatementCheck.NONE);
-					SPSData.inputOperand[1] = SPSData.inputOperands.substring(pos + 1, Math.min(pos + len + 1, size));
+					ctx.inputOperand[1] = ctx.inputOperands.substring(pos + 1, Math.min(pos + len + 1, size));
 					if ((pos + len + 1) >= size) {
-						SPSData.inputOperand[2] = "";
+						ctx.inputOperand[2] = "";
 					} else {
-						String[] temp = SPSData.PATTERN_SPLIT.split(SPSData.inputOperands.substring(pos + len + 1), -1);
+						String[] temp = SPSData.PATTERN_SPLIT.split(ctx.inputOperands.substring(pos + len + 1), -1);
 						if (!SPSUtility.IsEmpty(temp[0])) {
-							SPSOutput.ReportError("operand value too long");
+							SPSOutput.ReportError(ctx, "operand value too long");
 						}
 						if (temp.length == 1) {
-							SPSData.inputOperand[2] = "";
+							ctx.inputOperand[2] = "";
 						} else {
-							SPSData.inputOperand[2] = SPSUtility.Strip(temp[1]);
+							ctx.inputOperand[2] = SPSUtility.Strip(temp[1]);
 						}
 					}
 				}
 			}
 			
-		} else if (SPSData.inputStatement.Type == SPSStatement.StatementType.DSA) {
-			String[] temp = SPSData.PATTERN_SPLIT.split(SPSData.inputOperands, -1);
+		} else if (ctx.inputStatement.Type == SPSStatement.StatementType.DSA) {
+			String[] temp = SPSData.PATTERN_SPLIT.split(ctx.inputOperands, -1);
 			int size = temp.length;
 			if (temp.length > 10) {
-				SPSOutput.ReportError("more than 10 operands");
+				Error(ctx, "more than 10 operands");
 				size = 10;
 			}
-			SPSData.inputOperand = new String[size];
+			ctx.inputOperand = new String[size];
 			for (int i = 0; i < size; ++i) {
-				SPSData.inputOperand[i] = SPSUtility.Strip(temp[i]);
+				ctx.inputOperand[i] = SPSUtility.Strip(temp[i]);
+			}
+			
+		} else if (ctx.byteScan) {
+			int size = ctx.inputOperands.length();
+			int pos = 0;
+			ctx.inputOperand = new String[ctx.inputStatement.OpCnt];
+			for (int i = 0; i < ctx.inputStatement.OpCnt; ++i) {
+				int end = (pos < size) ? ctx.inputOperands.indexOf(',', pos) : -1;
+				if (end == -1) end = size;
+				ctx.inputOperand[i] = SPSUtility.Strip(ctx.inputOperands, Math.min(pos, size), end);
+				pos = end + 1;
 			}
 			
 		} else {
-			String[] temp = SPSData.PATTERN_SPLIT.split(SPSData.inputOperands + ",,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,", -1);
-			SPSData.inputOperand = new String[SPSData.inputStatement.OpCnt];
-			for (int i = 0; i < SPSData.inputStatement.OpCnt; ++i) {
-				SPSData.inputOperand[i] = SPSUtility.Strip(temp[i]);
+			String[] temp = SPSData.PATTERN_SPLIT.split(ctx.inputOperands + ",,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,,", -1);
+			ctx.inputOperand = new String[ctx.inputStatement.OpCnt];
+			for (int i = 0; i < ctx.inputStatement.OpCnt; ++i) {
+				ctx.inputOperand[i] = SPSUtility.Strip(temp[i]);
 			}
 		}
-		
-		return true;
 	}
 	
-	public static void CloseSource() {
+	private static void Error(SPSContext ctx, String error) {
+		SPSOutput.ReportError(ctx, error);
+		if (ctx.pass == 1) {
+			if (ctx.inputDiagnostics == null) ctx.inputDiagnostics = new ArrayList<String>();
+			ctx.inputDiagnostics.add("E" + error);
+		}
+	}
 	
-		if (SPSData.sourceFile != null) {
-			try {
-				SPSData.sourceReader.close();
-			} catch (IOException e) {
-				// ignore error
+	private static void Warning(SPSContext ctx, String warning) {
+		SPSOutput.ReportWarning(ctx, warning);
+		if (ctx.pass == 1) {
+			if (ctx.inputDiagnostics == null) ctx.inputDiagnostics = new ArrayList<String>();
+			ctx.inputDiagnostics.add("W" + warning);
+		}
+	}
+	
+	public static void CloseSource(SPSContext ctx) {
+	
+		if (ctx.sourceFile != null) {
+			if (ctx.sourceReader != null) {
+				try {
+					ctx.sourceReader.close();
+				} catch (IOException e) {
+					// ignore error
+				}
 			}
-			SPSData.sourceFile = null;
+			ctx.sourceReader = null;
+			ctx.sourceScanner = null;
+			ctx.sourceFile = null;
 		}
 	}
 }
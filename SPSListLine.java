@@ -0,0 +1,155 @@
+package SPS1620;
+
+/*
+ *  SPSListLine.java - a reusable character buffer that listing and cmem lines are built in
+ *
+ *  IBM 1620 Jr Project, Computer History Museum, 2017-2024
+ *
+ *  To recreate the experience (visual, auditory, tactile, visceral) of running historic software on a 1960s-era computer.
+ *
+ *   Dave Babcock     - project lead, software, library
+ *   John M. Bohn Jr. - software
+ *   David Brock      - CHM sponsor
+ *   Steve Casner     - hardware, software
+ *   Joe Fredrick     - hardware, firmware
+ *   Len Shustek      - CHM advisor
+ *   Dag Spicer       - CHM advisor
+ *   David Wise       - IBM 1620 expert
+ */
+
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+/*
+ *  Each method appends one field the way the matching String.format conversion would print it: Zero is
+ *  %0<width>d, Right is %<width>d, Left is %-<width>d, and Pad is %-<width>s of a substring clamped like
+ *  SPSUtility.Substring.  Hex is %02X of a digit, looked up in a table of every byte value.  Trim drops
+ *  trailing spaces and tabs back to a given position, as SPSUtility.RTrim would for the text appended
+ *  from there.  The buffer grows as needed and is kept for the next line.
+ */
+
+public class SPSListLine {
+
+	// Data
+
+	private static final char[] HEX_PAIRS = new char[512];
+
+	static {
+		String hex = "0123456789ABCDEF";
+		for (int i = 0; i < 256; ++i) {
+			HEX_PAIRS[2 * i] = hex.charAt(i >> 4);
+			HEX_PAIRS[(2 * i) + 1] = hex.charAt(i & 0xf);
+		}
+	}
+
+	private char[] chars = new char[256];
+	private int length = 0;
+	private char[] digits = new char[11];
+
+	// Methods
+
+	public SPSListLine Clear() {
+		length = 0;
+		return this;
+	}
+
+	public int Length() {
+		return length;
+	}
+
+	public SPSListLine Char(char c) {
+		Reserve(1);
+		chars[length++] = c;
+		return this;
+	}
+
+	public SPSListLine Spaces(int count) {
+		Reserve(count);
+		for (int i = 0; i < count; ++i) {
+			chars[length++] = ' ';
+		}
+		return this;
+	}
+
+	public SPSListLine Text(String str) {
+		return Text(str, 0, Integer.MAX_VALUE);
+	}
+
+	public SPSListLine Text(String str, int start, int end) {
+		if ((str == null) || (start >= str.length())) return this;
+		end = Math.min(end, str.length());
+		Reserve(end - start);
+		str.getChars(start, end, chars, length);
+		length += end - start;
+		return this;
+	}
+
+	public SPSListLine Pad(String str, int start, int end, int width) {
+		int from = length;
+		Text(str, start, end);
+		return Spaces(width - (length - from));
+	}
+
+	public SPSListLine Zero(int value, int width) {
+		return Number(value, width, '0', false);
+	}
+
+	public SPSListLine Right(int value, int width) {
+		return Number(value, width, ' ', false);
+	}
+
+	public SPSListLine Left(int value, int width) {
+		return Number(value, width, ' ', true);
+	}
+
+	public SPSListLine Hex(byte digit) {
+		int value = digit & 0xff;
+		Reserve(2);
+		chars[length++] = HEX_PAIRS[2 * value];
+		chars[length++] = HEX_PAIRS[(2 * value) + 1];
+		return this;
+	}
+
+	public SPSListLine Trim(int from) {
+		while ((length > from) && ((chars[length - 1] == ' ') || (chars[length - 1] == '\t'))) {
+			--length;
+		}
+		return this;
+	}
+
+	public void Write(PrintWriter writer) {
+		writer.write(chars, 0, length);
+	}
+
+	private SPSListLine Number(int value, int width, char pad, boolean left) {
+		long magnitude = Math.abs((long)value);
+		int count = 0;
+		do {
+			digits[count++] = (char)('0' + (magnitude % 10));
+			magnitude /= 10;
+		} while (magnitude != 0);
+
+		int size = count + ((value < 0) ? 1 : 0);
+		Reserve(Math.max(width, size));
+		if (!left && (pad == ' ')) {
+			for (int i = size; i < width; ++i) chars[length++] = ' ';
+		}
+		if (value < 0) chars[length++] = '-';
+		if (pad == '0') {
+			for (int i = size; i < width; ++i) chars[length++] = '0';
+		}
+		while (count > 0) {
+			chars[length++] = digits[--count];
+		}
+		if (left) {
+			for (int i = size; i < width; ++i) chars[length++] = ' ';
+		}
+		return this;
+	}
+
+	private void Reserve(int count) {
+		if ((length + count) > chars.length) {
+			chars = Arrays.copyOf(chars, Math.max(2 * chars.length, length + count));
+		}
+	}
+}
@@ -24,304 +24,496 @@ package SPS1620;
  *     1.03  12/15/2023   DJB   Correct zero-length data abort.
  */
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
 public class SPSMain {
 	
 	// Methods
 	
 	public static void main(String[] args) {
-		String base;
+		SPSContext ctx = new SPSContext();
 		
 		System.out.println("IBM 1620 Jr. SPS Assembler (v" + SPSData.VERSION + ")");
 
 		SPSStatement.Initialize();
 
-		ParseCommandLine(args);
-
-		SPSData.sourceMultipleFiles = SPSData.sourceFileCount > 1;
-
-		if (SPSData.sourceFileCount == 0) {
-			SPSOutput.ReportError("no source file");
+		if (!ParseCommandLine(ctx, args)) {
+			System.exit(0);
+		}
+		
+		if (ctx.serverOption) {
+			if (!SPSServer.Run(ctx)) {
+				System.exit(1);
+			}
+		} else if (ctx.batchOption) {
+			if (!SPSBatch.Run(ctx)) {
+				System.exit(1);
+			}
+		} else if (ctx.watchOption) {
+			if (!SPSWatch.Run(ctx)) {
+				System.exit(1);
+			}
+		} else if (!Assemble(ctx)) {
 			System.exit(1);
 		}
-		for (int i = 0; i < SPSData.sourceFileCount; ++i) {
-			if (!SPSData.sourceFilenames[i].endsWith(".sps")) {
-				SPSData.sourceFilenames[i] += ".sps";
+	}
+	
+	public static boolean Assemble(SPSContext ctx) {
+		String base;
+		
+		ctx.sourceMultipleFiles = ctx.sourceFileCount > 1;
+
+		if (ctx.sourceFileCount == 0) {
+			SPSOutput.ReportError(ctx, "no source file");
+			return false;
+		}
+		for (int i = 0; i < ctx.sourceFileCount; ++i) {
+			if (!ctx.sourceFilenames[i].endsWith(".sps")) {
+				ctx.sourceFilenames[i] += ".sps";
 			}
 		}
-		base = SPSData.sourceFilenames[0].substring(0, SPSData.sourceFilenames[0].length() - 4);
+		base = ctx.sourceFilenames[0].substring(0, ctx.sourceFilenames[0].length() - 4);
 
-		if (SPSData.lstOption && (SPSData.lstFilename == null)) {	
-			SPSData.lstFilename = base + ".lst";
+		if (ctx.lstOption && (ctx.lstFilename == null)) {	
+			ctx.lstFilename = base + ".lst";
 		}
 
-		if (SPSData.cmemOption && (SPSData.cmemFilename == null)) {	
-			SPSData.cmemFilename = base + ".cmem";
+		if (ctx.cmemOption && (ctx.cmemFilename == null)) {	
+			ctx.cmemFilename = base + ".cmem";
 		}
 
-		if (SPSData.crdOption && (SPSData.crdFilename == null)) {	
-			SPSData.crdFilename = base + ".crd";
+		if (ctx.crdOption && (ctx.crdFilename == null)) {	
+			ctx.crdFilename = base + ".crd";
 		}
 
-		if (SPSData.ptOption && (SPSData.ptFilename == null)) {	
-			SPSData.ptFilename = base + ".pt";
+		if (ctx.ptOption && (ctx.ptFilename == null)) {	
+			ctx.ptFilename = base + ".pt";
 		}
 
-		if (SPSData.sourceFileCount == 1) {
-			System.out.println("\nSource file:  " + SPSData.sourceFilenames[0]);
+		if (ctx.imgOption && (ctx.imgFilename == null)) {	
+			ctx.imgFilename = base + ".img";
+		}
+
+		if (ctx.sourceFileCount == 1) {
+			ctx.console.println("\nSource file:  " + ctx.sourceFilenames[0]);
 		} else {
-			System.out.println("\nSource files: 1. " + SPSData.sourceFilenames[0]);
-			for (int i = 1; i < SPSData.sourceFileCount; ++i) {
-				System.out.println("              " + (i + 1) + ". " + SPSData.sourceFilenames[i]);
+			ctx.console.println("\nSource files: 1. " + ctx.sourceFilenames[0]);
+			for (int i = 1; i < ctx.sourceFileCount; ++i) {
+				ctx.console.println("              " + (i + 1) + ". " + ctx.sourceFilenames[i]);
 			}
-			System.out.println("");
+			ctx.console.println("");
 		}
-		System.out.println("Lst file:     " + (SPSData.lstOption ? SPSData.lstFilename : "<none>"));
-		System.out.println("Cmem file:    " + (SPSData.cmemOption ? SPSData.cmemFilename : "<none>"));
-		System.out.println("Crd file:     " + (SPSData.crdOption ? SPSData.crdFilename : "<none>"));
-		System.out.println("Pt file:      " + (SPSData.ptOption ? SPSData.ptFilename : "<none>") + "\n");
+		ctx.console.println("Lst file:     " + (ctx.lstOption ? ctx.lstFilename : "<none>"));
+		ctx.console.println("Cmem file:    " + (ctx.cmemOption ? ctx.cmemFilename : "<none>"));
+		ctx.console.println("Crd file:     " + (ctx.crdOption ? ctx.crdFilename : "<none>"));
+		ctx.console.println("Pt file:      " + (ctx.ptOption ? ctx.ptFilename : "<none>"));
+		ctx.console.println("Img file:     " + (ctx.imgOption ? ctx.imgFilename : "<none>") + "\n");
 
-		System.out.println("Source format:       " + ((SPSData.sourceFormat == SPSData.SourceFormat.FIXED) ? "fixed" : "freeform"));
-		System.out.println("System type:         " + ((SPSData.systemType == SPSData.SystemType.MODEL_1) ? "model 1" : "model 2"));
-		System.out.println("Memory size:         " + SPSData.memorySize);
-		System.out.println("Include tables:      " + (SPSData.includeTables ? "yes" : "no"));
-		System.out.println("Initial address:     " + (SPSData.initialAddressCounter));
-		System.out.println("Load halt:           " + (SPSData.loadHalt ? "yes" : "no"));
-		System.out.println("Produce warnings:    " + (SPSData.produceWarnings ? "yes" : "no"));
-		System.out.println("Print pass 1 errors: " + (SPSData.pass1Errors ? "yes" : "no"));
-		System.out.println("Symbol divide:       " + (SPSData.symbolDivide ? "yes" : "no"));
-		System.out.print  ("Tab stops:           ");
-			if (SPSData.sourceFormat == SPSData.SourceFormat.FIXED) {
-				System.out.println("n/a");
+		ctx.console.println("Source format:       " + ((ctx.sourceFormat == SPSData.SourceFormat.FIXED) ? "fixed" : "freeform"));
+		ctx.console.println("System type:         " + ((ctx.systemType == SPSData.SystemType.MODEL_1) ? "model 1" : "model 2"));
+		ctx.console.println("Memory size:         " + ctx.memorySize);
+		ctx.console.println("Include tables:      " + (ctx.includeTables ? "yes" : "no"));
+		ctx.console.println("Initial address:     " + (ctx.initialAddressCounter));
+		ctx.console.println("Load halt:           " + (ctx.loadHalt ? "yes" : "no"));
+		ctx.console.println("Produce warnings:    " + (ctx.produceWarnings ? "yes" : "no"));
+		ctx.console.println("Print pass 1 errors: " + (ctx.pass1Errors ? "yes" : "no"));
+		ctx.console.println("Symbol divide:       " + (ctx.symbolDivide ? "yes" : "no"));
+		ctx.console.print  ("Tab stops:           ");
+			if (ctx.sourceFormat == SPSData.SourceFormat.FIXED) {
+				ctx.console.println("n/a");
 			} else {
-				for (int i = 0; i < SPSData.tabTable.length; ++i) {
-					if (i > 0) System.out.print(",");
-					System.out.print(SPSData.tabTable[i]);
+				for (int i = 0; i < ctx.tabTable.length; ++i) {
+					if (i > 0) ctx.console.print(",");
+					ctx.console.print(ctx.tabTable[i]);
+				}
+				ctx.console.println("");
+			}
+		ctx.console.println("");
+
+		if (ctx.errorCount == 0) {
+			String key = SPSOutputCache.Key(ctx);
+			if ((key == null) || !SPSOutputCache.Restore(ctx, key)) {
+				PrintStream console = ctx.console;
+				ByteArrayOutputStream passes = new ByteArrayOutputStream();
+				int firstDiagnostic = (ctx.diagnostics != null) ? ctx.diagnostics.size() : 0;
+				
+				if (key != null) {
+					ctx.console = new PrintStream(passes, true);
 				}
-				System.out.println("");
+				boolean completed = Passes(ctx);
+				if (key != null) {
+					ctx.console = console;
+					ctx.console.print(passes.toString());
+					if (completed) {
+						SPSOutputCache.Save(ctx, key, passes.toString(), firstDiagnostic);
+					}
+				}
+				if (!completed) return false;
 			}
-		System.out.println("");
+		}
 
-		if (SPSData.errorCount == 0) {
+		ctx.console.println("\nEnd of assembly");
+		
+		return true;
+	}
+	
+	private static boolean Passes(SPSContext ctx) {
+		
+		if (ctx.onePass && SPSPasses.OnePass(ctx)) {
 			
-			SPSPasses.Pass1();
-			System.out.println("\nEnd of Pass 1, " + SPSData.lineCount + " lines, " + SPSData.errorCount + " error(s), " +
-							   SPSData.warningCount + " warning(s)");
+			if (ctx.abort) return false;
+			ctx.console.println("\nEnd of one-pass assembly, " + ctx.lineCount + " lines, " + ctx.errorCount + " error(s), " +
+							   ctx.warningCount + " warning(s)");
 
-			SPSPasses.Pass2();
-			System.out.println("\nEnd of Pass 2, " + SPSData.lineCount + " lines, " + SPSData.errorCount + " error(s), " +
-							   SPSData.warningCount + " warning(s)");
-		}
+		} else {
+			
+			if (ctx.parallel) {
+				SPSPasses.ParallelPass1(ctx);
+			} else {
+				SPSPasses.Pass1(ctx);
+			}
+			if (ctx.abort) return false;
+			ctx.console.println("\nEnd of Pass 1, " + ctx.lineCount + " lines, " + ctx.errorCount + " error(s), " +
+							   ctx.warningCount + " warning(s)");
 
-		System.out.println("\nEnd of assembly");
+			if (ctx.parallel) {
+				SPSPasses.ParallelPass2(ctx);
+			} else {
+				SPSPasses.Pass2(ctx);
+			}
+			if (ctx.abort) return false;
+			ctx.console.println("\nEnd of Pass 2, " + ctx.lineCount + " lines, " + ctx.errorCount + " error(s), " +
+							   ctx.warningCount + " warning(s)");
+		}
+		
+		return true;
 	}
 	
-	static void ParseCommandLine(String[] args) {
+	static boolean ParseCommandLine(SPSContext ctx, String[] args) {
 		String tabs = null;
+		List<String> sources = new ArrayList<String>();
 		
 		for (String arg: args) {
 			int len = arg.length();
 			String larg = arg.toLowerCase();
 			if ((len == 6) && larg.equals("-fixed")) {
-				SPSData.sourceFormat = SPSData.SourceFormat.FIXED;
+				ctx.sourceFormat = SPSData.SourceFormat.FIXED;
 			} else if ((len == 9) && larg.equals("-freeform")) {
-				SPSData.sourceFormat = SPSData.SourceFormat.FREEFORM;
+				ctx.sourceFormat = SPSData.SourceFormat.FREEFORM;
 				
 			} else if ((len == 7) && larg.equals("-model1")) {
-				SPSData.systemType = SPSData.SystemType.MODEL_1;
-				SPSData.indexOk = false;
+				ctx.systemType = SPSData.SystemType.MODEL_1;
+				ctx.indexOk = false;
 			} else if ((len == 7) && larg.equals("-model2")) {
-				SPSData.systemType = SPSData.SystemType.MODEL_2;
-				SPSData.indexOk = true;
+				ctx.systemType = SPSData.SystemType.MODEL_2;
+				ctx.indexOk = true;
 				
 			} else if ((len == 3) && arg.equals("-20")) {
-				SPSData.memorySize = 20000;
+				ctx.memorySize = 20000;
 			} else if ((len == 3) && arg.equals("-40")) {
-				SPSData.memorySize = 40000;
+				ctx.memorySize = 40000;
 			} else if ((len == 3) && arg.equals("-60")) {
-				SPSData.memorySize = 60000;
+				ctx.memorySize = 60000;
 			} else if ((len == 3) && arg.equals("-80")) {
-				SPSData.memorySize = 80000;
+				ctx.memorySize = 80000;
 			} else if ((len == 4) && arg.equals("-100")) {
-				SPSData.memorySize = 100000;
+				ctx.memorySize = 100000;
 				
 			} else if ((len == 6) && larg.equals("-nolst")) {
-				SPSData.lstOption = false;
-				SPSData.lstFilename = null;
+				ctx.lstOption = false;
+				ctx.lstFilename = null;
 			} else if ((len == 4) && larg.equals("-lst")) {
-				SPSData.lstOption = true;
+				ctx.lstOption = true;
 			} else if ((len > 5) && larg.startsWith("-lst=")) {
-				SPSData.lstOption = true;
-				SPSData.lstFilename = arg.substring(5);	
+				ctx.lstOption = true;
+				ctx.lstFilename = arg.substring(5);	
 				
 			} else if ((len == 7) && larg.equals("-nocmem")) {
-				SPSData.cmemOption = false;
-				SPSData.cmemFilename = null;
+				ctx.cmemOption = false;
+				ctx.cmemFilename = null;
 			} else if ((len == 5) && larg.equals("-cmem")) {
-				SPSData.cmemOption = true;
+				ctx.cmemOption = true;
 			} else if ((len > 6) && larg.startsWith("-cmem=")) {
-				SPSData.cmemOption = true;
-				SPSData.cmemFilename = arg.substring(6);
+				ctx.cmemOption = true;
+				ctx.cmemFilename = arg.substring(6);
 				
 			} else if ((len == 6) && larg.equals("-nocrd")) {
-				SPSData.crdOption = false;
-				SPSData.crdFilename = null;
+				ctx.crdOption = false;
+				ctx.crdFilename = null;
 			} else if ((len == 4) && larg.equals("-crd")) {
-				SPSData.crdOption = true;
+				ctx.crdOption = true;
 			} else if ((len > 5) && larg.startsWith("-crd=")) {
-				SPSData.crdOption = true;
-				SPSData.crdFilename = arg.substring(5);
+				ctx.crdOption = true;
+				ctx.crdFilename = arg.substring(5);
 				
 			} else if ((len == 5) && larg.equals("-nopt")) {
-				SPSData.ptOption = false;
-				SPSData.ptFilename = null;
+				ctx.ptOption = false;
+				ctx.ptFilename = null;
 			} else if ((len == 3) && larg.equals("-pt")) {
-				SPSData.ptOption = true;
+				ctx.ptOption = true;
 			} else if ((len > 4) && larg.startsWith("-pt=")) {
-				SPSData.ptOption = true;
-				SPSData.ptFilename = arg.substring(4);
+				ctx.ptOption = true;
+				ctx.ptFilename = arg.substring(4);
+				
+			} else if ((len == 6) && larg.equals("-noimg")) {
+				ctx.imgOption = false;
+				ctx.imgFilename = null;
+			} else if ((len == 4) && larg.equals("-img")) {
+				ctx.imgOption = true;
+			} else if ((len > 5) && larg.startsWith("-img=")) {
+				ctx.imgOption = true;
+				ctx.imgFilename = arg.substring(5);
+			} else if ((len == 7) && larg.equals("-ptonly")) {
+				ctx.lstOption = false;
+				ctx.lstFilename = null;
+				ctx.cmemOption = false;
+				ctx.cmemFilename = null;
+				ctx.crdOption = false;
+				ctx.crdFilename = null;
+				ctx.imgOption = false;
+				ctx.imgFilename = null;
+				ctx.ptOption = true;
 				
 			} else if ((len == 7) && larg.equals("-tables")) {
-				SPSData.includeTables = true;
+				ctx.includeTables = true;
 			} else if ((len == 9) && larg.equals("-notables")) {
-				SPSData.includeTables = false;
+				ctx.includeTables = false;
 
 			} else if ((len > 6) && larg.startsWith("-dorg=")) {
 				try {
-					SPSData.initialAddressCounter = Integer.parseInt(arg.substring(6));
+					ctx.initialAddressCounter = Integer.parseInt(arg.substring(6));
 				} catch (NumberFormatException e) {
-					SPSOutput.ReportError("invalid dorg address (" + arg.substring(6) + ")");
+					SPSOutput.ReportError(ctx, "invalid dorg address (" + arg.substring(6) + ")");
                 }
 				
 			} else if ((len == 5) && larg.equals("-halt")) {
-				SPSData.loadHalt = true;
+				ctx.loadHalt = true;
 			} else if ((len == 7) && larg.equals("-nohalt")) {
-				SPSData.loadHalt = false;
+				ctx.loadHalt = false;
 				
 			} else if ((len == 5) && larg.equals("-warn")) {
-				SPSData.produceWarnings = true;
+				ctx.produceWarnings = true;
 			} else if ((len == 7) && larg.equals("-nowarn")) {
-				SPSData.produceWarnings = false;
+				ctx.produceWarnings = false;
 				
 			} else if ((len == 12) && larg.equals("-pass1errors")) {
-				SPSData.pass1Errors = true;
+				ctx.pass1Errors = true;
 			} else if ((len == 14) && larg.equals("-nopass1errors")) {
-				SPSData.pass1Errors = false;
+				ctx.pass1Errors = false;
 				
 			} else if ((len == 13) && larg.equals("-symboldivide")) {
-				SPSData.symbolDivide = true;
+				ctx.symbolDivide = true;
 			} else if ((len == 15) && larg.equals("-nosymboldivide")) {
-				SPSData.symbolDivide = false;
+				ctx.symbolDivide = false;
+				
+			} else if ((len == 9) && larg.equals("-bytescan")) {
+				ctx.byteScan = true;
+			} else if ((len == 11) && larg.equals("-nobytescan")) {
+				ctx.byteScan = false;
+			} else if ((len == 8) && larg.equals("-onepass")) {
+				ctx.onePass = true;
+			} else if ((len == 8) && larg.equals("-twopass")) {
+				ctx.onePass = false;
+			} else if ((len == 9) && larg.equals("-parallel")) {
+				ctx.parallel = true;
+			} else if ((len == 11) && larg.equals("-noparallel")) {
+				ctx.parallel = false;
+			} else if ((len > 7) && larg.startsWith("-cache=")) {
+				ctx.cacheDirectory = arg.substring(7);
+			} else if ((len == 8) && larg.equals("-nocache")) {
+				ctx.cacheDirectory = null;
+			} else if ((len > 11) && larg.startsWith("-cachesize=")) {
+				try {
+					ctx.cacheSize = Integer.parseInt(arg.substring(11));
+				} catch (NumberFormatException e) {
+					ctx.cacheSize = -1;
+				}
+				if (ctx.cacheSize < 0) {
+					SPSOutput.ReportError(ctx, "invalid cache size (" + arg.substring(11) + ")");
+					ctx.cacheSize = SPSData.SIZE_CACHE;
+				}
+			} else if ((len > 6) && larg.startsWith("-date=")) {
+				ctx.dateTime = arg.substring(6);
+				ctx.dateFixed = true;
 				
 			} else if ((len > 6) && larg.startsWith("-tabs=")) {
 				tabs = arg.substring(6);
+				
+			} else if ((len == 6) && larg.equals("-batch")) {
+				ctx.batchOption = true;
+			} else if ((len > 7) && larg.startsWith("-batch=")) {
+				ctx.batchOption = true;
+				ctx.batchManifest = arg.substring(7);
+			} else if ((len > 6) && larg.startsWith("-jobs=")) {
+				try {
+					ctx.batchJobs = Integer.parseInt(arg.substring(6));
+				} catch (NumberFormatException e) {
+					ctx.batchJobs = 0;
+				}
+				if (ctx.batchJobs < 1) {
+					SPSOutput.ReportError(ctx, "invalid jobs value (" + arg.substring(6) + ")");
+					ctx.batchJobs = 0;
+				}
+			} else if ((len > 9) && larg.startsWith("-summary=")) {
+				ctx.batchSummary = arg.substring(9);
+				
+			} else if ((len == 7) && larg.equals("-server")) {
+				ctx.serverOption = true;
+				ctx.serverSocket = null;
+			} else if ((len > 8) && larg.startsWith("-server=")) {
+				ctx.serverOption = true;
+				ctx.serverSocket = arg.substring(8);
+				
+			} else if ((len == 6) && larg.equals("-watch")) {
+				ctx.watchOption = true;
 			
 			} else if ((len == 5) && larg.equals("-help")) {
-				PrintHelp();
-				System.exit(0);
+				PrintHelp(ctx);
+				return false;
 				
 			} else if ((len > 0) && (arg.charAt(0) == '-')) {
-				SPSOutput.ReportError("invalid option (" + arg + ")");
+				SPSOutput.ReportError(ctx, "invalid option (" + arg + ")");
 				
 			} else {
-				if (SPSData.sourceFileCount == (SPSData.SIZE_SOURCE_TABLE - 1)) {
-					SPSOutput.ReportError("too many source files");
-					System.exit(0);
+				sources.add(arg);
+			}
+		}
+		
+		if (ctx.batchOption) {
+			ctx.batchPrograms.addAll(sources);
+		} else {
+			for (String source: sources) {
+				if (ctx.sourceFileCount == (SPSData.SIZE_SOURCE_TABLE - 1)) {
+					SPSOutput.ReportError(ctx, "too many source files");
+					return false;
 				}
-				SPSData.sourceFilenames[SPSData.sourceFileCount++] = arg;
+				ctx.sourceFilenames[ctx.sourceFileCount++] = source;
 			}
 		}
 		
 		if (tabs != null) {
-			if (SPSData.sourceFormat == SPSData.SourceFormat.FIXED) {
-				SPSOutput.ReportWarning("-tabs option only valid with -freeform");
+			if (ctx.sourceFormat == SPSData.SourceFormat.FIXED) {
+				SPSOutput.ReportWarning(ctx, "-tabs option only valid with -freeform");
 			} else {
-				ProcessTabs(tabs);
+				ProcessTabs(ctx, tabs);
 			}
-		} else if (SPSData.sourceFormat == SPSData.SourceFormat.FREEFORM) {
-			SPSData.tabTable = new byte[1];
-			SPSData.tabTable[0] = SPSData.DEFAULT_TABS;
+		} else if ((ctx.sourceFormat == SPSData.SourceFormat.FREEFORM) && (ctx.tabTable == null)) {
+			ctx.tabTable = new byte[1];
+			ctx.tabTable[0] = SPSData.DEFAULT_TABS;
 		}
+		
+		return true;
 	}
 	
-	static void ProcessTabs(String tabs) {
+	static void ProcessTabs(SPSContext ctx, String tabs) {
 		String[] temp = SPSData.PATTERN_SPLIT.split(tabs, -1);
 		int size = temp.length;
 		int last = 0;
 		
-		SPSData.tabTable = new byte[size];
+		ctx.tabTable = new byte[size];
 		for (int i = 0; i < size; ++i) {
 			if (SPSUtility.IsValidNumber(temp[i])) {
 				int val = Integer.parseInt(temp[i]);
 				if ((val >= 1) && (val <= SPSData.SIZE_LINE) && (val > last)) {
-					SPSData.tabTable[i] = (byte)val;
+					ctx.tabTable[i] = (byte)val;
 					last = val;
 				} else {
-					SPSOutput.ReportError("invalid tabs value (" + tabs + ")");
-					SPSData.tabTable = new byte[1];
-					SPSData.tabTable[0] = SPSData.DEFAULT_TABS;
+					SPSOutput.ReportError(ctx, "invalid tabs value (" + tabs + ")");
+					ctx.tabTable = new byte[1];
+					ctx.tabTable[0] = SPSData.DEFAULT_TABS;
 					break;
 				}
 			} else {
-				SPSOutput.ReportError("invalid tabs value (" + tabs + ")");
-				SPSData.tabTable = new byte[1];
-				SPSData.tabTable[0] = SPSData.DEFAULT_TABS;
+				SPSOutput.ReportError(ctx, "invalid tabs value (" + tabs + ")");
+				ctx.tabTable = new byte[1];
+				ctx.tabTable[0] = SPSData.DEFAULT_TABS;
 				break;
 			}
 		}
 	}
 	
-	static void PrintHelp() {
+	static void PrintHelp(SPSContext ctx) {
 		
-		System.out.println("Command line: SPS1620 [options] <sourcefile1>[.sps] ...\n");
+		ctx.console.println("Command line: SPS1620 [options] <sourcefile1>[.sps] ...\n");
 	
-		System.out.println("Options:\n");
+		ctx.console.println("Options:\n");
+
+		ctx.console.println("  -lst               - listing file <sourcefile1>.lst [default]");
+		ctx.console.println("  -lst=<filename>    - listing file");
+		ctx.console.println("  -nolst             - no listing file\n");
 
-		System.out.println("  -lst               - listing file <sourcefile1>.lst [default]");
-		System.out.println("  -lst=<filename>    - listing file");
-		System.out.println("  -nolst             - no listing file\n");
+		ctx.console.println("  -cmem              - output cmem file <sourcefile1>.cmem");
+		ctx.console.println("  -cmem=<filename>   - output cmem file");
+		ctx.console.println("  -nocmem            - no cmem file [default]\n");
 
-		System.out.println("  -cmem              - output cmem file <sourcefile1>.cmem");
-		System.out.println("  -cmem=<filename>   - output cmem file");
-		System.out.println("  -nocmem            - no cmem file [default]\n");
+		ctx.console.println("  -crd               - output crd file <sourcefile1>.crd");
+		ctx.console.println("  -crd=<filename>    - output crd file");
+		ctx.console.println("  -nocrd             - no crd file [default]\n");
 
-		System.out.println("  -crd               - output crd file <sourcefile1>.crd");
-		System.out.println("  -crd=<filename>    - output crd file");
-		System.out.println("  -nocrd             - no crd file [default]\n");
+		ctx.console.println("  -pt                - output pt file <sourcefile1>.pt");
+		ctx.console.println("  -pt=<filename>     - output pt file");
+		ctx.console.println("  -nopt              - no pt file [default]");
+		ctx.console.println("  -ptonly            - output only the pt file, e.g. with -batch to punch tapes for many programs\n");
 
-		System.out.println("  -pt                - output pt file <sourcefile1>.pt");
-		System.out.println("  -pt=<filename>     - output pt file");
-		System.out.println("  -nopt              - no pt file [default]\n");
+		ctx.console.println("  -img               - output binary core image file <sourcefile1>.img");
+		ctx.console.println("  -img=<filename>    - output binary core image file");
+		ctx.console.println("  -noimg             - no img file [default]\n");
 		
-		System.out.println("  -fixed             - strict columns (6,12,16) source file [default]");
-		System.out.println("  -freeform          - freeform source file\n");
+		ctx.console.println("  -fixed             - strict columns (6,12,16) source file [default]");
+		ctx.console.println("  -freeform          - freeform source file\n");
 		
-		System.out.println("  -model1            - IBM 1620 model 1 [default]");
-		System.out.println("  -model2            - IBM 1620 model 2\n");
+		ctx.console.println("  -model1            - IBM 1620 model 1 [default]");
+		ctx.console.println("  -model2            - IBM 1620 model 2\n");
 		
-		System.out.println("  -20                - 20,000 memory size");
-		System.out.println("  -40                - 40,000 memory size");
-		System.out.println("  -60                - 60,000 memory size [default]\n");
+		ctx.console.println("  -20                - 20,000 memory size");
+		ctx.console.println("  -40                - 40,000 memory size");
+		ctx.console.println("  -60                - 60,000 memory size [default]\n");
 		
-		System.out.println("  -tables            - include arithmetic table(s) [default]");
-		System.out.println("  -notables          - do not include arithmetic table(s)\n");
+		ctx.console.println("  -tables            - include arithmetic table(s) [default]");
+		ctx.console.println("  -notables          - do not include arithmetic table(s)\n");
 
-		System.out.println("  -dorg=<address>    - set initial address [default = 402]\n");
+		ctx.console.println("  -dorg=<address>    - set initial address [default = 402]\n");
 		
-		System.out.println("  -halt              - generate a halt instruction at end of load [default]");
-		System.out.println("  -nohalt            - do not generate a halt at end of load\n");
+		ctx.console.println("  -halt              - generate a halt instruction at end of load [default]");
+		ctx.console.println("  -nohalt            - do not generate a halt at end of load\n");
 		
-		System.out.println("  -warn              - produce warning messages [default]");
-		System.out.println("  -nowarn            - do not produce warning messages\n");
+		ctx.console.println("  -warn              - produce warning messages [default]");
+		ctx.console.println("  -nowarn            - do not produce warning messages\n");
 		
-		System.out.println("  -pass1errors       - print pass 1 errors");
-		System.out.println("  -nopass1errors     - do not print pass 1 errors [default]\n");
+		ctx.console.println("  -pass1errors       - print pass 1 errors");
+		ctx.console.println("  -nopass1errors     - do not print pass 1 errors [default]\n");
 
-		System.out.println("  -symboldivide      - allow / in symbols, no divide in expressions [default]");
-		System.out.println("  -nosymboldivide    - do not allow / in symbols, divide allowed in expressions\n");
+		ctx.console.println("  -symboldivide      - allow / in symbols, no divide in expressions [default]");
+		ctx.console.println("  -nosymboldivide    - do not allow / in symbols, divide allowed in expressions\n");
+		
+		ctx.console.println("  -bytescan          - scan source files as bytes in one pass [default]");
+		ctx.console.println("  -nobytescan        - read source files by line and parse with regular expressions\n");
+		
+		ctx.console.println("  -onepass           - assemble in one pass with fixups, to check the two passes (not faster)");
+		ctx.console.println("  -twopass           - assemble in two passes [default]");
+		ctx.console.println("  -parallel          - scan and generate code in parallel chunks, writing outputs on another thread");
+		ctx.console.println("  -noparallel        - scan, generate code and write outputs one statement at a time [default]");
+		ctx.console.println("  -cache=<directory> - reuse saved results of unchanged source files, and of programs with -date");
+		ctx.console.println("  -nocache           - do not save or reuse results [default]");
+		ctx.console.println("  -cachesize=<mb>    - keep the cache directory within mb megabytes [default = " + SPSData.SIZE_CACHE + "]");
+		ctx.console.println("  -date=<text>       - show text as the assembly date, for reproducible outputs\n");
 		
-		System.out.println("  -tabs=<n>          - set tabs to n spaces [default = " + SPSData.DEFAULT_TABS + "]");
-		System.out.println("  -tabs=<n1,n2,...>  - set tabs at columns n1, n2, ...\n");
+		ctx.console.println("  -tabs=<n>          - set tabs to n spaces [default = " + SPSData.DEFAULT_TABS + "]");
+		ctx.console.println("  -tabs=<n1,n2,...>  - set tabs at columns n1, n2, ...\n");
 	
-		System.out.println("  -help              - this command help\n");
+		ctx.console.println("  -batch             - assemble each source file as a separate program");
+		ctx.console.println("  -batch=<manifest>  - assemble each manifest line ([options] <sourcefile1> ...) as a program");
+		ctx.console.println("  -jobs=<n>          - number of batch or server worker threads [default = number of processors]");
+		ctx.console.println("  -summary=<file>    - also write the batch summary to a file\n");
+		
+		ctx.console.println("  -server            - serve assembly requests on stdin/stdout");
+		ctx.console.println("  -server=<socket>   - serve assembly requests on a Unix-domain socket\n");
+		
+		ctx.console.println("  -watch             - reassemble whenever a source file is saved, rewriting only changed outputs\n");
+		
+		ctx.console.println("  -help              - this command help\n");
 	}
 }
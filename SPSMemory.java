@@ -0,0 +1,207 @@
+package SPS1620;
+
+/*
+ *  SPSMemory.java - a core memory image kept in pages that are allocated when first written
+ *
+ *  IBM 1620 Jr Project, Computer History Museum, 2017-2024
+ *
+ *  To recreate the experience (visual, auditory, tactile, visceral) of running historic software on a 1960s-era computer.
+ *
+ *   Dave Babcock     - project lead, software, library
+ *   John M. Bohn Jr. - software
+ *   David Brock      - CHM sponsor
+ *   Steve Casner     - hardware, software
+ *   Joe Fredrick     - hardware, firmware
+ *   Len Shustek      - CHM advisor
+ *   Dag Spicer       - CHM advisor
+ *   David Wise       - IBM 1620 expert
+ */
+
+import java.util.Arrays;
+
+/*
+ *  Memory is split into pages of SIZE_PAGE digits.  A page that was never written is not allocated and
+ *  reads as MEMORY_UNDEF, so an image costs about as much as the program it holds.  Ranges records the
+ *  addresses written (see SPSRanges), so NextDefined and LastDefined only look at those; a written digit
+ *  may still be MEMORY_UNDEF, since values are stored as they are.
+ *
+ *  Snapshot returns a copy that shares every page with the original.  A shared page is copied by the
+ *  first image to write it, so neither sees the other's later changes.  Diff compares two images page by
+ *  page, skipping pages they still share, and gives the addresses whose digits differ; past the end of
+ *  the smaller image digits read as MEMORY_UNDEF.  Hash is an FNV-1a hash of one page's digits, kept
+ *  until the page is written again; images that hash a page the same almost certainly hold the same
+ *  digits there.
+ */
+
+public class SPSMemory {
+
+	// Data
+
+	public int Size;
+	public SPSRanges Ranges = new SPSRanges();
+
+	private byte[][] pages;
+	private boolean[] shared;
+	private long[] hashes;
+
+	private static final byte[] UNDEF_PAGE = new byte[SPSData.SIZE_PAGE];
+	private static final long UNDEF_HASH;
+
+	static {
+		Arrays.fill(UNDEF_PAGE, SPSData.MEMORY_UNDEF);
+		UNDEF_HASH = Hash(UNDEF_PAGE);
+	}
+
+	// Constructors
+
+	public SPSMemory(int size) {
+		int count = (size + SPSData.SIZE_PAGE - 1) / SPSData.SIZE_PAGE;
+		this.Size = size;
+		this.pages = new byte[count][];
+		this.shared = new boolean[count];
+		this.hashes = new long[count];
+	}
+
+	private SPSMemory(SPSMemory memory) {
+		this.Size = memory.Size;
+		this.pages = memory.pages.clone();
+		this.shared = new boolean[pages.length];
+		this.hashes = memory.hashes.clone();
+		for (int i = 0; i < memory.Ranges.Count; ++i) {
+			this.Ranges.Add(memory.Ranges.Start(i), memory.Ranges.End(i));
+		}
+		for (int i = 0; i < pages.length; ++i) {
+			if (pages[i] != null) {
+				this.shared[i] = memory.shared[i] = true;
+			}
+		}
+	}
+
+	// Methods
+
+	public int Pages() {
+		return pages.length;
+	}
+
+	public byte Get(int address) {
+		byte[] page = pages[address / SPSData.SIZE_PAGE];
+		return (page != null) ? page[address % SPSData.SIZE_PAGE] : SPSData.MEMORY_UNDEF;
+	}
+
+	public void Get(int address, byte[] digits, int offset, int length) {
+		while (length > 0) {
+			int at = address % SPSData.SIZE_PAGE;
+			int count = Math.min(length, SPSData.SIZE_PAGE - at);
+			byte[] page = pages[address / SPSData.SIZE_PAGE];
+			System.arraycopy((page != null) ? page : UNDEF_PAGE, at, digits, offset, count);
+			address += count;
+			offset += count;
+			length -= count;
+		}
+	}
+
+	public void Set(int address, byte digit) {
+		Page(address / SPSData.SIZE_PAGE)[address % SPSData.SIZE_PAGE] = digit;
+		Ranges.Add(address, address + 1);
+	}
+
+	public void Store(int address, byte[] digits) {
+		int offset = 0;
+		int length = digits.length;
+
+		Ranges.Add(address, address + length);
+		while (length > 0) {
+			int at = address % SPSData.SIZE_PAGE;
+			int count = Math.min(length, SPSData.SIZE_PAGE - at);
+			System.arraycopy(digits, offset, Page(address / SPSData.SIZE_PAGE), at, count);
+			address += count;
+			offset += count;
+			length -= count;
+		}
+	}
+
+	public int NextDefined(int address) {
+		for (int i = Ranges.Find(address); i < Ranges.Count; ++i) {
+			for (int addr = Math.max(address, Ranges.Start(i)); addr < Ranges.End(i); ++addr) {
+				if (Get(addr) != SPSData.MEMORY_UNDEF) return addr;
+			}
+		}
+		return Size;
+	}
+
+	public int LastDefined() {
+		for (int i = Ranges.Count - 1; i >= 0; --i) {
+			for (int addr = Ranges.End(i) - 1; addr >= Ranges.Start(i); --addr) {
+				if (Get(addr) != SPSData.MEMORY_UNDEF) return addr;
+			}
+		}
+		return -1;
+	}
+
+	public SPSMemory Snapshot() {
+		return new SPSMemory(this);
+	}
+
+	public long Hash(int page) {
+		if (pages[page] == null) return UNDEF_HASH;
+		if (hashes[page] == 0) {
+			hashes[page] = Hash(pages[page]);
+		}
+		return hashes[page];
+	}
+
+	public static SPSRanges Diff(SPSMemory a, SPSMemory b) {
+		SPSRanges diff = new SPSRanges();
+		int size = Math.max(a.Size, b.Size);
+
+		for (int i = 0; (i * SPSData.SIZE_PAGE) < size; ++i) {
+			byte[] pageA = (i < a.pages.length) ? a.pages[i] : null;
+			byte[] pageB = (i < b.pages.length) ? b.pages[i] : null;
+			if (pageA == pageB) continue;
+
+			int base = i * SPSData.SIZE_PAGE;
+			int end = Math.min(SPSData.SIZE_PAGE, size - base);
+			if (pageA == null) pageA = UNDEF_PAGE;
+			if (pageB == null) pageB = UNDEF_PAGE;
+			if (Arrays.equals(pageA, 0, end, pageB, 0, end)) continue;
+
+			for (int j = 0; j < end; ++j) {
+				if (pageA[j] != pageB[j]) {
+					int k = j + 1;
+					while ((k < end) && (pageA[k] != pageB[k])) {
+						++k;
+					}
+					diff.Add(base + j, base + k);
+					j = k;
+				}
+			}
+		}
+		return diff;
+	}
+
+	public byte[] ToArray() {
+		byte[] digits = new byte[Size];
+		Get(0, digits, 0, Size);
+		return digits;
+	}
+
+	private byte[] Page(int i) {
+		byte[] page = pages[i];
+		if (page == null) {
+			page = pages[i] = UNDEF_PAGE.clone();
+		} else if (shared[i]) {
+			page = pages[i] = page.clone();
+			shared[i] = false;
+		}
+		hashes[i] = 0;
+		return page;
+	}
+
+	private static long Hash(byte[] page) {
+		long hash = 0xcbf29ce484222325L;
+		for (byte digit: page) {
+			hash = (hash ^ (digit & 0xff)) * 0x100000001b3L;
+		}
+		return (hash != 0) ? hash : 1;
+	}
+}
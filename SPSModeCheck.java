@@ -0,0 +1,132 @@
+package SPS1620;
+
+/*
+ *  SPSModeCheck.java - compares the outputs of the assembly modes on decks that have made them disagree
+ *
+ *  IBM 1620 Jr Project, Computer History Museum, 2017-2024
+ *
+ *  To recreate the experience (visual, auditory, tactile, visceral) of running historic software on a 1960s-era computer.
+ *
+ *   Dave Babcock     - project lead, software, library
+ *   John M. Bohn Jr. - software
+ *   David Brock      - CHM sponsor
+ *   Steve Casner     - hardware, software
+ *   Joe Fredrick     - hardware, firmware
+ *   Len Shustek      - CHM advisor
+ *   Dag Spicer       - CHM advisor
+ *   David Wise       - IBM 1620 expert
+ */
+
+import java.util.Arrays;
+
+/*
+ *  Usage:   java SPS1620.SPSModeCheck
+ *
+ *  Assembles each deck below the normal two-pass way and again with -parallel and with -onepass, and reports
+ *  any deck whose listing, cmem, card or paper tape output, or error and warning counts, differ.  In most of
+ *  the decks a statement's size or address names its own label, which pass 1 has not yet defined, so pass 2
+ *  places the rest of the program at other addresses than pass 1 gave its labels.  Exits with status 1 if
+ *  any differ.
+ */
+
+public class SPSModeCheck {
+
+	// Data
+
+	private static final String[][] DECKS = {
+		{"DORG naming its own label",
+		 "        DORG 1000",
+		 "        TF   A,B",
+		 "L18     DORG L18+10",
+		 "        TF   A,B",
+		 "A       DS   5",
+		 "B       DS   5",
+		 "        DEND 1000"},
+		{"DNB length naming its own label",
+		 "        DORG 400",
+		 "L4      DNB  L4",
+		 "        BD   A,B",
+		 "A       DS   5",
+		 "B       DS   5",
+		 "        DEND 400"},
+		{"DAC length naming its own label",
+		 "        DORG 400",
+		 "L39     DAC  L39,XYZ",
+		 "        BD   A,B",
+		 "A       DS   5",
+		 "B       DS   5",
+		 "        DEND 400"},
+		{"DS address naming its own label",
+		 "        DORG 400",
+		 "L7      DS   5,L7+10",
+		 "        TF   L7,B",
+		 "B       DS   5",
+		 "        DEND 400"},
+		{"DORG naming its own label, then DORG to a constant",
+		 "START   TF   A,B",
+		 "L2      DORG L2+100",
+		 "        TF   A,B",
+		 "A       DS   5",
+		 "        DORG 2000",
+		 "B       DS   5",
+		 "        B    START",
+		 "        DEND START"},
+	};
+
+	private static final String[] MODES = {"-parallel", "-onepass"};
+
+	private static final String[] OPTIONS = {"-freeform", "-date=CHECK", "-lst", "-cmem", "-crd", "-pt"};
+
+	private static int checks = 0;
+	private static int mismatches = 0;
+
+	// Methods
+
+	public static void main(String[] args) {
+		for (String[] deck: DECKS) {
+			Check(deck[0], String.join("\n", Arrays.copyOfRange(deck, 1, deck.length)) + "\n");
+		}
+		Check("DORG naming its own label, then many chunks", LongDeck());
+
+		System.out.println("IBM 1620 Jr. SPS Assembler (v" + SPSData.VERSION + ") assembly mode check");
+		System.out.println("Checks:               " + checks);
+		System.out.println("Mismatches:           " + mismatches);
+		if (mismatches != 0) System.exit(1);
+	}
+
+	private static String LongDeck() {
+		StringBuilder deck = new StringBuilder();
+
+		deck.append("L1      DORG L1+500\n");
+		for (int i = 0; i < (3 * SPSData.SIZE_CHUNK); ++i) {
+			deck.append(String.format("S%04d   TF   S%04d,X\n", i, i / 2));
+		}
+		deck.append("X       DC   5,12345\n");
+		deck.append("        DEND S0000\n");
+		return deck.toString();
+	}
+
+	private static void Check(String name, String source) {
+		SPSAssembly expected = Assemble(source, "-noparallel");
+
+		for (String mode: MODES) {
+			SPSAssembly result = Assemble(source, mode);
+			++checks;
+			String differs = ((result.Errors != expected.Errors) || (result.Warnings != expected.Warnings)) ? "counts"
+							 : !Arrays.equals(result.Lst, expected.Lst) ? "lst"
+							 : !Arrays.equals(result.Cmem, expected.Cmem) ? "cmem"
+							 : !Arrays.equals(result.Crd, expected.Crd) ? "crd"
+							 : !Arrays.equals(result.Pt, expected.Pt) ? "pt" : null;
+			if (differs != null) {
+				++mismatches;
+				System.out.println("*** Mismatch: " + name + " (" + mode + ") " + differs + " differ");
+			}
+		}
+	}
+
+	private static SPSAssembly Assemble(String source, String mode) {
+		String[] options = Arrays.copyOf(OPTIONS, OPTIONS.length + 1);
+		options[OPTIONS.length] = mode;
+		return SPSAssembly.Assemble("CHECK", source, options);
+	}
+}
@@ -17,262 +17,314 @@ package SPS1620;
  *   David Wise       - IBM 1620 expert
  */
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
 
 public class SPSOutput {
 	
 	// Methods
 	
-	public static void OpenList() {
+	public static void OpenList(SPSContext ctx) {
 		
-		SPSData.lstFile = new File(SPSData.lstFilename);
+		if (ctx.outputBuffers) {
+			ctx.lstBuffer = new ByteArrayOutputStream();
+			ctx.lstWriter = new PrintWriter(ctx.lstBuffer);
+			ctx.lstFile = new File(ctx.lstFilename);
+		} else {
+			ctx.lstFile = SPSUtility.GetFile(ctx, ctx.lstFilename);
 		
-		try {
-			SPSData.lstFile.createNewFile();
-		} catch (IOException e1) {
-			SPSData.lstFile = null;
-			ReportError("cannot create list file (" + SPSData.lstFilename + ")");
-			return;
-		}
+			try {
+				ctx.lstFile.createNewFile();
+			} catch (IOException e1) {
+				ctx.lstFile = null;
+				ReportError(ctx, "cannot create list file (" + ctx.lstFilename + ")");
+				return;
+			}
 
-		try {
-			SPSData.lstWriter = new PrintWriter(SPSData.lstFile);
-		} catch (IOException e) {
-			SPSData.lstFile = null;
-			ReportError("cannot open list file (" + SPSData.lstFilename + ")");
-			return;
+			try {
+				ctx.lstWriter = new PrintWriter(ctx.lstFile);
+			} catch (IOException e) {
+				ctx.lstFile = null;
+				ReportError(ctx, "cannot open list file (" + ctx.lstFilename + ")");
+				return;
+			}
 		}
 	}
 	
-	public static void WriteList() {
-		String instr;
-		String flags;
+	public static void WriteList(SPSContext ctx) {
+		
+		if (ctx.lstFile == null) return;
 		
-		if (SPSData.lstFile == null) return;
+		if (ctx.lstLine == null) {
+			ctx.lstLine = new SPSListLine();
+		}
+		SPSListLine line = ctx.lstLine.Clear();
 		
-		switch (SPSData.inputStatement.Listing) {
+		switch (ctx.inputStatement.Listing) {
 				
 			case UNKNOWN:
 			case COMMENT:
 			case CONTROL:
-				SPSData.lstWriter.write(LineNumber(SPSData.lineNumber) + "                        " + FormattedLine() + "\n");
+				ListLineNumber(ctx, line).Spaces(24);
 				break;
 			
 			case ADDRESS:
-				SPSData.lstWriter.write(String.format("%s  %05d                 %s\n", LineNumber(SPSData.lineNumber), SPSData.labelAddress,
-													  FormattedLine()));
+				ListLineNumber(ctx, line).Spaces(2).Zero(ctx.labelAddress, 5).Spaces(17);
 				break;
 
 			case INSTRUCTION:
-				instr = new String(new char[]{SPSData.listChar[SPSData.value[0]], SPSData.listChar[SPSData.value[1]], ' ', 
-											  SPSData.listChar[SPSData.value[2]], SPSData.listChar[SPSData.value[3]],
-											  SPSData.listChar[SPSData.value[4]], SPSData.listChar[SPSData.value[5]],
-											  SPSData.listChar[SPSData.value[6]], ' ',
-											  SPSData.listChar[SPSData.value[7]], SPSData.listChar[SPSData.value[8]],
-											  SPSData.listChar[SPSData.value[9]], SPSData.listChar[SPSData.value[10]],
-											  SPSData.listChar[SPSData.value[11]]});
-				flags = new String(new char[]{SPSData.flagChar[SPSData.value[0]], SPSData.flagChar[SPSData.value[1]], ' ', 
-												 SPSData.flagChar[SPSData.value[2]], SPSData.flagChar[SPSData.value[3]],
-												 SPSData.flagChar[SPSData.value[4]], SPSData.flagChar[SPSData.value[5]],
-												 SPSData.flagChar[SPSData.value[6]], ' ',
-												 SPSData.flagChar[SPSData.value[7]], SPSData.flagChar[SPSData.value[8]],
-					  							 SPSData.flagChar[SPSData.value[9]], SPSData.flagChar[SPSData.value[10]],
-					  							 SPSData.flagChar[SPSData.value[11]]});
-				if (!SPSUtility.IsEmpty(flags)) SPSData.lstWriter.write(String.format("               %-14s\n", SPSUtility.RTrim(flags)));
-				SPSData.lstWriter.write(String.format("%s  %05d %-14s  %s\n", LineNumber(SPSData.lineNumber), SPSData.address, instr,
-													  FormattedLine()));
+				ListFlags(ctx, line, 12, 14);
+				ListLineNumber(ctx, line).Spaces(2).Zero(ctx.address, 5).Spaces(1);
+				ListDigits(ctx, line, SPSData.listChar, 12, '.');
+				line.Spaces(2);
 				break;
 			
 			case INSTR_2:
-				instr = new String(new char[]{SPSData.listChar[SPSData.value[0]], SPSData.listChar[SPSData.value[1]]});
-				flags = new String(new char[]{SPSData.flagChar[SPSData.value[0]], SPSData.flagChar[SPSData.value[1]]});
-				if (!SPSUtility.IsEmpty(flags)) SPSData.lstWriter.write(String.format("               %-2s\n", SPSUtility.RTrim(flags)));
-				SPSData.lstWriter.write(String.format("%s  %05d %-2s              %s\n", LineNumber(SPSData.lineNumber), SPSData.address, instr,
-													  FormattedLine()));
+				ListFlags(ctx, line, 2, 2);
+				ListLineNumber(ctx, line).Spaces(2).Zero(ctx.address, 5).Spaces(1);
+				ListDigits(ctx, line, SPSData.listChar, 2, '.');
+				line.Spaces(14);
 				break;
 			
 			case INSTR_7:
-				instr = new String(new char[]{SPSData.listChar[SPSData.value[0]], SPSData.listChar[SPSData.value[1]], ' ', 
-											  SPSData.listChar[SPSData.value[2]], SPSData.listChar[SPSData.value[3]],
-											  SPSData.listChar[SPSData.value[4]], SPSData.listChar[SPSData.value[5]],
-											  SPSData.listChar[SPSData.value[6]]});
-				flags = new String(new char[]{SPSData.flagChar[SPSData.value[0]], SPSData.flagChar[SPSData.value[1]], ' ', 
-												 SPSData.flagChar[SPSData.value[2]], SPSData.flagChar[SPSData.value[3]],
-												 SPSData.flagChar[SPSData.value[4]], SPSData.flagChar[SPSData.value[5]],
-												 SPSData.flagChar[SPSData.value[6]]});
-				if (!SPSUtility.IsEmpty(flags)) SPSData.lstWriter.write(String.format("               %-8s\n", SPSUtility.RTrim(flags)));
-				SPSData.lstWriter.write(String.format("%s  %05d %-8s        %s\n", LineNumber(SPSData.lineNumber), SPSData.address, instr,
-													  FormattedLine()));
+				ListFlags(ctx, line, 7, 8);
+				ListLineNumber(ctx, line).Spaces(2).Zero(ctx.address, 5).Spaces(1);
+				ListDigits(ctx, line, SPSData.listChar, 7, '.');
+				line.Spaces(8);
 				break;
 
 			case DATA:
-				String data = "";
-				String dflags = "";
-				if (SPSData.value != null) {
-					if (SPSData.value.length <= 14) {
-						for (int i = 0; i < SPSData.value.length; ++i) {
-							data += SPSData.listChar[SPSData.value[i]];
-							dflags += SPSData.flagChar[SPSData.value[i]];
-						}
-					} else {
-						for (int i = 0; i < 6; ++i) {
-							data += SPSData.listChar[SPSData.value[i]];
-							dflags += SPSData.flagChar[SPSData.value[i]];
-						}
-						data += "..";
-						dflags += "  ";
-						for (int i = (SPSData.value.length - 6); i < SPSData.value.length; ++i) {
-							data += SPSData.listChar[SPSData.value[i]];
-							dflags += SPSData.flagChar[SPSData.value[i]];
-						}
-					}
-				}
-				if (!SPSUtility.IsEmpty(dflags)) SPSData.lstWriter.write(String.format("               %-14s\n", SPSUtility.RTrim(dflags)));
-				SPSData.lstWriter.write(String.format("%s  %05d %-14s  %s\n", LineNumber(SPSData.lineNumber), SPSData.address, data,
-													  FormattedLine()));
+				ListFlags(ctx, line, -1, 14);
+				ListLineNumber(ctx, line).Spaces(2).Zero(ctx.address, 5).Spaces(1);
+				int start = line.Length();
+				ListDigits(ctx, line, SPSData.listChar, -1, '.');
+				line.Spaces(14 - (line.Length() - start)).Spaces(2);
 				break;
 			
 			case RESERVE_1:
-				SPSData.lstWriter.write(String.format("%s  %05d    %05d        %s\n", LineNumber(SPSData.lineNumber), SPSData.labelAddress,
-													  SPSData.length, FormattedLine()));
+				ListLineNumber(ctx, line).Spaces(2).Zero(ctx.labelAddress, 5).Spaces(4).Zero(ctx.length, 5).Spaces(8);
 				break;
 			
 			case RESERVE_2:
-				SPSData.lstWriter.write(String.format("%s  %05d    %05d %05d  %s\n", LineNumber(SPSData.lineNumber), SPSData.labelAddress,
-													  SPSData.length, SPSData.count, FormattedLine()));
+				ListLineNumber(ctx, line).Spaces(2).Zero(ctx.labelAddress, 5).Spaces(4).Zero(ctx.length, 5).Spaces(1)
+										 .Zero(ctx.count, 5).Spaces(2);
 				break;
 				
 			default:
+				PrintMessages(ctx);
+				return;
+		}
+		
+		ListFormattedLine(ctx, line).Char('\n').Write(ctx.lstWriter);
+		PrintMessages(ctx);
+	}
+	
+	/*
+	 *  The digits of an INSTRUCTION or INSTR_7 value are grouped as in "49 01234 56789" and a DATA value of
+	 *  more than 14 digits is shown as its first and last 6 with ".." between them (count -1).  The flag line
+	 *  is only written when a digit is flagged, padded to width.
+	 */
+	
+	private static void ListDigits(SPSContext ctx, SPSListLine line, char[] table, int count, char elided) {
+		byte[] value = ctx.value;
+		
+		if (count < 0) {
+			if (value == null) return;
+			if (value.length <= 14) {
+				for (int i = 0; i < value.length; ++i) line.Char(table[value[i]]);
+			} else {
+				for (int i = 0; i < 6; ++i) line.Char(table[value[i]]);
+				line.Char(elided).Char(elided);
+				for (int i = (value.length - 6); i < value.length; ++i) line.Char(table[value[i]]);
+			}
+			return;
+		}
+		for (int i = 0; i < count; ++i) {
+			if ((i == 2) || (i == 7)) line.Char(' ');
+			line.Char(table[value[i]]);
+		}
+	}
+	
+	private static void ListFlags(SPSContext ctx, SPSListLine line, int count, int width) {
+		byte[] value = ctx.value;
+		int digits = (count >= 0) ? count : ((value == null) ? 0 : value.length);
+		
+		boolean flagged = false;
+		for (int i = 0; i < digits; ++i) {
+			if (SPSData.flagChar[value[i]] != ' ') {
+				flagged = true;
 				break;
+			}
 		}
+		if (!flagged) return;
 		
-		PrintMessages();
+		line.Spaces(15);
+		int start = line.Length();
+		ListDigits(ctx, line, SPSData.flagChar, count, ' ');
+		line.Trim(start).Spaces(width - (line.Length() - start)).Char('\n').Write(ctx.lstWriter);
+		line.Clear();
 	}
 	
-	public static void PrintFile() {
-		if (SPSData.lstFile != null) {
-			SPSData.lstWriter.write(String.format("\n  ------ %d: %s --------------------------------------------------\n\n",
-												  SPSData.sourceCurrentFile + 1, SPSData.sourceFilenames[SPSData.sourceCurrentFile]));
+	private static SPSListLine ListLineNumber(SPSContext ctx, SPSListLine line) {
+		if (ctx.sourceMultipleFiles) {
+			return line.Right(ctx.lineNumber >> 18, 2).Char(':').Left(ctx.lineNumber & SPSData.MASK_LINE_NUMBER, 4);
+		} else {
+			return line.Right(ctx.lineNumber & SPSData.MASK_LINE_NUMBER, 7);
+		}
+	}
+	
+	private static SPSListLine ListFormattedLine(SPSContext ctx, SPSListLine line) {
+		String str = ctx.inputLine;
+		int start = line.Length();
+		if (ctx.sourceFormat == SPSData.SourceFormat.FIXED) {
+			if (ctx.inputStatement.Listing == SPSStatement.StatementListing.COMMENT) {
+				line.Pad(str, 0, 5, 5).Char(' ').Pad(str, 5, 75, 70).Spaces(2).Text(str, 75, Integer.MAX_VALUE);
+			} else {
+				line.Pad(str, 0, 5, 5).Char(' ').Pad(str, 5, 11, 6).Char(' ').Pad(str, 11, 15, 4).Char(' ')
+					.Text(str, 15, Integer.MAX_VALUE);
+			}
+		} else {
+			line.Text(str);
 		}
+		return line.Trim(start);
 	}
 	
-	public static void PrintMessages() {
-		if ((SPSData.lstFile != null) && !SPSUtility.IsEmpty(SPSData.inputMessages)) {
-			SPSData.lstWriter.write(SPSData.inputMessages);
+	public static void PrintFile(SPSContext ctx) {
+		if (ctx.lstFile != null) {
+			ctx.lstWriter.write(String.format("\n  ------ %d: %s --------------------------------------------------\n\n",
+												  ctx.sourceCurrentFile + 1, ctx.sourceFilenames[ctx.sourceCurrentFile]));
 		}
 	}
 	
-	public static void CloseList() {
-		if (SPSData.lstFile != null) {
-			SPSData.lstWriter.close();
-			SPSData.lstFile = null;
+	public static void PrintMessages(SPSContext ctx) {
+		if ((ctx.lstFile != null) && !SPSUtility.IsEmpty(ctx.inputMessages)) {
+			ctx.lstWriter.write(ctx.inputMessages);
 		}
 	}
 	
-	public static void DeleteList() {
-		if (SPSData.lstFilename != null) {
-			(new File(SPSData.lstFilename)).delete();
+	public static void CloseList(SPSContext ctx) {
+		if (ctx.lstFile != null) {
+			ctx.lstWriter.close();
+			ctx.lstFile = null;
 		}
 	}
 	
-	public static void OpenCmem() {
+	public static void DeleteList(SPSContext ctx) {
+		if (ctx.outputBuffers) {
+			ctx.lstBuffer = null;
+		} else if (ctx.lstFilename != null) {
+			SPSUtility.GetFile(ctx, ctx.lstFilename).delete();
+		}
+	}
+	
+	public static void OpenCmem(SPSContext ctx) {
 		
-		SPSData.cmemFile = new File(SPSData.cmemFilename);
+		if (ctx.outputBuffers) {
+			ctx.cmemBuffer = new ByteArrayOutputStream();
+			ctx.cmemWriter = new PrintWriter(ctx.cmemBuffer);
+			ctx.cmemFile = new File(ctx.cmemFilename);
+		} else {
+			ctx.cmemFile = SPSUtility.GetFile(ctx, ctx.cmemFilename);
 		
-		try {
-			SPSData.cmemFile.createNewFile();
-		} catch (IOException e1) {
-			SPSData.cmemFile = null;
-			ReportError("cannot create cmem file (" + SPSData.cmemFilename + ")");
-			return;
-		}
+			try {
+				ctx.cmemFile.createNewFile();
+			} catch (IOException e1) {
+				ctx.cmemFile = null;
+				ReportError(ctx, "cannot create cmem file (" + ctx.cmemFilename + ")");
+				return;
+			}
 
-		try {
-			SPSData.cmemWriter = new PrintWriter(SPSData.cmemFile);
-		} catch (IOException e) {
-			SPSData.cmemFile = null;
-			ReportError("cannot open cmem file (" + SPSData.cmemFilename + ")");
-			return;
+			try {
+				ctx.cmemWriter = ChannelWriter(ctx.cmemFile);
+			} catch (IOException e) {
+				ctx.cmemFile = null;
+				ReportError(ctx, "cannot open cmem file (" + ctx.cmemFilename + ")");
+				return;
+			}
 		}
 	}
 	
-	public static void WriteCmem() {
+	/*
+	 *  Text is encoded straight into one SIZE_WRITE_BLOCK buffer, which is written to the file's channel each
+	 *  time it fills and when the writer is closed.  Characters are encoded as PrintWriter(File) would.
+	 */
+	
+	private static PrintWriter ChannelWriter(File file) throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		CharsetEncoder encoder = Charset.defaultCharset().newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+																	  .onUnmappableCharacter(CodingErrorAction.REPLACE);
+		return new PrintWriter(Channels.newWriter(channel, encoder, SPSData.SIZE_WRITE_BLOCK));
+	}
+	
+	public static void WriteCmem(SPSContext ctx) {
 		
-		if (SPSData.cmemFile == null) return;
+		if (ctx.cmemFile == null) return;
 		
-		switch (SPSData.inputStatement.Listing) {
+		if (ctx.cmemLine == null) {
+			ctx.cmemLine = new SPSListLine();
+		}
+		SPSListLine line = ctx.cmemLine.Clear();
+		
+		switch (ctx.inputStatement.Listing) {
 				
 			case UNKNOWN:
 			case COMMENT:
-				if (SPSData.sourceFormat == SPSData.SourceFormat.FIXED) {
-					SPSData.cmemWriter.write("                                                                    //" +
-											 SPSUtility.Substring(SPSData.inputLine, 5) + "\n");
-				} else {	
-					SPSData.cmemWriter.write("                                                                    //" +
-											 SPSUtility.Substring(SPSData.inputLine, 0) + "\n");
-				}
-				break;
-
 			case CONTROL:
-				if (SPSData.sourceFormat == SPSData.SourceFormat.FIXED) {
-					SPSData.cmemWriter.write("                                                                    //   " +
-											 SPSUtility.Substring(SPSData.inputLine, 5) + "\n");
-				} else {	
-					SPSData.cmemWriter.write("                                                                    //   " +
-											 SPSUtility.Substring(SPSData.inputLine, 0) + "\n");
+				line.Spaces(68).Char('/').Char('/');
+				if (ctx.inputStatement.Listing == SPSStatement.StatementListing.CONTROL) {
+					line.Spaces(3);
 				}
+				if (!SPSUtility.IsEmpty(ctx.inputLine)) {
+					line.Text(ctx.inputLine, (ctx.sourceFormat == SPSData.SourceFormat.FIXED) ? 5 : 0, Integer.MAX_VALUE);
+				}
+				line.Char('\n').Write(ctx.cmemWriter);
 				break;
 			
 			case INSTRUCTION:
-				String instr;
-				if (SPSData.length == 2) {
-					instr = String.format("%02X %02X                                                    ",
-										  SPSData.value[0], SPSData.value[1]);
-				} else if (SPSData.length == 7) {
-					instr = String.format("%02X %02X  %02X %02X %02X %02X %02X                          ",
-											 SPSData.value[0], SPSData.value[1], SPSData.value[2], SPSData.value[3],
-											 SPSData.value[4], SPSData.value[5], SPSData.value[6]);
-				} else {
-					instr = String.format("%02X %02X  %02X %02X %02X %02X %02X  %02X %02X %02X %02X %02X",
-										  SPSData.value[0], SPSData.value[1], SPSData.value[2], SPSData.value[3],
-										  SPSData.value[4], SPSData.value[5], SPSData.value[6], SPSData.value[7],
-										  SPSData.value[8], SPSData.value[9], SPSData.value[10], SPSData.value[11]);
-				}
-				SPSData.cmemWriter.write(String.format("%05d: %-59s  // %-6s %-4s %s\n", SPSData.address, instr, SPSData.inputLabel,
-										 SPSData.inputOperation, SPSData.inputOperands));
+				line.Zero(ctx.address, 5).Char(':').Spaces(1);
+				int start = line.Length();
+				CmemInstruction(line, ctx.value, 0, (ctx.length == 2) ? 2 : ((ctx.length == 7) ? 7 : 12));
+				line.Spaces(59 - (line.Length() - start)).Spaces(2);
+				CmemSource(ctx, line).Write(ctx.cmemWriter);
 				break;
 			
 			case DATA:
-				int addr = SPSData.address;
-				int len = (SPSData.value != null) ? SPSData.value.length : 0;
+				int addr = ctx.address;
+				int len = (ctx.value != null) ? ctx.value.length : 0;
 				if (len > 0) {
 					for (int i = 0; i < len; i += 20) {
-						String value = "";
-						for (int j = i; j < Math.min(i + 20, len); ++j) {
-							value += String.format("%02X ",  SPSData.value[j]);
+						int end = Math.min(i + 20, len);
+						line.Clear().Zero(addr, 5).Char(':').Spaces(1);
+						for (int j = i; j < end; ++j) {
+							line.Hex(ctx.value[j]).Char(' ');
 						}
+						line.Spaces(60 - (3 * (end - i)));
 						if (i == 0) {
-							SPSData.cmemWriter.write(String.format("%05d: %-60s // %-6s %-4s %s\n", addr, value, SPSData.inputLabel,
-																   SPSData.inputOperation, SPSData.inputOperands));
+							CmemSource(ctx, line.Spaces(1));
 						} else {
-							SPSData.cmemWriter.write(String.format("%05d: %-60s\n", addr, value));
+							line.Char('\n');
 						}
+						line.Write(ctx.cmemWriter);
 						addr += 20;
 					}
 				} else {
-					SPSData.cmemWriter.write(String.format("                                                                    // %-6s %-4s %s\n",
-														   SPSData.inputLabel, SPSData.inputOperation, SPSData.inputOperands));
+					CmemSource(ctx, line.Spaces(68)).Write(ctx.cmemWriter);
 				}
 				break;
 				
 			case ADDRESS:
 			case RESERVE_1:
 			case RESERVE_2:
-				SPSData.cmemWriter.write(String.format("                                                                    // %-6s %-4s %s\n",
-													   SPSData.inputLabel, SPSData.inputOperation, SPSData.inputOperands));
+				CmemSource(ctx, line.Spaces(68)).Write(ctx.cmemWriter);
 				break;
 				
 			default:
@@ -280,267 +332,247 @@ public class SPSOutput {
 		}
 	}
 	
-	public static void WriteLowCore() {
-		SPSData.cmemWriter.write(SPSData.INIT_CMEM_1);
+	public static void WriteLowCore(SPSContext ctx) {
+		byte[] lowCore = new byte[36];
+		SPSListLine line = new SPSListLine();
 		
+		ctx.cmemWriter.write(SPSData.INIT_CMEM_1);
+		
+		ctx.memory.Get(0, lowCore, 0, lowCore.length);
 		for (int i = 0; i < 36; i += 12) {
-			String instr = String.format("%02X %02X  %02X %02X %02X %02X %02X  %02X %02X %02X %02X %02X",
-										 SPSData.memory[i],     SPSData.memory[i + 1], SPSData.memory[i + 2],  SPSData.memory[i + 3],
-										 SPSData.memory[i + 4], SPSData.memory[i + 5], SPSData.memory[i + 6],  SPSData.memory[i + 7],
-										 SPSData.memory[i + 8], SPSData.memory[i + 9], SPSData.memory[i + 10], SPSData.memory[i + 11]);
-			SPSData.cmemWriter.write(String.format("%05d: %-37s\n", i, instr));
+			line.Clear().Zero(i, 5).Char(':').Spaces(1);
+			CmemInstruction(line, lowCore, i, 12);
+			line.Char('\n').Write(ctx.cmemWriter);
 		}
 		
-		SPSData.cmemWriter.write(SPSData.INIT_CMEM_2);
-		if (SPSData.systemType == SPSData.SystemType.MODEL_1) { 
-			SPSData.cmemWriter.write(SPSData.INIT_CMEM_3);
+		ctx.cmemWriter.write(SPSData.INIT_CMEM_2);
+		if (ctx.systemType == SPSData.SystemType.MODEL_1) { 
+			ctx.cmemWriter.write(SPSData.INIT_CMEM_3);
 		}
-		SPSData.cmemWriter.write(SPSData.INIT_CMEM_4);
+		ctx.cmemWriter.write(SPSData.INIT_CMEM_4);
 	}
 	
-	public static void CloseCmem() {
-		if (SPSData.cmemFile != null) {
-			SPSData.cmemWriter.close();
-			SPSData.cmemFile = null;
+	/*
+	 *  An instruction is shown as "XX XX  XX XX XX XX XX  XX XX XX XX XX", or just the first 2 or 7 digits
+	 *  of it, and its source as "// label op operands".
+	 */
+	
+	private static void CmemInstruction(SPSListLine line, byte[] value, int offset, int count) {
+		for (int i = 0; i < count; ++i) {
+			if ((i == 2) || (i == 7)) {
+				line.Spaces(2);
+			} else if (i > 0) {
+				line.Spaces(1);
+			}
+			line.Hex(value[offset + i]);
 		}
 	}
 	
-	public static void DeleteCmem() {
-		if (SPSData.cmemFilename != null) {
-			(new File(SPSData.cmemFilename)).delete();
-		}
+	private static SPSListLine CmemSource(SPSContext ctx, SPSListLine line) {
+		return line.Char('/').Char('/').Spaces(1).Pad(ctx.inputLabel, 0, Integer.MAX_VALUE, 6).Spaces(1)
+				   .Pad(ctx.inputOperation, 0, Integer.MAX_VALUE, 4).Spaces(1).Text(ctx.inputOperands).Char('\n');
 	}
 	
-	public static void DumpCrd() {
-		int addr1;
-		int addr2;
-		int end;
-		int next;
-		String str;
-		boolean seen;
-		
-		SPSData.crdFile = new File(SPSData.crdFilename);
-		
-		try {
-			SPSData.crdFile.createNewFile();
-		} catch (IOException e1) {
-			SPSData.crdFile = null;
-			ReportError("cannot create crd file (" + SPSData.crdFilename + ")");
-			return;
+	public static void CloseCmem(SPSContext ctx) {
+		if (ctx.cmemFile != null) {
+			ctx.cmemWriter.close();
+			ctx.cmemFile = null;
 		}
-
-		try {
-			SPSData.crdWriter = new PrintWriter(SPSData.crdFile);
-		} catch (IOException e) {
-			SPSData.crdFile = null;
-			ReportError("cannot open crd file (" + SPSData.crdFilename + ")");
-			return;
+	}
+	
+	public static void DeleteCmem(SPSContext ctx) {
+		if (ctx.outputBuffers) {
+			ctx.cmemBuffer = null;
+		} else if (ctx.cmemFilename != null) {
+			SPSUtility.GetFile(ctx, ctx.cmemFilename).delete();
 		}
-
-		SPSData.crdWriter.write(SPSData.INIT_CRD_1);
-		SPSData.crdWriter.write(SPSData.INIT_CRD_2);
+	}
 	
-		addr1 = 240;
-		while (addr1 < SPSData.memorySize) {
-			while ((addr1 < SPSData.memorySize) && (SPSData.memory[addr1] == SPSData.MEMORY_UNDEF)) {
-				++addr1;
-			}
-			if (addr1 >= SPSData.memorySize) break;
-			
-			str = "";
-			seen = false;
-			end = Math.min(addr1 + 60, SPSData.memorySize);
-			for (next = addr1; next < end; ++next) {
-				byte mem = SPSData.memory[next];
-				if (mem == SPSData.MEMORY_UNDEF) {
-					str += ' ';
-				} else {
-					str += SPSData.crdChar[mem & SPSData.MASK_FLAG_DIGIT];
-					if (SPSUtility.IsRMGM(mem)) {
-						seen = true;
-						++next;
-						break;
-					}
-				}
+	public static void DumpCrd(SPSContext ctx) {
+		
+		if (ctx.outputBuffers) {
+			ctx.crdBuffer = new ByteArrayOutputStream();
+			ctx.crdWriter = new PrintWriter(ctx.crdBuffer);
+			ctx.crdFile = new File(ctx.crdFilename);
+		} else {
+			ctx.crdFile = SPSUtility.GetFile(ctx, ctx.crdFilename);
+		
+			try {
+				ctx.crdFile.createNewFile();
+			} catch (IOException e1) {
+				ctx.crdFile = null;
+				ReportError(ctx, "cannot create crd file (" + ctx.crdFilename + ")");
+				return;
 			}
-			
-			str = SPSUtility.RTrim(str);
-			addr2 = (addr1 + str.length()) % SPSData.memorySize;
-			if (!seen) str += '|';
-			SPSData.crdWriter.write(String.format("%5s%5s%s\n", AddressField(addr1), AddressField(addr2), str));
-			
-			addr1 = next;
-		}
-
-		SPSData.crdWriter.write(SPSData.INIT_CRD_3);
 
-		str = "";
-		for (int i = 160; i < 240; ++i) {
-			str += SPSData.crdChar[SPSData.memory[i] & SPSData.MASK_FLAG_DIGIT];
-		}
-		SPSData.crdWriter.write(str + "\n");
-
-		str = "";
-		for (int i = 80; i < 160; ++i) {
-			str += SPSData.crdChar[SPSData.memory[i] & SPSData.MASK_FLAG_DIGIT];
+			try {
+				ctx.crdWriter = ChannelWriter(ctx.crdFile);
+			} catch (IOException e) {
+				ctx.crdFile = null;
+				ReportError(ctx, "cannot open crd file (" + ctx.crdFilename + ")");
+				return;
+			}
 		}
-		SPSData.crdWriter.write(str + "\n");
 
-		str = "";
-		for (int i = 0; i < 80; ++i) {
-			str += SPSData.crdChar[SPSData.memory[i] & SPSData.MASK_FLAG_DIGIT];
-		}
-		SPSData.crdWriter.write(str + "\n");
+		new SPSCardDeck(ctx.memory).Write(ctx.crdWriter);
 		
-		if (SPSData.crdFile != null) {
-			SPSData.crdWriter.close();
-			SPSData.crdFile = null;
+		if (ctx.crdFile != null) {
+			ctx.crdWriter.close();
+			ctx.crdFile = null;
 		}
 	}
 	
-	private static String AddressField(int address) {
-		String str = new String(new char[]{SPSData.crdChar[(address / 10000) | SPSData.MASK_FLAG],
-										   SPSData.crdChar[(address / 1000) % 10],
-										   SPSData.crdChar[(address / 100) % 10],
-										   SPSData.crdChar[(address / 10) % 10],
-										   SPSData.crdChar[address % 10]});
-		return str;
-	}
-	
-	public static void DeleteCrd() {
-		if (SPSData.crdFilename != null) {
-			(new File(SPSData.crdFilename)).delete();
+	public static void DeleteCrd(SPSContext ctx) {
+		if (ctx.outputBuffers) {
+			ctx.crdBuffer = null;
+		} else if (ctx.crdFilename != null) {
+			SPSUtility.GetFile(ctx, ctx.crdFilename).delete();
 		}
 	}
 	
-	public static void DumpPt() {
+	public static void DumpPt(SPSContext ctx) {
 		
 		int lastAddr;
 		
-		SPSData.ptFile = new File(SPSData.ptFilename);
+		if (ctx.outputBuffers) {
+			ctx.ptBuffer = new ByteArrayOutputStream();
+			ctx.ptStream = ctx.ptBuffer;
+			ctx.ptFile = new File(ctx.ptFilename);
+		} else {
+			ctx.ptFile = SPSUtility.GetFile(ctx, ctx.ptFilename);
 		
-		try {
-			SPSData.ptFile.createNewFile();
-		} catch (IOException e1) {
-			SPSData.ptFile = null;
-			ReportError("cannot create pt file (" + SPSData.ptFilename + ")");
-			return;
-		}
+			try {
+				ctx.ptFile.createNewFile();
+			} catch (IOException e1) {
+				ctx.ptFile = null;
+				ReportError(ctx, "cannot create pt file (" + ctx.ptFilename + ")");
+				return;
+			}
 
-		try {
-			SPSData.ptStream = new FileOutputStream(SPSData.ptFile);
-		} catch (IOException e) {
-			SPSData.ptFile = null;
-			ReportError("cannot open pt file (" + SPSData.ptFilename + ")");
-			return;
+			try {
+				ctx.ptStream = new FileOutputStream(ctx.ptFile);
+			} catch (IOException e) {
+				ctx.ptFile = null;
+				ReportError(ctx, "cannot open pt file (" + ctx.ptFilename + ")");
+				return;
+			}
 		}
 	
-		for (lastAddr = SPSData.memorySize - 1; lastAddr >= 0; --lastAddr) {
-			if (SPSData.memory[lastAddr] != SPSData.MEMORY_UNDEF) break;
-		}
+		lastAddr = ctx.memory.LastDefined();
 		if (lastAddr >= 0) {
+			byte[] tape = new byte[lastAddr + 2];
+			ctx.memory.Get(0, tape, 0, lastAddr + 1);
 			for (int i = 0; i <= lastAddr; ++i) {
-				try {
-					SPSData.ptStream.write(SPSData.ptCode[SPSData.memory[i] & SPSData.MASK_FLAG_DIGIT]);
-				} catch (IOException e) {
-					ReportError("cannot write pt file (" + SPSData.ptFilename + ")");
-					break;
-				}
+				tape[i] = SPSData.ptCode[tape[i] & SPSData.MASK_FLAG_DIGIT];
 			}
+			tape[lastAddr + 1] = SPSData.CHAR_EOL;
 			try {
-				SPSData.ptStream.write(SPSData.CHAR_EOL);
+				ctx.ptStream.write(tape);
 			} catch (IOException e) {
-				ReportError("cannot write pt file (" + SPSData.ptFilename + ")");
+				ReportError(ctx, "cannot write pt file (" + ctx.ptFilename + ")");
 			}
 		}
 		
-		if (SPSData.ptFile != null) {
+		if (ctx.ptFile != null) {
 			try {
-				SPSData.ptStream.close();
+				ctx.ptStream.close();
 			} catch (IOException e) {
 				// ignore error
 			}
-			SPSData.ptFile = null;
+			ctx.ptFile = null;
 		}
 	}
 	
-	public static void DeletePt() {
-		if (SPSData.ptFilename != null) {
-			(new File(SPSData.ptFilename)).delete();
+	public static void DeletePt(SPSContext ctx) {
+		if (ctx.outputBuffers) {
+			ctx.ptBuffer = null;
+		} else if (ctx.ptFilename != null) {
+			SPSUtility.GetFile(ctx, ctx.ptFilename).delete();
 		}
 	}
 	
-	public static void ReportError(String error) {
+	public static void ReportError(SPSContext ctx, String error) {
+		
+		if (ctx.capturedDiagnostics != null) {
+			ctx.capturedDiagnostics.add("E" + error);
+			return;
+		}
 		
-		++SPSData.errorCount;
+		++ctx.errorCount;
 		
-		if (SPSData.pass == 0) {
-			System.out.println("*** Error: " + error);
+		if (ctx.diagnostics != null) {
+			if (ctx.pass == 0) {
+				ctx.diagnostics.add("Error: " + error);
+			} else if (ctx.pass == 2) {
+				ctx.diagnostics.add("Error: " + error + ", line " + ErrorLineNumber(ctx));
+			}
+		}
+		
+		if (ctx.pass == 0) {
+			ctx.console.println("*** Error: " + error);
 			
-		} else if (SPSData.pass == 1){
-			if (SPSData.pass1Errors) { 
-				System.out.println("*** Error: " + error + ", line " + ErrorLineNumber());
+		} else if (ctx.pass == 1){
+			if (ctx.pass1Errors) { 
+				ctx.console.println("*** Error: " + error + ", line " + ErrorLineNumber(ctx));
 			}
 			
-		} else if (SPSData.lstFile == null) {
-			System.out.println("*** Error: " + error + ", line " + ErrorLineNumber());
+		} else if (ctx.lstFile == null) {
+			ctx.console.println("*** Error: " + error + ", line " + ErrorLineNumber(ctx));
 			
 		} else {
-			SPSData.inputMessages += (SPSData.sourceMultipleFiles ? "  " : "") + "                               ^^^ Error: " + error + "\n";
+			ctx.inputMessages += (ctx.sourceMultipleFiles ? "  " : "") + "                               ^^^ Error: " + error + "\n";
 		}
 	}
 	
-	public static void ReportWarning(String warning) {
+	public static void ReportWarning(SPSContext ctx, String warning) {
+		
+		if (!ctx.produceWarnings) return; 
 		
-		if (!SPSData.produceWarnings) return; 
+		if (ctx.capturedDiagnostics != null) {
+			ctx.capturedDiagnostics.add("W" + warning);
+			return;
+		}
 		
-		++SPSData.warningCount;
+		++ctx.warningCount;
 		
-		if (SPSData.pass == 0) {
-			System.out.println("*** Warning: " + warning);
+		if (ctx.diagnostics != null) {
+			if (ctx.pass == 0) {
+				ctx.diagnostics.add("Warning: " + warning);
+			} else if (ctx.pass == 2) {
+				ctx.diagnostics.add("Warning: " + warning + ", line " + ErrorLineNumber(ctx));
+			}
+		}
+		
+		if (ctx.pass == 0) {
+			ctx.console.println("*** Warning: " + warning);
 			
-		} else if (SPSData.pass == 1){
-			if (SPSData.pass1Errors) { 
-				System.out.println("*** Warning: " + warning + ", line " + ErrorLineNumber());
+		} else if (ctx.pass == 1){
+			if (ctx.pass1Errors) { 
+				ctx.console.println("*** Warning: " + warning + ", line " + ErrorLineNumber(ctx));
 			}
 			
-		} else if (SPSData.lstFile == null) {
-			System.out.println("*** Warning: " + warning + ", line " + ErrorLineNumber());
+		} else if (ctx.lstFile == null) {
+			ctx.console.println("*** Warning: " + warning + ", line " + ErrorLineNumber(ctx));
 			
 		} else {
-			SPSData.inputMessages += (SPSData.sourceMultipleFiles ? "  " : "") + "                               ^^^ Warning: " + warning + "\n";
+			ctx.inputMessages += (ctx.sourceMultipleFiles ? "  " : "") + "                               ^^^ Warning: " + warning + "\n";
 		}
 	}
 	
-	public static String ErrorLineNumber() {
-		if (SPSData.sourceMultipleFiles) {
-			return String.format("%s:%d", SPSData.sourceFile.getName(), (SPSData.lineNumber & SPSData.MASK_LINE_NUMBER));
+	public static String ErrorLineNumber(SPSContext ctx) {
+		if (ctx.sourceMultipleFiles) {
+			String filename = ctx.sourceFilenames[Math.min(ctx.sourceCurrentFile, ctx.sourceFileCount - 1)];
+			return String.format("%s:%d", new File(filename).getName(), (ctx.lineNumber & SPSData.MASK_LINE_NUMBER));
 		} else {
-			return String.format("%d", (SPSData.lineNumber & SPSData.MASK_LINE_NUMBER));
+			return String.format("%d", (ctx.lineNumber & SPSData.MASK_LINE_NUMBER));
 		}
 	}
 	
-	public static String LineNumber(int lineNumber) {
-		if (SPSData.sourceMultipleFiles) {
+	public static String LineNumber(SPSContext ctx, int lineNumber) {
+		if (ctx.sourceMultipleFiles) {
 			return String.format("%2d:%-4d", (lineNumber >> 18), (lineNumber & SPSData.MASK_LINE_NUMBER));
 		} else {
 			return String.format("%7d", (lineNumber & SPSData.MASK_LINE_NUMBER));
 		}
 	}
-
-	public static String FormattedLine() {
-		String str = SPSData.inputLine;
-		String str2;
-		if (SPSData.sourceFormat == SPSData.SourceFormat.FIXED) {
-			if (SPSData.inputStatement.Listing == SPSStatement.StatementListing.COMMENT) {
-					str2 = String.format("%-5s %-70s  %s", SPSUtility.Substring(str, 0, 5), SPSUtility.Substring(str, 5, 75), SPSUtility.Substring(str, 75));
-			} else {
-				str2 = String.format("%-5s %-6s %-4s %s", SPSUtility.Substring(str, 0, 5), SPSUtility.Substring(str, 5, 11), SPSUtility.Substring(str, 11, 15),
-									 SPSUtility.Substring(str, 15));
-			}
-		} else {
-			str2 = SPSData.inputLine;
-		}
-		return SPSUtility.RTrim(str2);
-	}
 }
@@ -0,0 +1,243 @@
+package SPS1620;
+
+/*
+ *  SPSOutputCache.java - complete assembly results saved on disk under a hash of the sources and options
+ *
+ *  IBM 1620 Jr Project, Computer History Museum, 2017-2024
+ *
+ *  To recreate the experience (visual, auditory, tactile, visceral) of running historic software on a 1960s-era computer.
+ *
+ *   Dave Babcock     - project lead, software, library
+ *   John M. Bohn Jr. - software
+ *   David Brock      - CHM sponsor
+ *   Steve Casner     - hardware, software
+ *   Joe Fredrick     - hardware, firmware
+ *   Len Shustek      - CHM advisor
+ *   Dag Spicer       - CHM advisor
+ *   David Wise       - IBM 1620 expert
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/*
+ *  The key is a SHA-256 digest of the version, the assembly date, every option that changes an output or
+ *  the console, the names of the source files and their bytes.  The listing and cmem file carry the date,
+ *  so only assemblies with the date pinned by -date=<text> are looked up or saved; any other entry could
+ *  never be hit.  A hit writes back the lst, cmem, crd, pt and img files the assembly produced (deleting
+ *  those it did not, as after an error), prints its console output from the passes, and restores its
+ *  counts and diagnostics, without running a pass.  An entry is read in full before any of it is used, so
+ *  a damaged one is simply a miss.
+ *
+ *  Each entry is one file in the -cache directory.  A hit marks it as just used and every new entry may
+ *  evict the least recently used entries, these and those of SPSFileCache alike, until the directory holds
+ *  no more than -cachesize megabytes.  Only assemblies that write their outputs to disk are cached here.
+ */
+
+public class SPSOutputCache {
+
+	// Constants
+
+	private static final int MAGIC = 0x53504f32;
+	private static final String[] KINDS = {"lst", "cmem", "crd", "pt", "img"};
+
+	// Methods
+
+	public static String Key(SPSContext ctx) {
+		if ((ctx.cacheDirectory == null) || !ctx.dateFixed || ctx.outputBuffers) return null;
+
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 not available", e);
+		}
+
+		StringBuilder options = new StringBuilder();
+		options.append(SPSData.VERSION).append('|').append(ctx.dateTime).append('|').append(ctx.sourceFormat).append('|')
+			   .append(ctx.systemType).append('|').append(ctx.indexOk).append('|').append(ctx.memorySize).append('|')
+			   .append(ctx.includeTables).append('|').append(ctx.initialAddressCounter).append('|').append(ctx.loadHalt).append('|')
+			   .append(ctx.produceWarnings).append('|').append(ctx.pass1Errors).append('|').append(ctx.symbolDivide).append('|')
+			   .append(ctx.onePass).append('|').append(ctx.lstOption).append(ctx.cmemOption).append(ctx.crdOption)
+			   .append(ctx.ptOption).append(ctx.imgOption).append('|');
+		if (ctx.tabTable != null) {
+			for (byte tab: ctx.tabTable) {
+				options.append(tab).append(',');
+			}
+		}
+		for (int i = 0; i < ctx.sourceFileCount; ++i) {
+			options.append('|').append(ctx.sourceFilenames[i]);
+		}
+		digest.update(options.toString().getBytes(StandardCharsets.UTF_8));
+
+		for (int i = 0; i < ctx.sourceFileCount; ++i) {
+			byte[] source;
+			try {
+				if (ctx.sourceTexts != null) {
+					source = ctx.sourceTexts[i].getBytes(StandardCharsets.UTF_8);
+				} else {
+					source = Files.readAllBytes(SPSUtility.GetFile(ctx, ctx.sourceFilenames[i]).toPath());
+				}
+			} catch (IOException e) {
+				return null;
+			}
+			digest.update(ByteBuffer.allocate(4).putInt(source.length).array());
+			digest.update(source);
+		}
+
+		StringBuilder key = new StringBuilder();
+		for (byte b: digest.digest()) {
+			key.append(String.format("%02x", b));
+		}
+		return key.toString();
+	}
+
+	public static boolean Restore(SPSContext ctx, String key) {
+		File file = SPSUtility.GetFile(ctx, ctx.cacheDirectory + File.separator + key + ".out");
+		if (!file.isFile()) return false;
+
+		byte[][] outputs = new byte[KINDS.length][];
+		List<String> diagnostics = new ArrayList<String>();
+		int lineCount;
+		int errorCount;
+		int warningCount;
+		String console;
+		try {
+			ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+			if ((in.getInt() != MAGIC) || !new String(GetBytes(in), StandardCharsets.UTF_8).equals(SPSData.VERSION)) return false;
+
+			lineCount = in.getInt();
+			errorCount = in.getInt();
+			warningCount = in.getInt();
+			console = new String(GetBytes(in), StandardCharsets.UTF_8);
+			int count = in.getInt();
+			for (int i = 0; i < count; ++i) {
+				diagnostics.add(new String(GetBytes(in), StandardCharsets.UTF_8));
+			}
+			for (int i = 0; i < KINDS.length; ++i) {
+				outputs[i] = in.get() != 0 ? GetBytes(in) : null;
+			}
+			if (in.hasRemaining()) return false;
+		} catch (IOException | RuntimeException e) {
+			return false;
+		}
+
+		ctx.lineCount = lineCount;
+		ctx.errorCount = errorCount;
+		ctx.warningCount = warningCount;
+		if (ctx.diagnostics != null) ctx.diagnostics.addAll(diagnostics);
+
+		String[] filenames = {ctx.lstFilename, ctx.cmemFilename, ctx.crdFilename, ctx.ptFilename, ctx.imgFilename};
+		boolean[] selected = {ctx.lstOption, ctx.cmemOption, ctx.crdOption, ctx.ptOption, ctx.imgOption};
+		for (int i = 0; i < KINDS.length; ++i) {
+			if (!selected[i]) continue;
+			File output = SPSUtility.GetFile(ctx, filenames[i]);
+			try {
+				if (outputs[i] != null) {
+					Files.write(output.toPath(), outputs[i]);
+				} else {
+					Files.deleteIfExists(output.toPath());
+				}
+			} catch (IOException e) {
+				SPSOutput.ReportError(ctx, "cannot write " + KINDS[i] + " file (" + filenames[i] + ")");
+			}
+		}
+
+		ctx.console.print(console);
+		file.setLastModified(System.currentTimeMillis());
+		return true;
+	}
+
+	public static void Save(SPSContext ctx, String key, String console, int firstDiagnostic) {
+		File directory = SPSUtility.GetFile(ctx, ctx.cacheDirectory);
+		File file = new File(directory, key + ".out");
+		File temp = new File(directory, key + "." + Thread.currentThread().getId() + ".tmp");
+
+		String[] filenames = {ctx.lstFilename, ctx.cmemFilename, ctx.crdFilename, ctx.ptFilename, ctx.imgFilename};
+		boolean[] selected = {ctx.lstOption, ctx.cmemOption, ctx.crdOption, ctx.ptOption, ctx.imgOption};
+
+		directory.mkdirs();
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+			out.writeInt(MAGIC);
+			PutBytes(out, SPSData.VERSION.getBytes(StandardCharsets.UTF_8));
+			out.writeInt(ctx.lineCount);
+			out.writeInt(ctx.errorCount);
+			out.writeInt(ctx.warningCount);
+			PutBytes(out, console.getBytes(StandardCharsets.UTF_8));
+			out.writeInt((ctx.diagnostics == null) ? 0 : (ctx.diagnostics.size() - firstDiagnostic));
+			if (ctx.diagnostics != null) {
+				for (String diagnostic: ctx.diagnostics.subList(firstDiagnostic, ctx.diagnostics.size())) {
+					PutBytes(out, diagnostic.getBytes(StandardCharsets.UTF_8));
+				}
+			}
+			for (int i = 0; i < KINDS.length; ++i) {
+				File output = selected[i] ? SPSUtility.GetFile(ctx, filenames[i]) : null;
+				if ((output != null) && output.isFile()) {
+					out.writeByte(1);
+					PutBytes(out, Files.readAllBytes(output.toPath()));
+				} else {
+					out.writeByte(0);
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			temp.delete();
+			return;
+		}
+		if (!temp.renameTo(file)) {
+			temp.delete();
+			return;
+		}
+
+		Evict(ctx);
+	}
+
+	public static void Evict(SPSContext ctx) {
+		File[] entries = SPSUtility.GetFile(ctx, ctx.cacheDirectory).listFiles();
+		if (entries == null) return;
+
+		List<File> files = new ArrayList<File>();
+		long limit = (long)ctx.cacheSize << 20;
+		long total = 0;
+		for (File file: entries) {
+			if (file.getName().endsWith(".out") || file.getName().endsWith(SPSFileCache.SUFFIX)) {
+				files.add(file);
+				total += file.length();
+			}
+		}
+		if (total <= limit) return;
+
+		Collections.sort(files, new Comparator<File>() {
+			public int compare(File a, File b) {
+				return Long.compare(a.lastModified(), b.lastModified());
+			}
+		});
+		for (File file: files) {
+			if (total <= limit) break;
+			long length = file.length();
+			if (file.delete()) total -= length;
+		}
+	}
+
+	private static byte[] GetBytes(ByteBuffer in) {
+		byte[] bytes = new byte[in.getInt()];
+		in.get(bytes);
+		return bytes;
+	}
+
+	private static void PutBytes(DataOutputStream out, byte[] bytes) throws IOException {
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+}
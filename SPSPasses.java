@@ -1,7 +1,7 @@
 package SPS1620;
 
 /*
- *  SPSPasses.java - pass 1 & 2 processing
+ *  SPSPasses.java - pass 1 & 2 processing, and one-pass processing with fixups
  *
  *  IBM 1620 Jr Project, Computer History Museum, 2017-2024
  *
@@ -17,149 +17,714 @@ package SPS1620;
  *   David Wise       - IBM 1620 expert
  */
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/*
+ *  In one-pass mode each statement is read, then processed as pass 2 would process it while its label is
+ *  defined as pass 1 would define it.  Its diagnostics are captured rather than reported.  A statement that
+ *  names a symbol not yet defined is a fixup: once the whole source has been read it is processed again,
+ *  from the addresses and head saved with it, against the complete symbol table.  The listing, memory image
+ *  and other outputs are then written in source order from the saved results, reporting the captured
+ *  diagnostics as they go, so they match a two-pass assembly.  A statement whose size or address names its
+ *  own label is sized by pass 1 before the label is defined and by pass 2 after, which one pass cannot do,
+ *  so on meeting one the source is assembled again in two passes.  One pass is no faster than two, since
+ *  pass 2 replays the statements pass 1 has already scanned; it is another way to the same outputs, which
+ *  SPSModeCheck uses to check the passes.
+ *
+ *  A parallel pass 2 works the same way: pass 1 has saved every statement's addresses and head, so chunks
+ *  of statements are processed at once on worker contexts (see SPSChunk), and their results are then
+ *  written, and stored into memory, in source order.  Pass 2 only reaches other addresses than pass 1 after
+ *  a statement whose size or address names its own label, which pass 1 had not yet defined; the lines from
+ *  there on are processed again in order until the addresses agree.  With -parallel the listing and cmem
+ *  file are written on a thread of their own (see SPSWriter) while the statements are stored and the next
+ *  ones processed.
+ *
+ *  A parallel pass 1 scans and sizes each source file in chunks at once (see SPSChunk and SizeSource).  Most
+ *  statements move the address counter by an amount that only depends on whether it is odd, so each run of
+ *  them is summed up (see SPSSegment) and the address at the start of each run follows from the runs before
+ *  it.  HEAD, and any statement whose effect on the address counter names * or a symbol, is placed on its
+ *  own in source order in between; if it names a symbol, every run before it is placed and its labels
+ *  defined first.  The runs are placed at once, each keying its labels into a table of its own, and these
+ *  are then defined in the symbol table in source order, together with the statements whose address operand
+ *  has to be looked up.  The diagnostics are reported in source order once the file is placed.  DEND and
+ *  anything after it are processed as in pass 1.
+ */
+
 public class SPSPasses {
 	
 	// Methods
 	
-	public static void Pass1() {
+	public static void Pass1(SPSContext ctx) {
+		
+		ctx.pass = 1;
+		ctx.sourceCurrentFile = -1;
+		ctx.lineCount = 0;
+		ctx.errorCount = 0;
+		ctx.warningCount = 0;
+		ctx.addressCounter = ctx.initialAddressCounter;
+		ctx.lastAddress = ctx.initialAddressCounter - 1;
+		ctx.symbolHead = ' ';
+		ctx.dendStatus = SPSData.DendStatus.NOT_SEEN;
+		ctx.sourceLines.clear();
 		
-		SPSData.pass = 1;
-		SPSData.sourceCurrentFile = -1;
-		SPSData.lineCount = 0;
-		SPSData.errorCount = 0;
-		SPSData.warningCount = 0;
-		SPSData.addressCounter = SPSData.initialAddressCounter;
-		SPSData.lastAddress = SPSData.initialAddressCounter - 1;
-		SPSData.symbolHead = ' ';
-		SPSData.dendStatus = SPSData.DendStatus.NOT_SEEN;
+		SPSInput.OpenSource(ctx);
 		
-		SPSInput.OpenSource();
+		while (SPSInput.ReadSource(ctx)) {
+			ProcessPass1(ctx);
+		}
 		
-		while (SPSInput.ReadSource()) {
+		if (ctx.abort) return;
+		
+		if (ctx.dendStatus == SPSData.DendStatus.NOT_SEEN) {
+			SPSOutput.ReportError(ctx, "DEND statement missing");
+		}
 			
-			if (SPSData.inputStatement.Class == SPSStatement.StatementClass.COMMENT) {
-				continue;
-			} else if (SPSData.dendStatus == SPSData.DendStatus.WARNING) {
-				continue;
-			} else if (SPSData.dendStatus == SPSData.DendStatus.SEEN) {
-				SPSOutput.ReportError("statement(s) beyond DEND");
-				SPSData.dendStatus = SPSData.DendStatus.WARNING;
-				continue;
+		SPSInput.CloseSource(ctx);
+	}
+	
+	public static void ParallelPass1(SPSContext ctx) {
+		
+		if (!ctx.byteScan || ((ctx.sourceTexts == null) && !SPSScanner.IsAsciiCompatible(Charset.defaultCharset()))) {
+			Pass1(ctx);
+			return;
+		}
+		
+		ctx.pass = 1;
+		ctx.sourceCurrentFile = -1;
+		ctx.lineCount = 0;
+		ctx.errorCount = 0;
+		ctx.warningCount = 0;
+		ctx.addressCounter = ctx.initialAddressCounter;
+		ctx.lastAddress = ctx.initialAddressCounter - 1;
+		ctx.symbolHead = ' ';
+		ctx.dendStatus = SPSData.DendStatus.NOT_SEEN;
+		ctx.sourceLines.clear();
+		
+		for (SPSInput.OpenSource(ctx); ctx.sourceFile != null; SPSInput.OpenSource(ctx)) {
+			List<SPSChunk> chunks = new ArrayList<SPSChunk>();
+			List<Future<?>> results = new ArrayList<Future<?>>();
+			for (SPSScanner scanner: ctx.sourceScanner.Split(SPSData.SIZE_SCAN_CHUNK)) {
+				SPSChunk chunk = new SPSChunk(ctx, scanner);
+				chunks.add(chunk);
+				results.add(ForkJoinPool.commonPool().submit(chunk));
 			}
+			SPSInput.CloseSource(ctx);
+			
+			int first = ctx.sourceLines.size();
+			int number = ctx.lineNumber;
+			int counter = ctx.addressCounter;
+			int last = ctx.lastAddress;
+			char head = ctx.symbolHead;
+			boolean ended = (ctx.dendStatus != SPSData.DendStatus.NOT_SEEN);
+			List<SPSSegment> pending = new ArrayList<SPSSegment>();
+			List<SPSSourceLine> tail = new ArrayList<SPSSourceLine>();
 			
-			SPSStatement.Process();
+			for (int i = 0; i < chunks.size(); ++i) {
+				try {
+					results.get(i).get();
+				} catch (InterruptedException | ExecutionException e) {
+					throw new IllegalStateException("pass 1 chunk failed", e.getCause());
+				}
+				
+				SPSChunk chunk = chunks.get(i);
+				int base = number + 1;
+				number += chunk.Lines.size();
+				for (SPSSegment segment: chunk.Segments) {
+					if (ended) {
+						for (int j = segment.Start; j < segment.End; ++j) {
+							SPSSourceLine line = chunk.Lines.get(j);
+							line.LineNumber = base + j;
+							tail.add(line);
+						}
+						continue;
+					}
+					
+					segment.LineNumber = base + segment.Start;
+					if (segment.Run) {
+						segment.AddressCounter = counter;
+						segment.LastAddress = last;
+						segment.SymbolHead = head;
+						last = segment.Last(counter, last);
+						counter = segment.Counter(counter);
+						ctx.sourceLines.addAll(chunk.Lines.subList(segment.Start, segment.End));
+						pending.add(segment);
+						continue;
+					}
+					
+					SPSSourceLine line = chunk.Lines.get(segment.Start);
+					line.LineNumber = segment.LineNumber;
+					line.AddressCounter = counter;
+					line.LastAddress = last;
+					line.SymbolHead = head;
+					line.DendStatus = SPSData.DendStatus.NOT_SEEN;
+					if (line.Sizing == SPSData.Sizing.DEND) {
+						tail.add(line);
+						ended = true;
+						continue;
+					}
+					
+					ctx.sourceLines.add(line);
+					if (line.SizeSymbols) {
+						PlaceSegments(ctx, pending);
+					}
+					PlaceSource(ctx, line);
+					counter = ctx.addressCounter;
+					last = ctx.lastAddress;
+					head = ctx.symbolHead;
+					if (line.SizeSymbols) {
+						DefineLabel(ctx, line);
+					} else {
+						pending.add(segment);
+					}
+				}
+			}
+			PlaceSegments(ctx, pending);
+			
+			ctx.addressCounter = counter;
+			ctx.lastAddress = last;
+			ctx.symbolHead = head;
+			ctx.lineCount += ctx.sourceLines.size() - first;
+			for (int i = first; i < ctx.sourceLines.size(); ++i) {
+				SPSSourceLine line = ctx.sourceLines.get(i);
+				ctx.lineNumber = line.LineNumber;
+				SPSInput.ReplayDiagnostics(ctx, line.Diagnostics);
+				SPSInput.ReplayDiagnostics(ctx, line.SizeMessages);
+			}
+			
+			for (SPSSourceLine line: tail) {
+				SPSInput.AcceptSource(ctx, line);
+				ProcessPass1(ctx);
+			}
 		}
 		
-		if (SPSData.dendStatus == SPSData.DendStatus.NOT_SEEN) {
-			SPSOutput.ReportError("DEND statement missing");
+		if (ctx.abort) return;
+		
+		if (ctx.dendStatus == SPSData.DendStatus.NOT_SEEN) {
+			SPSOutput.ReportError(ctx, "DEND statement missing");
 		}
-			
-		SPSInput.CloseSource();
 	}
 	
-	public static void Pass2() {
+	public static void Pass2(SPSContext ctx) {
 		
-		SPSData.pass = 2;
-		SPSData.sourceCurrentFile = -1;
-		SPSData.lineCount = 0;
-		SPSData.errorCount = 0;
-		SPSData.warningCount = 0;
-		SPSData.addressCounter = SPSData.initialAddressCounter;
-		SPSData.lastAddress = SPSData.initialAddressCounter - 1;
-		SPSData.symbolHead = ' ';
-		SPSData.dendStatus = SPSData.DendStatus.NOT_SEEN;
+		ctx.pass = 2;
+		ctx.sourceCurrentFile = -1;
+		ctx.lineCount = 0;
+		ctx.errorCount = 0;
+		ctx.warningCount = 0;
+		ctx.addressCounter = ctx.initialAddressCounter;
+		ctx.lastAddress = ctx.initialAddressCounter - 1;
+		ctx.symbolHead = ' ';
+		ctx.dendStatus = SPSData.DendStatus.NOT_SEEN;
 		
-		for (int i = 0; i < SPSData.memorySize; ++i) {
-			SPSData.memory[i] = SPSData.MEMORY_UNDEF;
+		if (ctx.cacheDirectory != null) {
+			CachedPass2(ctx);
+			return;
 		}
 		
-		SPSData.address = 0;
-		SPSData.value = SPSData.INIT_NOP;
-		SPSValue.StoreValue();
-		SPSData.address = 12;
-		if (SPSData.loadHalt) {
-		    SPSData.value = SPSData.INIT_H;
-		} else {
-		    SPSData.value = SPSData.INIT_NOP;
+		StartOutput(ctx);
+		
+		int next = 0;
+		for (ctx.sourceCurrentFile = 0; ctx.sourceCurrentFile < ctx.sourceFileCount; ++ctx.sourceCurrentFile) {
+			
+			if (ctx.sourceMultipleFiles) {
+				WriteFile(ctx);
+			}
+			int end = ((ctx.sourceCurrentFile + 1) < ctx.sourceFileCount) ? ctx.sourceFileStart[ctx.sourceCurrentFile + 1]
+																			: ctx.sourceLines.size();
+			
+			for (; next < end; ++next) {
+				SPSInput.LoadSource(ctx, ctx.sourceLines.get(next));
+				WriteSource(ctx, ProcessSource(ctx));
+			}
 		}
-		SPSValue.StoreValue();
-		SPSData.address = 24;
-		SPSData.value = SPSData.INIT_B;
-		SPSValue.SetField(SPSData.FIELD_P, 5, false, SPSData.dendAddress);
-		SPSValue.StoreValue();
 		
-		if (SPSData.includeTables) {
-			for (int i = 0; i < SPSData.multiplyTable.length; ++i) {
-				SPSData.memory[i + 100] = SPSData.multiplyTable[i];
+		EndOutput(ctx);
+	}
+	
+	public static boolean OnePass(SPSContext ctx) {
+		List<SPSSourceLine> fixups = new ArrayList<SPSSourceLine>();
+		PrintStream console = ctx.console;
+		ByteArrayOutputStream messages = new ByteArrayOutputStream();
+		
+		ctx.pass = 1;
+		ctx.sourceCurrentFile = -1;
+		ctx.lineCount = 0;
+		ctx.addressCounter = ctx.initialAddressCounter;
+		ctx.lastAddress = ctx.initialAddressCounter - 1;
+		ctx.symbolHead = ' ';
+		ctx.dendStatus = SPSData.DendStatus.NOT_SEEN;
+		ctx.sourceLines.clear();
+		ctx.ownLabelReference = false;
+		ctx.console = new PrintStream(messages, true);
+		
+		SPSInput.OpenSource(ctx);
+		
+		while (!ctx.ownLabelReference && SPSInput.ReadSource(ctx)) {
+			SPSSourceLine line = ctx.sourceLines.get(ctx.sourceLines.size() - 1);
+			
+			ctx.pass = 2;
+			ctx.onePassDefine = true;
+			if (!CaptureSource(ctx, line)) {
+				fixups.add(line);
 			}
-			if (SPSData.systemType == SPSData.SystemType.MODEL_1) {
-				for (int i = 0; i < SPSData.addTable.length; ++i) {
-					SPSData.memory[i + 300] = SPSData.addTable[i];
+			ctx.onePassDefine = false;
+			ctx.pass = 1;
+		}
+		
+		ctx.console = console;
+		if (ctx.ownLabelReference) {
+			SPSInput.CloseSource(ctx);
+			ctx.ownLabelReference = false;
+			ctx.symbolTable = new SPSSymbolTable();
+			return false;
+		}
+		console.print(messages.toString());
+		
+		if (ctx.abort) return true;
+		
+		SPSInput.CloseSource(ctx);
+		
+		SPSData.DendStatus dendStatus = ctx.dendStatus;
+		ctx.pass = 2;
+		for (SPSSourceLine line: fixups) {
+			ReprocessSource(ctx, line);
+		}
+		ctx.dendStatus = dendStatus;
+		
+		WriteResults(ctx);
+		return true;
+	}
+	
+	public static void ParallelPass2(SPSContext ctx) {
+		List<SPSFileCache> misses = new ArrayList<SPSFileCache>();
+		List<SPSChunk> chunks = new ArrayList<SPSChunk>();
+		List<Future<?>> results = new ArrayList<Future<?>>();
+		
+		if (ctx.cacheDirectory != null) {
+			for (int file = 0; file < ctx.sourceFileCount; ++file) {
+				SPSFileCache cache = new SPSFileCache(ctx, file);
+				if (!cache.Load(ctx, false)) {
+					misses.add(cache);
 				}
 			}
-			SPSData.memory[400] = SPSData.MEMORY_RM;
+			if (!misses.isEmpty()) {
+				ctx.lookupLog = new long[256];
+			}
 		}
 		
-		if (SPSData.lstOption) {
-			SPSOutput.OpenList();
-			SPSData.lstWriter.write("IBM 1620 Jr. SPS Assembler (v" + SPSData.VERSION + ")    Source: " + SPSData.sourceFilenames[0] +
-									((SPSData.sourceFileCount == 1) ? "" : ",...") + "    Assembled: " + SPSData.dateTime + "\n\n");
+		for (int start = 0; start < ctx.sourceLines.size(); start += SPSData.SIZE_CHUNK) {
+			SPSChunk chunk = new SPSChunk(ctx, start, Math.min(start + SPSData.SIZE_CHUNK, ctx.sourceLines.size()));
+			chunks.add(chunk);
+			results.add(ForkJoinPool.commonPool().submit(chunk));
 		}
 		
-		if (SPSData.cmemOption) { 
-			SPSOutput.OpenCmem();
-			SPSData.cmemWriter.write("// IBM 1620 Jr. SPS Assembler (v" + SPSData.VERSION + ")\n");
-			SPSData.cmemWriter.write("// Source: " + SPSData.sourceFilenames[0] + ((SPSData.sourceFileCount == 1) ? "" : ",...") + "\n");
-			SPSData.cmemWriter.write("// Assembled: " + SPSData.dateTime + "\n\n");
-			SPSOutput.WriteLowCore();
+		for (int i = 0; i < chunks.size(); ++i) {
+			try {
+				results.get(i).get();
+			} catch (InterruptedException | ExecutionException e) {
+				throw new IllegalStateException("pass 2 chunk failed", e.getCause());
+			}
+			chunks.get(i).CommitReferences(ctx);
 		}
 		
-		SPSInput.OpenSource();
+		ctx.pass = 2;
+		FollowAddresses(ctx);
+		for (SPSFileCache cache: misses) {
+			cache.Save(ctx);
+		}
+		ctx.lookupLog = null;
+		ctx.lookupLogLength = 0;
+		WriteResults(ctx);
+	}
+	
+	private static void CachedPass2(SPSContext ctx) {
 		
-		while (SPSInput.ReadSource()) {
+		ctx.lookupLog = new long[256];
+		for (int file = 0; file < ctx.sourceFileCount; ++file) {
+			SPSFileCache cache = new SPSFileCache(ctx, file);
+			if (cache.Load(ctx, true)) continue;
 			
-			if (SPSData.inputStatement.Class == SPSStatement.StatementClass.COMMENT) {
-				SPSOutput.WriteList();
-				if (SPSData.errorCount == 0) SPSOutput.WriteCmem();
-				continue;
-			} else if (SPSData.dendStatus == SPSData.DendStatus.WARNING) {
-				SPSData.inputStatement.Listing = SPSStatement.StatementListing.UNKNOWN;
-				SPSOutput.WriteList();
-				continue;
-			} else if (SPSData.dendStatus == SPSData.DendStatus.SEEN) {
-				SPSOutput.ReportError("statement(s) beyond DEND");
-				SPSData.inputStatement.Listing = SPSStatement.StatementListing.UNKNOWN;
-				SPSOutput.WriteList();
-				SPSData.dendStatus = SPSData.DendStatus.WARNING;
-				continue;
+			ctx.lookupLogLength = 0;
+			for (int i = cache.Start; i < cache.End; ++i) {
+				SPSSourceLine line = ctx.sourceLines.get(i);
+				line.AddressCounter = ctx.addressCounter;
+				line.LastAddress = ctx.lastAddress;
+				line.SymbolHead = ctx.symbolHead;
+				line.DendStatus = ctx.dendStatus;
+				CaptureSource(ctx, line);
+			}
+			cache.Save(ctx);
+		}
+		ctx.lookupLog = null;
+		ctx.lookupLogLength = 0;
+		
+		WriteResults(ctx);
+	}
+	
+	public static void ReprocessSource(SPSContext ctx, SPSSourceLine line) {
+		
+		ctx.addressCounter = line.AddressCounter;
+		ctx.lastAddress = line.LastAddress;
+		ctx.symbolHead = line.SymbolHead;
+		ctx.dendStatus = line.DendStatus;
+		CaptureSource(ctx, line);
+	}
+	
+	private static void FollowAddresses(SPSContext ctx) {
+		
+		if (ctx.sourceLines.isEmpty()) return;
+		
+		SPSData.DendStatus dendStatus = ctx.dendStatus;
+		int counter = ctx.sourceLines.get(0).AddressCounter;
+		int last = ctx.sourceLines.get(0).LastAddress;
+		for (SPSSourceLine line: ctx.sourceLines) {
+			if ((line.AddressCounter != counter) || (line.LastAddress != last)) {
+				line.AddressCounter = counter;
+				line.LastAddress = last;
+				ReprocessSource(ctx, line);
+			}
+			counter = line.NextAddressCounter;
+			last = line.NextLastAddress;
+		}
+		ctx.dendStatus = dendStatus;
+	}
+	
+	private static void WriteResults(SPSContext ctx) {
+		
+		ctx.sourceCurrentFile = -1;
+		ctx.lineCount = 0;
+		ctx.errorCount = 0;
+		ctx.warningCount = 0;
+		
+		StartOutput(ctx);
+		
+		int next = 0;
+		for (ctx.sourceCurrentFile = 0; ctx.sourceCurrentFile < ctx.sourceFileCount; ++ctx.sourceCurrentFile) {
+			
+			if (ctx.sourceMultipleFiles) {
+				WriteFile(ctx);
 			}
+			int end = ((ctx.sourceCurrentFile + 1) < ctx.sourceFileCount) ? ctx.sourceFileStart[ctx.sourceCurrentFile + 1]
+																			: ctx.sourceLines.size();
 			
-			SPSStatement.Process();
-			SPSValue.StoreValue();
-			SPSOutput.WriteList();
-			if (SPSData.errorCount == 0) SPSOutput.WriteCmem();
+			for (; next < end; ++next) {
+				SPSSourceLine line = ctx.sourceLines.get(next);
+				
+				ctx.inputLine = line.Line;
+				ctx.lineNumber = line.LineNumber;
+				ctx.inputLabel = line.Label;
+				ctx.inputOperation = line.Operation;
+				ctx.inputOperands = line.Operands;
+				ctx.inputStatement = line.Statement;
+				ctx.inputMessages = "";
+				ctx.labelAddress = line.LabelAddress;
+				ctx.address = line.Address;
+				ctx.length = line.Length;
+				ctx.count = line.Count;
+				ctx.value = line.Value;
+				++ctx.lineCount;
+				
+				SPSInput.ReplayDiagnostics(ctx, line.Messages);
+				WriteSource(ctx, line.Processed);
+			}
+		}
+		
+		EndOutput(ctx);
+	}
+	
+	private static void ProcessPass1(SPSContext ctx) {
+		
+		if (ctx.inputStatement.Class == SPSStatement.StatementClass.COMMENT) {
+			return;
+		} else if (ctx.dendStatus == SPSData.DendStatus.WARNING) {
+			return;
+		} else if (ctx.dendStatus == SPSData.DendStatus.SEEN) {
+			SPSOutput.ReportError(ctx, "statement(s) beyond DEND");
+			ctx.dendStatus = SPSData.DendStatus.WARNING;
+			return;
+		}
+		
+		SPSStatement.Process(ctx);
+	}
+	
+	public static void SizeSource(SPSContext ctx, SPSSourceLine line) {
+		
+		SPSStatement.StatementType type = line.Statement.Type;
+		line.Sizing = SPSData.Sizing.NONE;
+		line.SizeMessages = null;
+		line.BoundsMessage = -1;
+		if (line.Statement.Class == SPSStatement.StatementClass.COMMENT) {
+			return;
+		} else if (type == SPSStatement.StatementType.DEND) {
+			line.Sizing = SPSData.Sizing.DEND;
+			return;
+		} else if (type == SPSStatement.StatementType.HEAD) {
+			line.Sizing = SPSData.Sizing.HEAD;
+			return;
+		}
+		
+		// Where DAC and DSAC text ends depends on the length, so a length naming * or a symbol waits for its address
+		if ((type == SPSStatement.StatementType.DAC) || (type == SPSStatement.StatementType.DSAC)) {
+			int pos = line.Operands.indexOf(',');
+			if ((pos != -1) && !SPSExpression.Get(ctx, SPSUtility.Strip(line.Operands.substring(0, pos))).IsConstant()) {
+				line.Sizing = SPSData.Sizing.ANCHOR;
+				line.SizeSymbols = true;
+				return;
+			}
+		}
+		
+		ctx.addressCounter = 1;
+		ctx.lastAddress = -1;
+		ctx.symbolHead = ' ';
+		ctx.termAsterisk = false;
+		ctx.termSymbol = false;
+		ctx.capturedDiagnostics = new ArrayList<String>();
+		
+		SPSInput.ResumeSource(ctx, line);
+		SPSStatement.Process(ctx);
+		boolean moved = (ctx.addressCounter != 1) || (ctx.lastAddress != -1);
+		if ((line.Statement.Class != SPSStatement.StatementClass.DECLARATIVE) &&
+			(line.Statement.Class != SPSStatement.StatementClass.IMPERATIVE) && (type != SPSStatement.StatementType.DORG)) {
+			line.SizeMessages = ctx.capturedDiagnostics.isEmpty() ? null : ctx.capturedDiagnostics;
+		} else if (ctx.termAsterisk || ctx.termSymbol) {
+			line.Sizing = moved ? SPSData.Sizing.ANCHOR : SPSData.Sizing.PLACED;
+			line.SizeSymbols = ctx.termSymbol;
+		} else if (!moved) {
+			line.Sizing = SPSData.Sizing.PLACED;
+		} else if (type == SPSStatement.StatementType.DORG) {
+			line.Sizing = SPSData.Sizing.RESET;
+			line.Advance = ctx.addressCounter;
+			line.LabelOffset = ctx.labelAddress;
+			line.LastOffset = ctx.lastAddress;
+			line.SizeMessages = ctx.capturedDiagnostics.isEmpty() ? null : ctx.capturedDiagnostics;
+		} else {
+			line.Sizing = SPSData.Sizing.FLOW;
+			line.Align = (ctx.address == 2);
+			line.Length = ctx.length;
+			line.Advance = ctx.addressCounter - ctx.address;
+			line.LabelOffset = ctx.labelAddress - ctx.address;
+			line.LastOffset = ctx.lastAddress - ctx.address;
+			line.SizeMessages = ctx.capturedDiagnostics.isEmpty() ? null : ctx.capturedDiagnostics;
+			line.BoundsMessage = ctx.capturedDiagnostics.lastIndexOf("Eoutside memory bounds");
+		}
+	}
+	
+	private static void PlaceSource(SPSContext ctx, SPSSourceLine line) {
+		
+		ctx.addressCounter = line.AddressCounter;
+		ctx.lastAddress = line.LastAddress;
+		ctx.symbolHead = line.SymbolHead;
+		ctx.dendStatus = line.DendStatus;
+		ctx.capturedDiagnostics = new ArrayList<String>();
+		ctx.deferLabels = true;
+		
+		SPSInput.ResumeSource(ctx, line);
+		SPSStatement.Process(ctx);
+		line.LabelAddress = ctx.labelAddress;
+		line.SizeMessages = ctx.capturedDiagnostics;
+		
+		ctx.deferLabels = false;
+		ctx.capturedDiagnostics = null;
+	}
+	
+	private static void DefineLabel(SPSContext ctx, SPSSourceLine line) {
+		
+		if ((line.Statement.Class != SPSStatement.StatementClass.DECLARATIVE) &&
+			(line.Statement.Class != SPSStatement.StatementClass.IMPERATIVE) &&
+			(line.Statement.Type != SPSStatement.StatementType.DORG)) return;
+		
+		ctx.symbolHead = line.SymbolHead;
+		ctx.inputStatement = line.Statement;
+		ctx.capturedDiagnostics = line.SizeMessages;
+		SPSSymbol.Add(ctx, line.Label, line.LabelAddress, line.LineNumber);
+		ctx.capturedDiagnostics = null;
+	}
+	
+	private static void PlaceSegments(SPSContext ctx, List<SPSSegment> segments) {
+		
+		List<Future<?>> results = new ArrayList<Future<?>>();
+		for (SPSSegment segment: segments) {
+			if (segment.Run) results.add(ForkJoinPool.commonPool().submit(segment));
+		}
+		for (Future<?> result: results) {
+			try {
+				result.get();
+			} catch (InterruptedException | ExecutionException e) {
+				throw new IllegalStateException("pass 1 segment failed", e.getCause());
+			}
+		}
+		
+		for (SPSSegment segment: segments) {
+			if (!segment.Run) {
+				DefineLabel(ctx, segment.Lines.get(segment.Start));
+				continue;
+			}
+			for (int i = 0; i < segment.EventCount; i += 2) {
+				SPSSourceLine line = segment.Lines.get(segment.Events[i]);
+				int entry = segment.Events[i + 1];
+				if (entry == -1) {
+					PlaceSource(ctx, line);
+					DefineLabel(ctx, line);
+				} else {
+					ctx.capturedDiagnostics = line.SizeMessages;
+					SPSSymbol.Define(ctx, segment.Labels.Key(entry), segment.Labels.Address(entry), segment.Labels.Type(entry),
+									 segment.Labels.Defined(entry));
+					ctx.capturedDiagnostics = null;
+				}
+			}
 		}
+		segments.clear();
+	}
+	
+	private static boolean ProcessSource(SPSContext ctx) {
+		
+		if (ctx.inputStatement.Class == SPSStatement.StatementClass.COMMENT) {
+			return false;
+		} else if (ctx.dendStatus == SPSData.DendStatus.WARNING) {
+			ctx.inputStatement = new SPSStatement(ctx.inputStatement);
+			ctx.inputStatement.Listing = SPSStatement.StatementListing.UNKNOWN;
+			return false;
+		} else if (ctx.dendStatus == SPSData.DendStatus.SEEN) {
+			SPSOutput.ReportError(ctx, "statement(s) beyond DEND");
+			ctx.inputStatement = new SPSStatement(ctx.inputStatement);
+			ctx.inputStatement.Listing = SPSStatement.StatementListing.UNKNOWN;
+			ctx.dendStatus = SPSData.DendStatus.WARNING;
+			return false;
+		}
+		
+		SPSStatement.Process(ctx);
+		return true;
+	}
+	
+	private static boolean CaptureSource(SPSContext ctx, SPSSourceLine line) {
+		
+		ctx.capturedDiagnostics = new ArrayList<String>();
+		ctx.unresolvedSymbol = false;
+		
+		SPSInput.LoadSource(ctx, line);
+		line.Processed = ProcessSource(ctx);
+		line.Statement = ctx.inputStatement;
+		line.LabelAddress = ctx.labelAddress;
+		line.Address = ctx.address;
+		line.Length = ctx.length;
+		line.Count = ctx.count;
+		line.Value = ctx.value;
+		line.Messages = ctx.capturedDiagnostics;
+		line.NextAddressCounter = ctx.addressCounter;
+		line.NextLastAddress = ctx.lastAddress;
+		line.NextSymbolHead = ctx.symbolHead;
+		line.NextDendStatus = ctx.dendStatus;
+		
+		ctx.capturedDiagnostics = null;
+		return !ctx.unresolvedSymbol;
+	}
+	
+	private static void WriteSource(SPSContext ctx, boolean processed) {
 		
-		if (SPSData.dendStatus == SPSData.DendStatus.NOT_SEEN) {
-			SPSOutput.ReportError("DEND statement missing");
-			SPSOutput.PrintMessages();
+		if (processed) {
+			SPSValue.StoreValue(ctx);
+		}
+		boolean cmem = (processed || (ctx.inputStatement.Class == SPSStatement.StatementClass.COMMENT)) && (ctx.errorCount == 0);
+		if (ctx.outputWriter != null) {
+			ctx.outputWriter.WriteSource(ctx, cmem);
+			return;
 		}
-		SPSSymbol.Print();
+		SPSOutput.WriteList(ctx);
+		if (cmem) {
+			SPSOutput.WriteCmem(ctx);
+		}
+	}
+	
+	private static void WriteFile(SPSContext ctx) {
 		
-		if (SPSData.errorCount == 0) {
-			if (SPSData.crdOption) SPSOutput.DumpCrd();
-			if (SPSData.ptOption) SPSOutput.DumpPt();
+		if (ctx.outputWriter != null) {
+			ctx.outputWriter.WriteFile(ctx);
+		} else {
+			SPSOutput.PrintFile(ctx);
 		}
+	}
+	
+	private static void StartOutput(SPSContext ctx) {
+		
+		ctx.memory = new SPSMemory(ctx.memorySize);
 		
-		SPSInput.CloseSource();
+		ctx.address = 0;
+		ctx.value = SPSData.INIT_NOP;
+		SPSValue.StoreValue(ctx);
+		ctx.address = 12;
+		if (ctx.loadHalt) {
+		    ctx.value = SPSData.INIT_H;
+		} else {
+		    ctx.value = SPSData.INIT_NOP;
+		}
+		SPSValue.StoreValue(ctx);
+		ctx.address = 24;
+		ctx.value = SPSData.INIT_B.clone();
+		SPSValue.SetField(ctx, SPSData.FIELD_P, 5, false, ctx.dendAddress);
+		SPSValue.StoreValue(ctx);
+		
+		if (ctx.includeTables) {
+			ctx.memory.Store(100, SPSData.multiplyTable);
+			if (ctx.systemType == SPSData.SystemType.MODEL_1) {
+				ctx.memory.Store(300, SPSData.addTable);
+			}
+			ctx.memory.Set(400, SPSData.MEMORY_RM);
+		}
+		
+		if (ctx.lstOption) {
+			SPSOutput.OpenList(ctx);
+			ctx.lstWriter.write("IBM 1620 Jr. SPS Assembler (v" + SPSData.VERSION + ")    Source: " + ctx.sourceFilenames[0] +
+									((ctx.sourceFileCount == 1) ? "" : ",...") + "    Assembled: " + ctx.dateTime + "\n\n");
+		}
+		
+		if (ctx.cmemOption) { 
+			SPSOutput.OpenCmem(ctx);
+			ctx.cmemWriter.write("// IBM 1620 Jr. SPS Assembler (v" + SPSData.VERSION + ")\n");
+			ctx.cmemWriter.write("// Source: " + ctx.sourceFilenames[0] + ((ctx.sourceFileCount == 1) ? "" : ",...") + "\n");
+			ctx.cmemWriter.write("// Assembled: " + ctx.dateTime + "\n\n");
+			SPSOutput.WriteLowCore(ctx);
+		}
+		
+		if (ctx.parallel && ((ctx.lstFile != null) || (ctx.cmemFile != null))) {
+			ctx.outputWriter = SPSWriter.Start(ctx);
+		}
+	}
+	
+	private static void EndOutput(SPSContext ctx) {
+		
+		if (ctx.outputWriter != null) {
+			ctx.outputWriter.Finish();
+			ctx.outputWriter = null;
+		}
+		
+		ctx.inputMessages = "";
+		if (ctx.dendStatus == SPSData.DendStatus.NOT_SEEN) {
+			SPSOutput.ReportError(ctx, "DEND statement missing");
+			SPSOutput.PrintMessages(ctx);
+		}
+		SPSSymbol.Print(ctx);
+		
+		if (ctx.errorCount == 0) {
+			if (ctx.crdOption) SPSOutput.DumpCrd(ctx);
+			if (ctx.ptOption) SPSOutput.DumpPt(ctx);
+			if (ctx.imgOption) SPSImage.Write(ctx);
+		}
 		
-		if (SPSData.lstOption) SPSOutput.CloseList();
-		if (SPSData.cmemOption) SPSOutput.CloseCmem();
+		if (ctx.lstOption) SPSOutput.CloseList(ctx);
+		if (ctx.cmemOption) SPSOutput.CloseCmem(ctx);
 		
-		if (SPSData.errorCount != 0) {
-			SPSOutput.DeleteCmem();
-			SPSOutput.DeleteCrd();
-			SPSOutput.DeletePt();
+		if (ctx.errorCount != 0) {
+			SPSOutput.DeleteCmem(ctx);
+			SPSOutput.DeleteCrd(ctx);
+			SPSOutput.DeletePt(ctx);
+			if (ctx.imgOption) SPSImage.Delete(ctx);
 		}
 	}
 }
@@ -0,0 +1,158 @@
+package SPS1620;
+
+/*
+ *  SPSPatternCheck.java - compares the character class checks against their regular expression versions
+ *
+ *  IBM 1620 Jr Project, Computer History Museum, 2017-2024
+ *
+ *  To recreate the experience (visual, auditory, tactile, visceral) of running historic software on a 1960s-era computer.
+ *
+ *   Dave Babcock     - project lead, software, library
+ *   John M. Bohn Jr. - software
+ *   David Brock      - CHM sponsor
+ *   Steve Casner     - hardware, software
+ *   Joe Fredrick     - hardware, firmware
+ *   Len Shustek      - CHM advisor
+ *   Dag Spicer       - CHM advisor
+ *   David Wise       - IBM 1620 expert
+ */
+
+import java.util.Random;
+
+/*
+ *  Usage:   java SPS1620.SPSPatternCheck [iterations] [seed]
+ *
+ *  Runs every IsValid... check in SPSUtility and its ...Pattern counterpart on the same strings and reports
+ *  any that disagree: every string of up to two characters, every string of up to five edge characters (digits
+ *  around 7 and 9, index parentheses, $ and the like), then random strings drawn mostly from the characters the
+ *  assembler cares about.  Each string is also checked as a range inside a padded copy, the
+ *  way the scanner calls the checks.  Exits with status 1 if any check disagrees.
+ */
+
+public class SPSPatternCheck {
+
+	// Data
+
+	private static final String EDGE = "01789ABJR$()./ ";
+
+	private static final String LIKELY = "0123456789ABIJKLMNRZ$$()(()),.=/@*+-] ]|!}\"~#%&'<>?";
+
+	private static final int MAX_REPORTED = 20;
+
+	private static long checks = 0;
+	private static long mismatches = 0;
+
+	// Methods
+
+	public static void main(String[] args) {
+		int iterations = (args.length > 0) ? Integer.parseInt(args[0]) : 1000000;
+		long seed = (args.length > 1) ? Long.parseLong(args[1]) : 1620L;
+		Random random = new Random(seed);
+		SPSContext divide = new SPSContext();
+		SPSContext noDivide = new SPSContext();
+		char[] chars = new char[132];
+
+		divide.symbolDivide = true;
+		noDivide.symbolDivide = false;
+		for (int i = 0; i < 128; ++i) {
+			chars[i] = (char)i;
+		}
+		chars[128] = (char)0x00c9;
+		chars[129] = (char)0x0100;
+		chars[130] = (char)0x2022;
+		chars[131] = (char)0xffff;
+
+		Check(divide, noDivide, "");
+		for (char c1: chars) {
+			Check(divide, noDivide, String.valueOf(c1));
+			for (char c2: chars) {
+				Check(divide, noDivide, new String(new char[]{c1, c2}));
+			}
+		}
+
+		StringBuilder str = new StringBuilder();
+		Exhaust(divide, noDivide, str, 5);
+
+		for (int n = 0; n < iterations; ++n) {
+			int len = random.nextInt(15);
+			boolean flags = random.nextInt(4) == 0;
+			str.setLength(0);
+			for (int i = 0; i < len; ++i) {
+				if (flags) {
+					str.append((char)('0' + random.nextInt(10)));
+				} else if (random.nextInt(10) != 0) {
+					str.append(LIKELY.charAt(random.nextInt(LIKELY.length())));
+				} else {
+					str.append(chars[random.nextInt(chars.length)]);
+				}
+			}
+			Check(divide, noDivide, str.toString());
+		}
+
+		System.out.println("IBM 1620 Jr. SPS Assembler (v" + SPSData.VERSION + ") character class check");
+		System.out.println("Checks:               " + checks + " (seed " + seed + ")");
+		System.out.println("Mismatches:           " + mismatches);
+		if (mismatches != 0) System.exit(1);
+	}
+
+	private static void Exhaust(SPSContext divide, SPSContext noDivide, StringBuilder str, int depth) {
+		if (str.length() > 2) Check(divide, noDivide, str.toString());
+		if (depth == 0) return;
+
+		for (int i = 0; i < EDGE.length(); ++i) {
+			str.append(EDGE.charAt(i));
+			Exhaust(divide, noDivide, str, depth - 1);
+			str.setLength(str.length() - 1);
+		}
+	}
+
+	private static void Check(SPSContext divide, SPSContext noDivide, String str) {
+		String padded = "#" + str + "#";
+		int start = 1;
+		int end = str.length() + 1;
+
+		Compare("IsValidLine", str, SPSUtility.IsValidLinePattern(str),
+				SPSUtility.IsValidLine(str), SPSUtility.IsValidLine(padded, start, end));
+		Compare("IsValidLabel", str, SPSUtility.IsValidLabelPattern(divide, str),
+				SPSUtility.IsValidLabel(divide, str), SPSUtility.IsValidLabel(divide, padded, start, end));
+		Compare("IsValidLabel -nosymboldivide", str, SPSUtility.IsValidLabelPattern(noDivide, str),
+				SPSUtility.IsValidLabel(noDivide, str), SPSUtility.IsValidLabel(noDivide, padded, start, end));
+		Compare("IsValidSymbol", str, SPSUtility.IsValidSymbolPattern(divide, str),
+				SPSUtility.IsValidSymbol(divide, str), SPSUtility.IsValidSymbol(divide, padded, start, end));
+		Compare("IsValidSymbol -nosymboldivide", str, SPSUtility.IsValidSymbolPattern(noDivide, str),
+				SPSUtility.IsValidSymbol(noDivide, str), SPSUtility.IsValidSymbol(noDivide, padded, start, end));
+		Compare("IsValidNumber", str, SPSUtility.IsValidNumberPattern(str),
+				SPSUtility.IsValidNumber(str), SPSUtility.IsValidNumber(padded, start, end));
+		Compare("IsValidNumberX", str, SPSUtility.IsValidNumberXPattern(str),
+				SPSUtility.IsValidNumberX(str), SPSUtility.IsValidNumberX(padded, start, end));
+		Compare("IsValidAlpha", str, SPSUtility.IsValidAlphaPattern(str),
+				SPSUtility.IsValidAlpha(str), SPSUtility.IsValidAlpha(padded, start, end));
+		Compare("IsValidIndex", str, SPSUtility.IsValidIndexPattern(str),
+				SPSUtility.IsValidIndex(str), SPSUtility.IsValidIndex(padded, start, end));
+		Compare("IsValidFlags", str, SPSUtility.IsValidFlagsPattern(str),
+				SPSUtility.IsValidFlags(str), SPSUtility.IsValidFlags(padded, start, end));
+	}
+
+	private static void Compare(String check, String str, boolean expected, boolean result, boolean ranged) {
+		++checks;
+		if ((result == expected) && (ranged == expected)) return;
+
+		if (++mismatches <= MAX_REPORTED) {
+			System.out.println("*** Mismatch: " + check + " (\"" + Escape(str) + "\") pattern " + expected + ", table " +
+							   result + ", range " + ranged);
+		}
+	}
+
+	private static String Escape(String str) {
+		StringBuilder out = new StringBuilder();
+		for (int i = 0; i < str.length(); ++i) {
+			char c = str.charAt(i);
+			if ((c < ' ') || (c > '~') || (c == '"') || (c == '\\')) {
+				out.append(String.format("\\u%04x", (int)c));
+			} else {
+				out.append(c);
+			}
+		}
+		return out.toString();
+	}
+}
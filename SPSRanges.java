@@ -0,0 +1,98 @@
+package SPS1620;
+
+/*
+ *  SPSRanges.java - the ranges of memory addresses written so far, as a sorted set of disjoint intervals
+ *
+ *  IBM 1620 Jr Project, Computer History Museum, 2017-2024
+ *
+ *  To recreate the experience (visual, auditory, tactile, visceral) of running historic software on a 1960s-era computer.
+ *
+ *   Dave Babcock     - project lead, software, library
+ *   John M. Bohn Jr. - software
+ *   David Brock      - CHM sponsor
+ *   Steve Casner     - hardware, software
+ *   Joe Fredrick     - hardware, firmware
+ *   Len Shustek      - CHM advisor
+ *   Dag Spicer       - CHM advisor
+ *   David Wise       - IBM 1620 expert
+ */
+
+import java.util.Arrays;
+
+/*
+ *  Interval i covers addresses Start(i) up to but not including End(i), and Find gives the first interval
+ *  that ends after an address.  Intervals that overlap or touch are merged as they are added, so the set
+ *  stays sorted and as small as possible.  A program stores its values mostly in ascending order, which
+ *  only extends or follows the last interval; anything else is found by binary search.
+ */
+
+public class SPSRanges {
+
+	// Data
+
+	public int Count = 0;
+
+	private int[] starts = new int[16];
+	private int[] ends = new int[16];
+
+	// Methods
+
+	public int Start(int i) {
+		return starts[i];
+	}
+
+	public int End(int i) {
+		return ends[i];
+	}
+
+	public int Find(int address) {
+		int i = Arrays.binarySearch(ends, 0, Count, address);
+		return (i < 0) ? (-i - 1) : (i + 1);
+	}
+
+	public void Clear() {
+		Count = 0;
+	}
+
+	public void Add(int start, int end) {
+		if (start >= end) return;
+
+		if ((Count == 0) || (start > ends[Count - 1])) {
+			Insert(Count, start, end);
+			return;
+		}
+		if (start >= starts[Count - 1]) {
+			ends[Count - 1] = Math.max(ends[Count - 1], end);
+			return;
+		}
+
+		int first = Arrays.binarySearch(ends, 0, Count, start);
+		if (first < 0) first = -first - 1;
+		int last = first;
+		while ((last < Count) && (starts[last] <= end)) {
+			++last;
+		}
+		if (first == last) {
+			Insert(first, start, end);
+			return;
+		}
+
+		starts[first] = Math.min(starts[first], start);
+		ends[first] = Math.max(ends[last - 1], end);
+		System.arraycopy(starts, last, starts, first + 1, Count - last);
+		System.arraycopy(ends, last, ends, first + 1, Count - last);
+		Count -= last - first - 1;
+	}
+
+	private void Insert(int i, int start, int end) {
+		if (Count == starts.length) {
+			starts = Arrays.copyOf(starts, 2 * Count);
+			ends = Arrays.copyOf(ends, 2 * Count);
+		}
+		System.arraycopy(starts, i, starts, i + 1, Count - i);
+		System.arraycopy(ends, i, ends, i + 1, Count - i);
+		starts[i] = start;
+		ends[i] = end;
+		++Count;
+	}
+}
@@ -0,0 +1,86 @@
+package SPS1620;
+
+/*
+ *  SPSRecord.java - what the listing and cmem file need to show one statement, handed to the output writer
+ *
+ *  IBM 1620 Jr Project, Computer History Museum, 2017-2024
+ *
+ *  To recreate the experience (visual, auditory, tactile, visceral) of running historic software on a 1960s-era computer.
+ *
+ *   Dave Babcock     - project lead, software, library
+ *   John M. Bohn Jr. - software
+ *   David Brock      - CHM sponsor
+ *   Steve Casner     - hardware, software
+ *   Joe Fredrick     - hardware, firmware
+ *   Len Shustek      - CHM advisor
+ *   Dag Spicer       - CHM advisor
+ *   David Wise       - IBM 1620 expert
+ */
+
+/*
+ *  A record is taken from the context once a statement has been processed and its diagnostics reported,
+ *  so it holds the rendered messages rather than the diagnostics.  A record without a statement stands
+ *  for the heading of the next source file.  Value arrays are never changed once a statement is done,
+ *  so they are shared, not copied.
+ */
+
+public class SPSRecord {
+
+	// Data
+
+	public int SourceFile;
+	public String Line;
+	public int LineNumber;
+	public String Label;
+	public String Operation;
+	public String Operands;
+	public SPSStatement Statement;
+	public String Messages;
+	public int LabelAddress;
+	public int Address;
+	public int Length;
+	public int Count;
+	public byte[] Value;
+	public boolean Cmem;
+
+	// Constructors
+
+	public SPSRecord(int sourceFile) {
+		this.SourceFile = sourceFile;
+	}
+
+	public SPSRecord(SPSContext ctx, boolean cmem) {
+		this.SourceFile = ctx.sourceCurrentFile;
+		this.Line = ctx.inputLine;
+		this.LineNumber = ctx.lineNumber;
+		this.Label = ctx.inputLabel;
+		this.Operation = ctx.inputOperation;
+		this.Operands = ctx.inputOperands;
+		this.Statement = ctx.inputStatement;
+		this.Messages = ctx.inputMessages;
+		this.LabelAddress = ctx.labelAddress;
+		this.Address = ctx.address;
+		this.Length = ctx.length;
+		this.Count = ctx.count;
+		this.Value = ctx.value;
+		this.Cmem = cmem;
+	}
+
+	// Methods
+
+	public void Load(SPSContext ctx) {
+		ctx.sourceCurrentFile = SourceFile;
+		ctx.inputLine = Line;
+		ctx.lineNumber = LineNumber;
+		ctx.inputLabel = Label;
+		ctx.inputOperation = Operation;
+		ctx.inputOperands = Operands;
+		ctx.inputStatement = Statement;
+		ctx.inputMessages = Messages;
+		ctx.labelAddress = LabelAddress;
+		ctx.address = Address;
+		ctx.length = Length;
+		ctx.count = Count;
+		ctx.value = Value;
+	}
+}
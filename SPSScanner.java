@@ -0,0 +1,235 @@
+package SPS1620;
+
+/*
+ *  SPSScanner.java - byte level source scanner, splits a whole source file into lines and fields in one pass
+ *
+ *  IBM 1620 Jr Project, Computer History Museum, 2017-2024
+ *
+ *  To recreate the experience (visual, auditory, tactile, visceral) of running historic software on a 1960s-era computer.
+ *
+ *   Dave Babcock     - project lead, software, library
+ *   John M. Bohn Jr. - software
+ *   David Brock      - CHM sponsor
+ *   Steve Casner     - hardware, software
+ *   Joe Fredrick     - hardware, firmware
+ *   Len Shustek      - CHM advisor
+ *   Dag Spicer       - CHM advisor
+ *   David Wise       - IBM 1620 expert
+ */
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ *  The scanner gives exactly the lines and fields of the reference path (BufferedReader.readLine, toUpperCase,
+ *  ExpandTabs, PATTERN_FREEFORM), which is still used with -nobytescan.  Lines are uppercased and tab-expanded
+ *  into a reused char buffer and the fields are kept as offsets into it.  A line holding any non-ASCII byte is
+ *  decoded with the source charset and left to the reference path.
+ *
+ *  Split cuts the remaining bytes into scanners over runs of whole lines, roughly size bytes each, for
+ *  scanning on separate threads; a CR LF pair is never cut in two.
+ */
+
+public class SPSScanner {
+
+	// Data
+
+	public char[] Line = new char[128];
+	public int Length;
+	public boolean Ascii;
+	public boolean Valid;
+	public String Text;
+
+	public boolean Comment;
+	public int LabelStart;
+	public int LabelEnd;
+	public int OperationStart;
+	public int OperationEnd;
+	public int OperandsStart;
+	public int OperandsEnd;
+
+	private byte[] buffer;
+	private int position;
+	private int end;
+	private Charset charset;
+
+	// Constructors
+
+	public SPSScanner(byte[] buffer, Charset charset) {
+		this(buffer, 0, buffer.length, charset);
+	}
+
+	public SPSScanner(byte[] buffer, int start, int end, Charset charset) {
+		this.buffer = buffer;
+		this.position = start;
+		this.end = end;
+		this.charset = charset;
+	}
+
+	// Methods
+
+	public static boolean IsAsciiCompatible(Charset charset) {
+		String probe = "\t\n\r *09AZaz";
+		byte[] bytes = probe.getBytes(charset);
+		if (bytes.length != probe.length()) return false;
+		for (int i = 0; i < bytes.length; ++i) {
+			if (bytes[i] != probe.charAt(i)) return false;
+		}
+		return true;
+	}
+
+	public List<SPSScanner> Split(int size) {
+		List<SPSScanner> parts = new ArrayList<SPSScanner>();
+		int start = position;
+		while (start < end) {
+			int stop = Math.min(start + size, end);
+			while ((stop < end) && !IsLineStart(stop)) ++stop;
+			parts.add(new SPSScanner(buffer, start, stop, charset));
+			start = stop;
+		}
+		return parts;
+	}
+
+	public boolean NextLine(SPSContext ctx) {
+		if (position >= this.end) return false;
+
+		int start = position;
+		int end = start;
+		boolean ascii = true;
+		while ((end < this.end) && (buffer[end] != '\n') && (buffer[end] != '\r')) {
+			if (buffer[end] < 0) ascii = false;
+			++end;
+		}
+		position = end + 1;
+		if ((end < this.end) && (buffer[end] == '\r') && (position < this.end) && (buffer[position] == '\n')) {
+			++position;
+		}
+
+		Ascii = ascii;
+		if (!ascii) {
+			Text = new String(buffer, start, end - start, charset);
+			return true;
+		}
+		Text = null;
+
+		boolean blank = true;
+		for (int i = start; i < end; ++i) {
+			if (buffer[i] != ' ') {
+				blank = false;
+				break;
+			}
+		}
+		Length = 0;
+		Valid = true;
+		if (blank) return true;
+
+		boolean expand = (ctx.sourceFormat == SPSData.SourceFormat.FREEFORM);
+		for (int i = start; i < end; ++i) {
+			char c = (char)buffer[i];
+			if ((c >= 'a') && (c <= 'z')) {
+				c -= 'a' - 'A';
+			}
+			if ((c == '\t') && expand) {
+				int spaces = TabSpaces(ctx, Length);
+				Reserve(Length + spaces);
+				for (int j = 0; j < spaces; ++j) {
+					Line[Length++] = ' ';
+				}
+			} else {
+				Reserve(Length + 1);
+				Line[Length++] = c;
+				if ((SPSData.charClass[c] & SPSData.CLASS_LINE) == 0) Valid = false;
+			}
+		}
+
+		return true;
+	}
+
+	public void Fields(SPSContext ctx) {
+		LabelStart = LabelEnd = OperationStart = OperationEnd = OperandsStart = OperandsEnd = 0;
+		Comment = false;
+
+		if (ctx.sourceFormat == SPSData.SourceFormat.FIXED) {
+			if (IsBlank(Math.min(5, Length), Math.min(75, Length)) || ((Length > 5) && (Line[5] == '*'))) {
+				Comment = true;
+				return;
+			}
+			LabelStart = Math.min(5, Length);
+			LabelEnd = RTrim(LabelStart, Math.min(11, Length));
+			OperationStart = Math.min(11, Length);
+			OperationEnd = RTrim(OperationStart, Math.min(15, Length));
+			OperandsEnd = Math.min(75, Length);
+			OperandsStart = LTrim(Math.min(15, Length), OperandsEnd);
+
+		} else {
+			if ((Length == 0) || IsBlank(0, Length) || (Line[0] == '*')) {
+				Comment = true;
+				return;
+			}
+			int i = 0;
+			while ((i < Length) && (Line[i] != ' ')) ++i;
+			int j = LTrim(i, Length);
+			if ((i == Length) || (j == Length)) return;
+			int k = j;
+			while ((k < Length) && (Line[k] != ' ')) ++k;
+			LabelEnd = i;
+			OperationStart = j;
+			OperationEnd = k;
+			OperandsStart = OperandsEnd = k;
+			if (k < Length) {
+				OperandsEnd = Length;
+				OperandsStart = LTrim(k + 1, Length);
+			}
+		}
+	}
+
+	public String LineString() {
+		return new String(Line, 0, Length);
+	}
+
+	public String Field(int start, int end) {
+		return (start >= end) ? "" : new String(Line, start, end - start);
+	}
+
+	private static int TabSpaces(SPSContext ctx, int pos) {
+		if (ctx.tabTable.length == 1) {
+			return ctx.tabTable[0] - (pos % ctx.tabTable[0]);
+		}
+		for (int j = 0; j < ctx.tabTable.length; ++j) {
+			if (pos < ctx.tabTable[j]) {
+				return ctx.tabTable[j] - pos - 1;
+			}
+		}
+		return 1;
+	}
+
+	private boolean IsLineStart(int pos) {
+		return (buffer[pos - 1] == '\n') || ((buffer[pos - 1] == '\r') && (buffer[pos] != '\n'));
+	}
+
+	private void Reserve(int size) {
+		if (size > Line.length) {
+			char[] line = new char[Math.max(size, 2 * Line.length)];
+			System.arraycopy(Line, 0, line, 0, Length);
+			Line = line;
+		}
+	}
+
+	private boolean IsBlank(int start, int end) {
+		for (int i = start; i < end; ++i) {
+			if (Line[i] != ' ') return false;
+		}
+		return true;
+	}
+
+	private int LTrim(int start, int end) {
+		while ((start < end) && (Line[start] == ' ')) ++start;
+		return start;
+	}
+
+	private int RTrim(int start, int end) {
+		while ((end > start) && (Line[end - 1] == ' ')) --end;
+		return end;
+	}
+}
@@ -0,0 +1,195 @@
+package SPS1620;
+
+/*
+ *  SPSSegment.java - a run of pass 1 statements placed from the addresses in effect at its start
+ *
+ *  IBM 1620 Jr Project, Computer History Museum, 2017-2024
+ *
+ *  To recreate the experience (visual, auditory, tactile, visceral) of running historic software on a 1960s-era computer.
+ *
+ *   Dave Babcock     - project lead, software, library
+ *   John M. Bohn Jr. - software
+ *   David Brock      - CHM sponsor
+ *   Steve Casner     - hardware, software
+ *   Joe Fredrick     - hardware, firmware
+ *   Len Shustek      - CHM advisor
+ *   Dag Spicer       - CHM advisor
+ *   David Wise       - IBM 1620 expert
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ *  A chunk's lines are cut into segments at the statements that cannot be sized on their own (HEAD, DEND,
+ *  and an ANCHOR whose size or DORG address depends on * or a symbol), each of which is a segment by itself.
+ *  Every other line of a run either moves the address counter by an amount that only depends on whether
+ *  it starts odd or even, or sets it outright (a DORG to a constant), so the run's effect is summed up as
+ *  where it leaves the counter and last address when started at 0 and at 1.
+ *
+ *  Once the addresses at the start of every run are known, the runs are placed at once: each works out the
+ *  addresses of its lines, checks them against memory, and keys its labels into a table of its own, which
+ *  finds the duplicates within the run.  Events lists, in source order, the labels first defined in the run
+ *  (with their entry in Labels) and the PLACED lines (entry -1), for defining them in the symbol table.
+ */
+
+public class SPSSegment implements Runnable {
+
+	// Data
+
+	public List<SPSSourceLine> Lines;
+	public int Start;
+	public int End;
+	public boolean Run;
+
+	public boolean Reset = false;
+	public boolean SetsLast = false;
+	public int Counter0 = 0;
+	public int Counter1 = 1;
+	public int Last0 = 0;
+	public int Last1 = 0;
+
+	public int AddressCounter;
+	public int LastAddress;
+	public char SymbolHead;
+	public int LineNumber;
+
+	public SPSSymbolTable Labels;
+	public int[] Events;
+	public int EventCount;
+
+	private SPSContext ctx;
+
+	// Constructor
+
+	public SPSSegment(SPSContext ctx, List<SPSSourceLine> lines, int start, int end, boolean run) {
+		this.ctx = ctx;
+		this.Lines = lines;
+		this.Start = start;
+		this.End = end;
+		this.Run = run;
+
+		if (!run) return;
+
+		for (int i = start; i < end; ++i) {
+			SPSSourceLine line = lines.get(i);
+			if (line.Sizing == SPSData.Sizing.FLOW) {
+				int start0 = Start(line, Counter0);
+				int start1 = Start(line, Counter1);
+				Counter0 = start0 + line.Advance;
+				Counter1 = start1 + line.Advance;
+				Last0 = start0 + line.LastOffset;
+				Last1 = start1 + line.LastOffset;
+				SetsLast = true;
+			} else if (line.Sizing == SPSData.Sizing.RESET) {
+				Counter0 = Counter1 = line.Advance;
+				Last0 = Last1 = line.LastOffset;
+				Reset = true;
+				SetsLast = true;
+			}
+		}
+	}
+
+	// Methods
+
+	public static List<SPSSegment> Split(SPSContext ctx, List<SPSSourceLine> lines) {
+		List<SPSSegment> segments = new ArrayList<SPSSegment>();
+
+		int start = 0;
+		for (int i = 0; i < lines.size(); ++i) {
+			SPSData.Sizing sizing = lines.get(i).Sizing;
+			if ((sizing == SPSData.Sizing.HEAD) || (sizing == SPSData.Sizing.ANCHOR) || (sizing == SPSData.Sizing.DEND)) {
+				if (start < i) segments.add(new SPSSegment(ctx, lines, start, i, true));
+				segments.add(new SPSSegment(ctx, lines, i, i + 1, false));
+				start = i + 1;
+			}
+		}
+		if (start < lines.size()) segments.add(new SPSSegment(ctx, lines, start, lines.size(), true));
+
+		return segments;
+	}
+
+	public int Counter(int counter) {
+		if (Reset) return Counter0;
+		return ((counter & 1) == 0) ? counter + Counter0 : counter - 1 + Counter1;
+	}
+
+	public int Last(int counter, int last) {
+		if (Reset) return Last0;
+		if (!SetsLast) return last;
+		return ((counter & 1) == 0) ? counter + Last0 : counter - 1 + Last1;
+	}
+
+	public void run() {
+		SPSContext worker = new SPSContext(ctx);
+		worker.pass = 1;
+		worker.symbolHead = SymbolHead;
+		worker.symbolTable = Labels = new SPSSymbolTable();
+		Events = new int[2 * (End - Start)];
+		EventCount = 0;
+
+		int counter = AddressCounter;
+		int last = LastAddress;
+		int number = LineNumber;
+		for (int i = Start; i < End; ++i) {
+			SPSSourceLine line = Lines.get(i);
+			line.LineNumber = number++;
+			line.AddressCounter = counter;
+			line.LastAddress = last;
+			line.SymbolHead = SymbolHead;
+			line.DendStatus = SPSData.DendStatus.NOT_SEEN;
+
+			if (line.Sizing == SPSData.Sizing.FLOW) {
+				int start = Start(line, counter);
+				CheckBounds(worker, line, start);
+				line.LabelAddress = start + line.LabelOffset;
+				counter = start + line.Advance;
+				last = start + line.LastOffset;
+				Define(worker, line, i);
+			} else if (line.Sizing == SPSData.Sizing.RESET) {
+				line.LabelAddress = line.LabelOffset;
+				counter = line.Advance;
+				last = line.LastOffset;
+				Define(worker, line, i);
+			} else if (line.Sizing == SPSData.Sizing.PLACED) {
+				Events[EventCount++] = i;
+				Events[EventCount++] = -1;
+			}
+		}
+	}
+
+	private static int Start(SPSSourceLine line, int counter) {
+		return (line.Align && ((counter & 1) == 1)) ? counter + 1 : counter;
+	}
+
+	// Sizing probed a FLOW statement at 1 (or 2 once aligned), so its bounds error may need adding or taking back
+	private void CheckBounds(SPSContext worker, SPSSourceLine line, int start) {
+		boolean outside = (start + line.Length) > ctx.memorySize;
+		if (outside && (line.BoundsMessage == -1)) {
+			worker.capturedDiagnostics = Messages(line);
+			line.BoundsMessage = line.SizeMessages.size();
+			SPSOutput.ReportError(worker, "outside memory bounds");
+		} else if (!outside && (line.BoundsMessage != -1)) {
+			line.SizeMessages.remove(line.BoundsMessage);
+			line.BoundsMessage = -1;
+		}
+	}
+
+	private void Define(SPSContext worker, SPSSourceLine line, int i) {
+		if (SPSUtility.IsEmpty(line.Label)) return;
+
+		worker.capturedDiagnostics = Messages(line);
+		long key = SPSSymbol.LabelKey(worker, line.Label);
+		if (key == -1) return;
+		int entry = SPSSymbol.Define(worker, key, line.LabelAddress, line.Statement.Type, line.LineNumber);
+		if (entry != -1) {
+			Events[EventCount++] = i;
+			Events[EventCount++] = entry;
+		}
+	}
+
+	private static List<String> Messages(SPSSourceLine line) {
+		if (line.SizeMessages == null) line.SizeMessages = new ArrayList<String>();
+		return line.SizeMessages;
+	}
+}
@@ -0,0 +1,190 @@
+package SPS1620;
+
+/*
+ *  SPSServer.java - long-running assembler serving requests on stdin/stdout or a Unix-domain socket
+ *
+ *  IBM 1620 Jr Project, Computer History Museum, 2017-2024
+ *
+ *  To recreate the experience (visual, auditory, tactile, visceral) of running historic software on a 1960s-era computer.
+ *
+ *   Dave Babcock     - project lead, software, library
+ *   John M. Bohn Jr. - software
+ *   David Brock      - CHM sponsor
+ *   Steve Casner     - hardware, software
+ *   Joe Fredrick     - hardware, firmware
+ *   Len Shustek      - CHM advisor
+ *   Dag Spicer       - CHM advisor
+ *   David Wise       - IBM 1620 expert
+ */
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ *  Request:   one line, <working directory> TAB <arg1> TAB <arg2> ..., the args being a normal command line.
+ *
+ *  Response:  the console output of the assembly, then
+ *               DIAGNOSTIC <message>     for every error and warning,
+ *               OUTPUT <kind> <path>     for every lst, cmem, crd, or pt file produced,
+ *               END <status>             the exit status a stand-alone run would have returned.
+ *
+ *  The server's own command line options are the defaults for every request.  On a socket each
+ *  connection carries one request and is handled on a pool of -jobs=<n> worker threads.
+ */
+
+public class SPSServer implements Runnable {
+
+	// Data
+
+	private SPSContext defaults;
+	private SocketChannel channel;
+
+	// Constructor
+
+	public SPSServer(SPSContext defaults, SocketChannel channel) {
+		this.defaults = defaults;
+		this.channel = channel;
+	}
+
+	// Methods
+
+	public static boolean Run(SPSContext defaults) {
+		if (defaults.serverSocket == null) {
+			return ServeConsole(defaults);
+		} else {
+			return ServeSocket(defaults);
+		}
+	}
+
+	private static boolean ServeConsole(SPSContext defaults) {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+		String request;
+
+		try {
+			while ((request = reader.readLine()) != null) {
+				if (SPSUtility.IsEmpty(request)) continue;
+				System.out.print(Request(defaults, request));
+				System.out.flush();
+			}
+		} catch (IOException e) {
+			SPSOutput.ReportError(defaults, "cannot read request (" + e.getMessage() + ")");
+			return false;
+		}
+
+		return true;
+	}
+
+	private static boolean ServeSocket(SPSContext defaults) {
+		final Path path = Paths.get(defaults.serverSocket);
+		int workers = (defaults.batchJobs > 0) ? defaults.batchJobs : Runtime.getRuntime().availableProcessors();
+		ExecutorService pool = Executors.newFixedThreadPool(workers);
+
+		try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+			Files.deleteIfExists(path);
+			server.bind(UnixDomainSocketAddress.of(path));
+			Runtime.getRuntime().addShutdownHook(new Thread() {
+				public void run() {
+					try {
+						Files.deleteIfExists(path);
+					} catch (IOException e) {
+						// ignore error
+					}
+				}
+			});
+			System.out.println("\nListening on " + path);
+
+			while (true) {
+				pool.execute(new SPSServer(defaults, server.accept()));
+			}
+		} catch (IOException e) {
+			SPSOutput.ReportError(defaults, "cannot serve socket " + path + " (" + e.getMessage() + ")");
+			pool.shutdown();
+			return false;
+		}
+	}
+
+	public void run() {
+		try (SocketChannel ch = channel) {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(Channels.newInputStream(ch), StandardCharsets.UTF_8));
+			String request = reader.readLine();
+			if (request != null) {
+				OutputStream out = Channels.newOutputStream(ch);
+				out.write(Request(defaults, request).getBytes(StandardCharsets.UTF_8));
+				out.flush();
+			}
+		} catch (IOException e) {
+			// client went away, nothing to report to
+		}
+	}
+
+	public static String Request(SPSContext defaults, String request) {
+		String[] fields = request.split("\t", -1);
+		List<String> args = new ArrayList<String>();
+		SPSContext ctx = new SPSContext(defaults);
+		ByteArrayOutputStream console = new ByteArrayOutputStream();
+		int status;
+
+		for (int i = 1; i < fields.length; ++i) {
+			if (!fields[i].isEmpty()) args.add(fields[i]);
+		}
+
+		ctx.console = new PrintStream(console, true);
+		ctx.diagnostics = new ArrayList<String>();
+		ctx.directory = new File(fields[0]);
+		ctx.console.println("IBM 1620 Jr. SPS Assembler (v" + SPSData.VERSION + ")");
+
+		try {
+			if (!SPSMain.ParseCommandLine(ctx, args.toArray(new String[0]))) {
+				status = 0;
+			} else if (ctx.batchOption || ctx.serverOption || ctx.watchOption) {
+				SPSOutput.ReportError(ctx, "batch, server and watch options not allowed in a request");
+				status = 1;
+			} else {
+				status = SPSMain.Assemble(ctx) ? 0 : 1;
+			}
+		} catch (RuntimeException e) {
+			ctx.console.println("*** Error: internal error (" + e + ")");
+			status = 1;
+		}
+		ctx.console.flush();
+
+		StringBuilder response = new StringBuilder(console.toString());
+		for (String diagnostic: ctx.diagnostics) {
+			response.append("DIAGNOSTIC ").append(diagnostic).append('\n');
+		}
+		AppendOutput(response, ctx, "lst", ctx.lstOption, ctx.lstFilename);
+		AppendOutput(response, ctx, "cmem", ctx.cmemOption, ctx.cmemFilename);
+		AppendOutput(response, ctx, "crd", ctx.crdOption, ctx.crdFilename);
+		AppendOutput(response, ctx, "pt", ctx.ptOption, ctx.ptFilename);
+		AppendOutput(response, ctx, "img", ctx.imgOption, ctx.imgFilename);
+		response.append("END ").append(status).append('\n');
+
+		return response.toString();
+	}
+
+	private static void AppendOutput(StringBuilder response, SPSContext ctx, String kind, boolean option, String filename) {
+		if (!option || (filename == null)) return;
+		File file = SPSUtility.GetFile(ctx, filename);
+		if (file.exists()) {
+			response.append("OUTPUT ").append(kind).append(' ').append(file.getAbsolutePath()).append('\n');
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package SPS1620;
+
+/*
+ *  SPSSourceLine.java - one source statement as scanned by pass 1, replayed by pass 2
+ *
+ *  IBM 1620 Jr Project, Computer History Museum, 2017-2024
+ *
+ *  To recreate the experience (visual, auditory, tactile, visceral) of running historic software on a 1960s-era computer.
+ *
+ *   Dave Babcock     - project lead, software, library
+ *   John M. Bohn Jr. - software
+ *   David Brock      - CHM sponsor
+ *   Steve Casner     - hardware, software
+ *   Joe Fredrick     - hardware, firmware
+ *   Len Shustek      - CHM advisor
+ *   Dag Spicer       - CHM advisor
+ *   David Wise       - IBM 1620 expert
+ */
+
+import java.util.List;
+
+/*
+ *  Diagnostics holds the errors ("E...") and warnings ("W...") raised while scanning the line, so pass 2 can
+ *  report them again without rescanning.  DAC and DSAC operands are split again in pass 2 since their
+ *  length operand may name a symbol defined further on.
+ *
+ *  The line also keeps the addresses and head in effect when it was read, so it can be processed on its
+ *  own.  In one-pass mode and in a parallel pass 2 it keeps the results and diagnostics of processing it,
+ *  for writing the outputs in source order, and the addresses, head and DEND state it leaves for the next
+ *  line.  Cached marks a line whose results were read back from the file cache (see SPSFileCache) instead.
+ *
+ *  A parallel pass 1 sizes the line before its address is known (see SPSPasses.SizeSource).  For a FLOW
+ *  statement Advance, LabelOffset and LastOffset are relative to its start, the address counter rounded up
+ *  to even first if Align is set; for a RESET (DORG to a constant) they are the addresses themselves.
+ *  SizeMessages holds the diagnostics of sizing and placing it, reported once every address is known, and
+ *  BoundsMessage the index among them of the bounds error sizing a FLOW statement reported, or -1.
+ */
+
+public class SPSSourceLine {
+
+	// Data
+
+	public String Line;
+	public int LineNumber;
+	public boolean Scanned;
+	public String Label;
+	public String Operation;
+	public String Operands;
+	public String[] Operand;
+	public SPSStatement Statement;
+	public List<String> Diagnostics;
+	
+	public int AddressCounter;
+	public int LastAddress;
+	public char SymbolHead;
+	public SPSData.DendStatus DendStatus;
+	public boolean Processed;
+	public int LabelAddress;
+	public int Address;
+	public int Length;
+	public int Count;
+	public byte[] Value;
+	public List<String> Messages;
+	public int NextAddressCounter;
+	public int NextLastAddress;
+	public char NextSymbolHead;
+	public SPSData.DendStatus NextDendStatus;
+	public boolean Cached;
+	
+	public SPSData.Sizing Sizing;
+	public boolean SizeSymbols;
+	public boolean Align;
+	public int Advance;
+	public int LabelOffset;
+	public int LastOffset;
+	public List<String> SizeMessages;
+	public int BoundsMessage;
+
+	// Constructor
+
+	public SPSSourceLine(SPSContext ctx) {
+		this.Line = ctx.inputLine;
+		this.LineNumber = ctx.lineNumber;
+		this.Scanned = (ctx.dendStatus == SPSData.DendStatus.NOT_SEEN);
+		this.Label = ctx.inputLabel;
+		this.Operation = ctx.inputOperation;
+		this.Operands = ctx.inputOperands;
+		this.Operand = ctx.inputOperand;
+		this.Statement = ctx.inputStatement;
+		this.Diagnostics = ctx.inputDiagnostics;
+		this.AddressCounter = ctx.addressCounter;
+		this.LastAddress = ctx.lastAddress;
+		this.SymbolHead = ctx.symbolHead;
+		this.DendStatus = ctx.dendStatus;
+	}
+}
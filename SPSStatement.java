@@ -105,7 +105,9 @@ public class SPSStatement {
 	
 	// Methods
 
-	public static void Initialize() {
+	public static synchronized void Initialize() {
+		
+		if (!statementTable.isEmpty()) return;
 
 		/*  UNKNOWN  */
 
@@ -381,7 +383,7 @@ public class SPSStatement {
 		return new SPSStatement(StatementClass.IMPERATIVE, StatementType.INSTRUCTION, SPSData.SystemType.ANY, opCode, 3, P_REFERENCE, Q_REFERENCE, StatementListing.INSTRUCTION);
 	}
 
-	public static void Process() {
+	public static void Process(SPSContext ctx) {
 		int len;
 		int lens[] = new int[20];
 		int pos;
@@ -390,13 +392,13 @@ public class SPSStatement {
 		int power;
 		int temp;
 		
-		SPSData.labelAddress = 0;
-		SPSData.address = 0;
-		SPSData.length = 0;
-		SPSData.count = 0;
-		SPSData.value = null;
+		ctx.labelAddress = 0;
+		ctx.address = 0;
+		ctx.length = 0;
+		ctx.count = 0;
+		ctx.value = null;
 		
-		switch (SPSData.inputStatement.Type) {
+		switch (ctx.inputStatement.Type) {
 		
 			/*  UNKNOWN  */
 
@@ -413,472 +415,472 @@ public class SPSStatement {
 			/*  CONTROL  */
 
 			case DEND:
-				SPSData.dendStatus = SPSData.DendStatus.SEEN;
-				if (!SPSUtility.IsEmpty(SPSData.inputLabel)) {
-					SPSOutput.ReportWarning("unexpected label (" + SPSData.inputLabel + ")");
+				ctx.dendStatus = SPSData.DendStatus.SEEN;
+				if (!SPSUtility.IsEmpty(ctx.inputLabel)) {
+					SPSOutput.ReportWarning(ctx, "unexpected label (" + ctx.inputLabel + ")");
 				}
-				SPSData.labelAddress = (int)EvalOperand(SPSData.inputOperand[0], SPSData.lastAddress, false, true, StatementCheck.ADDR_EVEN);
-				SPSData.address = SPSData.labelAddress;
-				SPSData.dendAddress = SPSData.labelAddress;
+				ctx.labelAddress = (int)EvalOperand(ctx, ctx.inputOperand[0], ctx.lastAddress, false, true, StatementCheck.ADDR_EVEN);
+				ctx.address = ctx.labelAddress;
+				ctx.dendAddress = ctx.labelAddress;
 				break;
 			
 			case DORG:
-				SPSData.labelAddress = (int)EvalOperand(SPSData.inputOperand[0], SPSData.lastAddress, false, true, StatementCheck.ADDRESS);
-				SPSData.addressCounter = SPSData.labelAddress;
-				SPSData.address = SPSData.labelAddress;
-				SPSData.lastAddress = SPSData.labelAddress - 1;
-				if (SPSData.pass == 1) {
-					SPSSymbol.Add(SPSData.inputLabel, SPSData.labelAddress, SPSData.lineNumber);
+				ctx.labelAddress = (int)EvalOperand(ctx, ctx.inputOperand[0], ctx.lastAddress, false, true, StatementCheck.ADDRESS);
+				ctx.addressCounter = ctx.labelAddress;
+				ctx.address = ctx.labelAddress;
+				ctx.lastAddress = ctx.labelAddress - 1;
+				if (ctx.pass == 1) {
+					SPSSymbol.Add(ctx, ctx.inputLabel, ctx.labelAddress, ctx.lineNumber);
 				} else {
-					SPSSymbol.Verify(SPSData.inputLabel, SPSData.lineNumber);
+					SPSSymbol.Verify(ctx, ctx.inputLabel, ctx.lineNumber);
 				}
 				break;
 			
 			case HEAD:
-				if (!SPSUtility.IsEmpty(SPSData.inputLabel)) {
-					SPSOutput.ReportWarning("unexpected label (" + SPSData.inputLabel + ")");
+				if (!SPSUtility.IsEmpty(ctx.inputLabel)) {
+					SPSOutput.ReportWarning(ctx, "unexpected label (" + ctx.inputLabel + ")");
 				}
-				if (SPSUtility.IsEmpty(SPSData.inputOperand[0])) {
-					SPSData.symbolHead = ' ';
-				} else if ((SPSData.inputOperand[0].length() == 1) && SPSUtility.IsValidHead(SPSData.inputOperand[0].charAt(0))) {
-					SPSData.symbolHead = SPSData.inputOperand[0].charAt(0);
+				if (SPSUtility.IsEmpty(ctx.inputOperand[0])) {
+					ctx.symbolHead = ' ';
+				} else if ((ctx.inputOperand[0].length() == 1) && SPSUtility.IsValidHead(ctx.inputOperand[0].charAt(0))) {
+					ctx.symbolHead = ctx.inputOperand[0].charAt(0);
 				} else {
-					SPSOutput.ReportError("invalid head (" + SPSData.inputOperand[0] + ")");
+					SPSOutput.ReportError(ctx, "invalid head (" + ctx.inputOperand[0] + ")");
 				}
 				break;
 			
 			case SEND:
-				if (!SPSUtility.IsEmpty(SPSData.inputLabel)) {
-					SPSOutput.ReportWarning("unexpected label (" + SPSData.inputLabel + ")");
+				if (!SPSUtility.IsEmpty(ctx.inputLabel)) {
+					SPSOutput.ReportWarning(ctx, "unexpected label (" + ctx.inputLabel + ")");
 				}
-				SPSOutput.ReportWarning("unsupported control operation (SEND)");
+				SPSOutput.ReportWarning(ctx, "unsupported control operation (SEND)");
 				break;
 			
 			case TCD:
-				if (!SPSUtility.IsEmpty(SPSData.inputLabel)) {
-					SPSOutput.ReportWarning("unexpected label (" + SPSData.inputLabel + ")");
+				if (!SPSUtility.IsEmpty(ctx.inputLabel)) {
+					SPSOutput.ReportWarning(ctx, "unexpected label (" + ctx.inputLabel + ")");
 				}
-				SPSOutput.ReportWarning("unsupported control operation (TCD)");
+				SPSOutput.ReportWarning(ctx, "unsupported control operation (TCD)");
 				break;
 			
 			case TRA:
-				SPSOutput.ReportWarning("unsupported control operation (TRA)");
+				SPSOutput.ReportWarning(ctx, "unsupported control operation (TRA)");
 				break;
 
 			/*  DECLARATIVE  */
 
 			case DAC:
-				len = (int)EvalOperand(SPSData.inputOperand[0], SPSData.lastAddress, false, true, StatementCheck.VAL_POSITIVE);
+				len = (int)EvalOperand(ctx, ctx.inputOperand[0], ctx.lastAddress, false, true, StatementCheck.VAL_POSITIVE);
 				if (len > 50) {
-					SPSOutput.ReportError("length greater than 50");
+					SPSOutput.ReportError(ctx, "length greater than 50");
 					len = 50;
 				}
-				SPSData.length = 2 * len;
-				if (SPSUtility.IsEmpty(SPSData.inputOperand[2])) {
-					if ((SPSData.addressCounter & 1) == 1) SPSData.addressCounter += 1;
-					SPSData.address = SPSData.addressCounter;
-					SPSData.labelAddress = SPSData.addressCounter + 1;
-					SPSData.addressCounter += 2 * len;
-					SPSData.lastAddress = SPSData.addressCounter - ((len > 0) ? 1 : 0);
+				ctx.length = 2 * len;
+				if (SPSUtility.IsEmpty(ctx.inputOperand[2])) {
+					if ((ctx.addressCounter & 1) == 1) ctx.addressCounter += 1;
+					ctx.address = ctx.addressCounter;
+					ctx.labelAddress = ctx.addressCounter + 1;
+					ctx.addressCounter += 2 * len;
+					ctx.lastAddress = ctx.addressCounter - ((len > 0) ? 1 : 0);
 				} else {
-					SPSData.labelAddress = (int)EvalOperand(SPSData.inputOperand[2], SPSData.lastAddress, false, true, StatementCheck.ADDR_ODD);
-					SPSData.address = SPSData.labelAddress - ((len > 0) ? 1 : 0);
+					ctx.labelAddress = (int)EvalOperand(ctx, ctx.inputOperand[2], ctx.lastAddress, false, true, StatementCheck.ADDR_ODD);
+					ctx.address = ctx.labelAddress - ((len > 0) ? 1 : 0);
 				}
-				if ((SPSData.address + SPSData.length) > SPSData.memorySize) {
-					SPSOutput.ReportError("outside memory bounds");
+				if ((ctx.address + ctx.length) > ctx.memorySize) {
+					SPSOutput.ReportError(ctx, "outside memory bounds");
 				}
 
-				if (SPSData.pass == 1) {
-					SPSSymbol.Add(SPSData.inputLabel, SPSData.labelAddress, SPSData.lineNumber);
+				if (ctx.pass == 1) {
+					SPSSymbol.Add(ctx, ctx.inputLabel, ctx.labelAddress, ctx.lineNumber);
 				} else {
-					SPSSymbol.Verify(SPSData.inputLabel, SPSData.lineNumber);
+					SPSSymbol.Verify(ctx, ctx.inputLabel, ctx.lineNumber);
 					if (len > 0) {
-						SPSValue.SetAlphaValue(len, SPSData.inputOperand[1]);
-						SPSData.value[0] |= SPSData.MASK_FLAG;
+						SPSValue.SetAlphaValue(ctx, len, ctx.inputOperand[1]);
+						ctx.value[0] |= SPSData.MASK_FLAG;
 					}	
 				}
 				break;
 			
 			case DAS:
-				len = 2 * (int)EvalOperand(SPSData.inputOperand[0], SPSData.lastAddress, false, true, StatementCheck.VAL_POSITIVE);
-				SPSData.length = len;
-				if (SPSUtility.IsEmpty(SPSData.inputOperand[1])) {
-					if ((SPSData.addressCounter & 1) == 1) SPSData.addressCounter += 1;
-					SPSData.address = SPSData.addressCounter;
-					SPSData.labelAddress = SPSData.addressCounter + 1;
-					SPSData.addressCounter += len;
-					SPSData.lastAddress = SPSData.addressCounter - ((len > 0) ? 1 : 0);
+				len = 2 * (int)EvalOperand(ctx, ctx.inputOperand[0], ctx.lastAddress, false, true, StatementCheck.VAL_POSITIVE);
+				ctx.length = len;
+				if (SPSUtility.IsEmpty(ctx.inputOperand[1])) {
+					if ((ctx.addressCounter & 1) == 1) ctx.addressCounter += 1;
+					ctx.address = ctx.addressCounter;
+					ctx.labelAddress = ctx.addressCounter + 1;
+					ctx.addressCounter += len;
+					ctx.lastAddress = ctx.addressCounter - ((len > 0) ? 1 : 0);
 				} else {
-					SPSData.labelAddress = (int)EvalOperand(SPSData.inputOperand[1], SPSData.lastAddress, false, true, StatementCheck.ADDR_ODD);
-					SPSData.address = SPSData.labelAddress - ((len > 0) ? 1 : 0);
+					ctx.labelAddress = (int)EvalOperand(ctx, ctx.inputOperand[1], ctx.lastAddress, false, true, StatementCheck.ADDR_ODD);
+					ctx.address = ctx.labelAddress - ((len > 0) ? 1 : 0);
 				}
-				if ((SPSData.address + SPSData.length) > SPSData.memorySize) {
-					SPSOutput.ReportError("outside memory bounds");
+				if ((ctx.address + ctx.length) > ctx.memorySize) {
+					SPSOutput.ReportError(ctx, "outside memory bounds");
 				}
 
-				if (SPSData.pass == 1) {
-					SPSSymbol.Add(SPSData.inputLabel, SPSData.labelAddress, SPSData.lineNumber);
+				if (ctx.pass == 1) {
+					SPSSymbol.Add(ctx, ctx.inputLabel, ctx.labelAddress, ctx.lineNumber);
 				} else {
-					SPSSymbol.Verify(SPSData.inputLabel, SPSData.lineNumber);
+					SPSSymbol.Verify(ctx, ctx.inputLabel, ctx.lineNumber);
 				}
 				break;
 			
 			case DC:
-				len = (int)EvalOperand(SPSData.inputOperand[0], SPSData.lastAddress, false, true, StatementCheck.VAL_POSITIVE);
+				len = (int)EvalOperand(ctx, ctx.inputOperand[0], ctx.lastAddress, false, true, StatementCheck.VAL_POSITIVE);
 				if (len > 50) {
-					SPSOutput.ReportError("length greater than 50");
+					SPSOutput.ReportError(ctx, "length greater than 50");
 					len = 50;
 				}
-				SPSData.length = len;
-				if (SPSUtility.IsEmpty(SPSData.inputOperand[2])) {
-					SPSData.address = SPSData.addressCounter;
-					SPSData.addressCounter += len;
-					SPSData.lastAddress = SPSData.addressCounter - ((len > 0) ? 1 : 0);
-					SPSData.labelAddress = SPSData.lastAddress;
+				ctx.length = len;
+				if (SPSUtility.IsEmpty(ctx.inputOperand[2])) {
+					ctx.address = ctx.addressCounter;
+					ctx.addressCounter += len;
+					ctx.lastAddress = ctx.addressCounter - ((len > 0) ? 1 : 0);
+					ctx.labelAddress = ctx.lastAddress;
 				} else {
-					SPSData.labelAddress = (int)EvalOperand(SPSData.inputOperand[2], SPSData.lastAddress, false, true, StatementCheck.ADDRESS);
-					SPSData.address = SPSData.labelAddress - ((len > 0) ? len - 1 : 0);
+					ctx.labelAddress = (int)EvalOperand(ctx, ctx.inputOperand[2], ctx.lastAddress, false, true, StatementCheck.ADDRESS);
+					ctx.address = ctx.labelAddress - ((len > 0) ? len - 1 : 0);
 				}
-				if ((SPSData.address + SPSData.length) > SPSData.memorySize) {
-					SPSOutput.ReportError("outside memory bounds");
+				if ((ctx.address + ctx.length) > ctx.memorySize) {
+					SPSOutput.ReportError(ctx, "outside memory bounds");
 				}
 
-				if (SPSData.pass == 1) {
-					SPSSymbol.Add(SPSData.inputLabel, SPSData.labelAddress, SPSData.lineNumber);
+				if (ctx.pass == 1) {
+					SPSSymbol.Add(ctx, ctx.inputLabel, ctx.labelAddress, ctx.lineNumber);
 				} else {
-					SPSSymbol.Verify(SPSData.inputLabel, SPSData.lineNumber);
-					if (len > 0) SPSValue.SetNumValue(len, false, SPSData.inputOperand[1]);
-					if ((len == 1) && (SPSData.value[0] != SPSData.MEMORY_RM)) SPSData.value[0] |= SPSData.MASK_FLAG;
-					if (len > 1) SPSData.value[0] |= SPSData.MASK_FLAG;
+					SPSSymbol.Verify(ctx, ctx.inputLabel, ctx.lineNumber);
+					if (len > 0) SPSValue.SetNumValue(ctx, len, false, ctx.inputOperand[1]);
+					if ((len == 1) && (ctx.value[0] != SPSData.MEMORY_RM)) ctx.value[0] |= SPSData.MASK_FLAG;
+					if (len > 1) ctx.value[0] |= SPSData.MASK_FLAG;
 				}
 				break;
 			
 			case DDA:
-				SPSData.length = 14;
-				if (SPSUtility.IsEmpty(SPSData.inputOperand[0])) {
-					if ((SPSData.addressCounter & 1) == 1) SPSData.addressCounter += 1;
-					SPSData.address = SPSData.addressCounter;
-					SPSData.labelAddress = SPSData.address;
-					SPSData.addressCounter += 14;
-					SPSData.lastAddress = SPSData.addressCounter - 1;
+				ctx.length = 14;
+				if (SPSUtility.IsEmpty(ctx.inputOperand[0])) {
+					if ((ctx.addressCounter & 1) == 1) ctx.addressCounter += 1;
+					ctx.address = ctx.addressCounter;
+					ctx.labelAddress = ctx.address;
+					ctx.addressCounter += 14;
+					ctx.lastAddress = ctx.addressCounter - 1;
 				} else {
-					SPSData.labelAddress = (int)EvalOperand(SPSData.inputOperand[0], SPSData.lastAddress, false, true, StatementCheck.ADDR_EVEN);
-					SPSData.address = SPSData.labelAddress;
+					ctx.labelAddress = (int)EvalOperand(ctx, ctx.inputOperand[0], ctx.lastAddress, false, true, StatementCheck.ADDR_EVEN);
+					ctx.address = ctx.labelAddress;
 				}
-				if ((SPSData.address + SPSData.length) > SPSData.memorySize) {
-					SPSOutput.ReportError("outside memory bounds");
+				if ((ctx.address + ctx.length) > ctx.memorySize) {
+					SPSOutput.ReportError(ctx, "outside memory bounds");
 				}
 
-				if (SPSData.pass == 1) {
-					SPSSymbol.Add(SPSData.inputLabel, SPSData.labelAddress, SPSData.lineNumber);
+				if (ctx.pass == 1) {
+					SPSSymbol.Add(ctx, ctx.inputLabel, ctx.labelAddress, ctx.lineNumber);
 				} else {
-					SPSSymbol.Verify(SPSData.inputLabel, SPSData.lineNumber);
-					SPSData.value = new byte[14];
-					SPSValue.SetField(SPSData.FIELD_DRIVE, 1, false, EvalOperand(SPSData.inputOperand[1], 0, false, false,
+					SPSSymbol.Verify(ctx, ctx.inputLabel, ctx.lineNumber);
+					ctx.value = new byte[14];
+					SPSValue.SetField(ctx, SPSData.FIELD_DRIVE, 1, false, EvalOperand(ctx, ctx.inputOperand[1], 0, false, false,
 																				 StatementCheck.VAL_POSITIVE));
-					int sector = (int)EvalOperand(SPSData.inputOperand[2], 0, false, false, StatementCheck.VAL_POSITIVE);
+					int sector = (int)EvalOperand(ctx, ctx.inputOperand[2], 0, false, false, StatementCheck.VAL_POSITIVE);
 					if (sector > 79999) {
-						SPSOutput.ReportError("sector address greater than 79999");
+						SPSOutput.ReportError(ctx, "sector address greater than 79999");
 						sector = 79999;
 					}
-					SPSValue.SetField(SPSData.FIELD_SECTOR, 5, true, sector);
-					int count = (int)EvalOperand(SPSData.inputOperand[3], 0, false, false, StatementCheck.VAL_POSITIVE);
+					SPSValue.SetField(ctx, SPSData.FIELD_SECTOR, 5, true, sector);
+					int count = (int)EvalOperand(ctx, ctx.inputOperand[3], 0, false, false, StatementCheck.VAL_POSITIVE);
 					if (count == 0) {
-						SPSOutput.ReportError("sector count zero");
+						SPSOutput.ReportError(ctx, "sector count zero");
 						count = 1;
 					} else if (count > 200) {
-						SPSOutput.ReportError("sector count greater then 200");
+						SPSOutput.ReportError(ctx, "sector count greater then 200");
 						count = 200;
 					}
-					SPSValue.SetField(SPSData.FIELD_COUNT, 3, true, count);
-					SPSValue.SetField(SPSData.FIELD_ADDRESS, 5, true, EvalOperand(SPSData.inputOperand[4], SPSData.lastAddress, false, true,
+					SPSValue.SetField(ctx, SPSData.FIELD_COUNT, 3, true, count);
+					SPSValue.SetField(ctx, SPSData.FIELD_ADDRESS, 5, true, EvalOperand(ctx, ctx.inputOperand[4], ctx.lastAddress, false, true,
 																				  StatementCheck.ADDR_EVEN));
 				}
 				break;
 			
 			case DGM:
-				SPSData.length = 1;
-				if (SPSUtility.IsEmpty(SPSData.inputOperand[0])) {
-					SPSData.address = SPSData.addressCounter;
-					SPSData.addressCounter += 1;
-					SPSData.lastAddress = SPSData.addressCounter - 1;
-					SPSData.labelAddress = SPSData.lastAddress;
+				ctx.length = 1;
+				if (SPSUtility.IsEmpty(ctx.inputOperand[0])) {
+					ctx.address = ctx.addressCounter;
+					ctx.addressCounter += 1;
+					ctx.lastAddress = ctx.addressCounter - 1;
+					ctx.labelAddress = ctx.lastAddress;
 				} else {
-					SPSData.labelAddress = (int)EvalOperand(SPSData.inputOperand[0], SPSData.lastAddress, false, true, StatementCheck.ADDRESS);
-					SPSData.address = SPSData.labelAddress;
+					ctx.labelAddress = (int)EvalOperand(ctx, ctx.inputOperand[0], ctx.lastAddress, false, true, StatementCheck.ADDRESS);
+					ctx.address = ctx.labelAddress;
 				}
-				if ((SPSData.address + SPSData.length) > SPSData.memorySize) {
-					SPSOutput.ReportError("outside memory bounds");
+				if ((ctx.address + ctx.length) > ctx.memorySize) {
+					SPSOutput.ReportError(ctx, "outside memory bounds");
 				}
 
-				if (SPSData.pass == 1) {
-					SPSSymbol.Add(SPSData.inputLabel, SPSData.labelAddress, SPSData.lineNumber);
+				if (ctx.pass == 1) {
+					SPSSymbol.Add(ctx, ctx.inputLabel, ctx.labelAddress, ctx.lineNumber);
 				} else {
-					SPSSymbol.Verify(SPSData.inputLabel, SPSData.lineNumber);
-					SPSData.value = new byte[1];
-					SPSData.value[0] = SPSData.MEMORY_GM;
+					SPSSymbol.Verify(ctx, ctx.inputLabel, ctx.lineNumber);
+					ctx.value = new byte[1];
+					ctx.value[0] = SPSData.MEMORY_GM;
 				}
 				break;
 
 			case DNB:
-				len = (int)EvalOperand(SPSData.inputOperand[0], SPSData.lastAddress, false, true, StatementCheck.VAL_POSITIVE);
+				len = (int)EvalOperand(ctx, ctx.inputOperand[0], ctx.lastAddress, false, true, StatementCheck.VAL_POSITIVE);
 				if (len > 50) {
-					SPSOutput.ReportError("length greater than 50");
+					SPSOutput.ReportError(ctx, "length greater than 50");
 					len = 50;
 				}
-				SPSData.length = len;
-				if (SPSUtility.IsEmpty(SPSData.inputOperand[1])) {
-					SPSData.address = SPSData.addressCounter;
-					SPSData.addressCounter += len;
-					SPSData.lastAddress = SPSData.addressCounter - ((len > 0) ? 1 : 0);
-					SPSData.labelAddress = SPSData.lastAddress;
+				ctx.length = len;
+				if (SPSUtility.IsEmpty(ctx.inputOperand[1])) {
+					ctx.address = ctx.addressCounter;
+					ctx.addressCounter += len;
+					ctx.lastAddress = ctx.addressCounter - ((len > 0) ? 1 : 0);
+					ctx.labelAddress = ctx.lastAddress;
 				} else {
-					SPSData.labelAddress = (int)EvalOperand(SPSData.inputOperand[1], SPSData.lastAddress, false, true, StatementCheck.ADDRESS);
-					SPSData.address = SPSData.labelAddress - ((len > 0) ? len - 1 : 0);
+					ctx.labelAddress = (int)EvalOperand(ctx, ctx.inputOperand[1], ctx.lastAddress, false, true, StatementCheck.ADDRESS);
+					ctx.address = ctx.labelAddress - ((len > 0) ? len - 1 : 0);
 				}
-				if ((SPSData.address + SPSData.length) > SPSData.memorySize) {
-					SPSOutput.ReportError("outside memory bounds");
+				if ((ctx.address + ctx.length) > ctx.memorySize) {
+					SPSOutput.ReportError(ctx, "outside memory bounds");
 				}
 
-				if (SPSData.pass == 1) {
-					SPSSymbol.Add(SPSData.inputLabel, SPSData.labelAddress, SPSData.lineNumber);
+				if (ctx.pass == 1) {
+					SPSSymbol.Add(ctx, ctx.inputLabel, ctx.labelAddress, ctx.lineNumber);
 				} else {
-					SPSSymbol.Verify(SPSData.inputLabel, SPSData.lineNumber);
+					SPSSymbol.Verify(ctx, ctx.inputLabel, ctx.lineNumber);
 					if (len > 0) {
-						SPSData.value = new byte[len];
+						ctx.value = new byte[len];
 						for (int i = 0; i < len; ++i) {
-							SPSData.value[i] = SPSData.MEMORY_NB;
+							ctx.value[i] = SPSData.MEMORY_NB;
 						}
 					}
 				}
 				break;
 			
 			case DOT:
-				power = (int)EvalOperand(SPSData.inputOperand[0], SPSData.lastAddress, false, true, StatementCheck.VAL_POSITIVE);
+				power = (int)EvalOperand(ctx, ctx.inputOperand[0], ctx.lastAddress, false, true, StatementCheck.VAL_POSITIVE);
 				if (power < 0) {
-					SPSOutput.ReportError("power less than 0");
+					SPSOutput.ReportError(ctx, "power less than 0");
 					power = 0;
 				} else if (power > 13) {
-					SPSOutput.ReportError("power greater than 13");
+					SPSOutput.ReportError(ctx, "power greater than 13");
 					power = 13;
 				}
-				SPSData.length = SPSData.dotLengths[power];
-				if (SPSUtility.IsEmpty(SPSData.inputOperand[1])) {
-					SPSData.address = SPSData.addressCounter;
-					SPSData.addressCounter += SPSData.length;
-					SPSData.lastAddress = SPSData.addressCounter - 1;
-					SPSData.labelAddress = SPSData.lastAddress;
+				ctx.length = SPSData.dotLengths[power];
+				if (SPSUtility.IsEmpty(ctx.inputOperand[1])) {
+					ctx.address = ctx.addressCounter;
+					ctx.addressCounter += ctx.length;
+					ctx.lastAddress = ctx.addressCounter - 1;
+					ctx.labelAddress = ctx.lastAddress;
 				} else {
-					SPSData.labelAddress = (int)EvalOperand(SPSData.inputOperand[1], SPSData.lastAddress, false, true, StatementCheck.ADDRESS);
-					SPSData.address = SPSData.labelAddress - SPSData.length + 1;
+					ctx.labelAddress = (int)EvalOperand(ctx, ctx.inputOperand[1], ctx.lastAddress, false, true, StatementCheck.ADDRESS);
+					ctx.address = ctx.labelAddress - ctx.length + 1;
 				}
-				if ((SPSData.address + SPSData.length) > SPSData.memorySize) {
-					SPSOutput.ReportError("outside memory bounds");
+				if ((ctx.address + ctx.length) > ctx.memorySize) {
+					SPSOutput.ReportError(ctx, "outside memory bounds");
 				}
 
-				if (SPSData.pass == 1) {
-					SPSSymbol.Add(SPSData.inputLabel, SPSData.labelAddress, SPSData.lineNumber);
+				if (ctx.pass == 1) {
+					SPSSymbol.Add(ctx, ctx.inputLabel, ctx.labelAddress, ctx.lineNumber);
 				} else {
-					SPSSymbol.Verify(SPSData.inputLabel, SPSData.lineNumber);
-					SPSData.value = new byte[SPSData.length];
-					pos = SPSData.dotTable.length - SPSData.length;
-					for (int i = 0; i < SPSData.length; ++i) {
-						SPSData.value[i] = SPSData.dotTable[pos++];
+					SPSSymbol.Verify(ctx, ctx.inputLabel, ctx.lineNumber);
+					ctx.value = new byte[ctx.length];
+					pos = SPSData.dotTable.length - ctx.length;
+					for (int i = 0; i < ctx.length; ++i) {
+						ctx.value[i] = SPSData.dotTable[pos++];
 					}
 				}
 				break;
 
 			case DS:
-				len = (int)EvalOperand(SPSData.inputOperand[0], SPSData.lastAddress, false, true, StatementCheck.VAL_POSITIVE);
-				SPSData.length = len;
-				if (SPSUtility.IsEmpty(SPSData.inputOperand[1])) {
-					SPSData.address = SPSData.addressCounter;
-					SPSData.addressCounter += len;
-					SPSData.lastAddress = SPSData.addressCounter - ((len > 0) ? 1 : 0);
-					SPSData.labelAddress = SPSData.lastAddress;
+				len = (int)EvalOperand(ctx, ctx.inputOperand[0], ctx.lastAddress, false, true, StatementCheck.VAL_POSITIVE);
+				ctx.length = len;
+				if (SPSUtility.IsEmpty(ctx.inputOperand[1])) {
+					ctx.address = ctx.addressCounter;
+					ctx.addressCounter += len;
+					ctx.lastAddress = ctx.addressCounter - ((len > 0) ? 1 : 0);
+					ctx.labelAddress = ctx.lastAddress;
 				} else {
-					SPSData.labelAddress = (int)EvalOperand(SPSData.inputOperand[1], SPSData.lastAddress, false, true, StatementCheck.ADDRESS);
-					SPSData.address = SPSData.labelAddress - ((len > 0) ? len - 1 : 0);
+					ctx.labelAddress = (int)EvalOperand(ctx, ctx.inputOperand[1], ctx.lastAddress, false, true, StatementCheck.ADDRESS);
+					ctx.address = ctx.labelAddress - ((len > 0) ? len - 1 : 0);
 				}
-				if ((SPSData.address + SPSData.length) > SPSData.memorySize) {
-					SPSOutput.ReportError("outside memory bounds");
+				if ((ctx.address + ctx.length) > ctx.memorySize) {
+					SPSOutput.ReportError(ctx, "outside memory bounds");
 				}
 
-				if (SPSData.pass == 1) {
-					SPSSymbol.Add(SPSData.inputLabel, SPSData.labelAddress, SPSData.lineNumber);
+				if (ctx.pass == 1) {
+					SPSSymbol.Add(ctx, ctx.inputLabel, ctx.labelAddress, ctx.lineNumber);
 				} else {
-					SPSSymbol.Verify(SPSData.inputLabel, SPSData.lineNumber);
+					SPSSymbol.Verify(ctx, ctx.inputLabel, ctx.lineNumber);
 				}
 				break;
 			
 			case DSA:
-				last = SPSData.lastAddress;
-				len = 5 * SPSData.inputOperand.length;
-				SPSData.length = len;
-				SPSData.address = SPSData.addressCounter;
-				SPSData.labelAddress = SPSData.addressCounter + ((len > 0) ? 4 : 0);
-				SPSData.addressCounter += len;
-				SPSData.lastAddress = SPSData.addressCounter - ((len > 0) ? 1 : 0);
-				if ((SPSData.address + SPSData.length) > SPSData.memorySize) {
-					SPSOutput.ReportError("outside memory bounds");
-				}
-
-				if (SPSData.pass == 1) {
-					SPSSymbol.Add(SPSData.inputLabel, SPSData.labelAddress, SPSData.lineNumber);
+				last = ctx.lastAddress;
+				len = 5 * ctx.inputOperand.length;
+				ctx.length = len;
+				ctx.address = ctx.addressCounter;
+				ctx.labelAddress = ctx.addressCounter + ((len > 0) ? 4 : 0);
+				ctx.addressCounter += len;
+				ctx.lastAddress = ctx.addressCounter - ((len > 0) ? 1 : 0);
+				if ((ctx.address + ctx.length) > ctx.memorySize) {
+					SPSOutput.ReportError(ctx, "outside memory bounds");
+				}
+
+				if (ctx.pass == 1) {
+					SPSSymbol.Add(ctx, ctx.inputLabel, ctx.labelAddress, ctx.lineNumber);
 				} else {
-					SPSSymbol.Verify(SPSData.inputLabel, SPSData.lineNumber);
-					SPSData.value = new byte[len];
+					SPSSymbol.Verify(ctx, ctx.inputLabel, ctx.lineNumber);
+					ctx.value = new byte[len];
 					pos = 4;
-					for (int i = 0; i < SPSData.inputOperand.length; ++i) {
-						SPSValue.SetField(pos, 5, true, EvalOperand(SPSData.inputOperand[i], last, SPSData.indexOk, false, StatementCheck.REFERENCE));
-						SPSValue.SetIndexFlags(pos);
+					for (int i = 0; i < ctx.inputOperand.length; ++i) {
+						SPSValue.SetField(ctx, pos, 5, true, EvalOperand(ctx, ctx.inputOperand[i], last, ctx.indexOk, false, StatementCheck.REFERENCE));
+						SPSValue.SetIndexFlags(ctx, pos);
 						pos += 5;
 					}
 				}
 				break;
 			
 			case DSAC:
-				len = (int)EvalOperand(SPSData.inputOperand[0], SPSData.lastAddress, false, true, StatementCheck.VAL_POSITIVE);
+				len = (int)EvalOperand(ctx, ctx.inputOperand[0], ctx.lastAddress, false, true, StatementCheck.VAL_POSITIVE);
 				if (len > 50) {
-					SPSOutput.ReportError("length greater than 50");
+					SPSOutput.ReportError(ctx, "length greater than 50");
 					len = 50;
 				}
-				SPSData.length = 2 * len;
-				if (SPSUtility.IsEmpty(SPSData.inputOperand[2])) {
-					if ((SPSData.addressCounter & 1) == 1) SPSData.addressCounter += 1;
-					SPSData.address = SPSData.addressCounter;
-					SPSData.addressCounter += 2 * len;
-					SPSData.lastAddress = SPSData.addressCounter - ((len > 0) ? 1 : 0);
-					SPSData.labelAddress = SPSData.lastAddress;
+				ctx.length = 2 * len;
+				if (SPSUtility.IsEmpty(ctx.inputOperand[2])) {
+					if ((ctx.addressCounter & 1) == 1) ctx.addressCounter += 1;
+					ctx.address = ctx.addressCounter;
+					ctx.addressCounter += 2 * len;
+					ctx.lastAddress = ctx.addressCounter - ((len > 0) ? 1 : 0);
+					ctx.labelAddress = ctx.lastAddress;
 				} else {
-					SPSData.labelAddress = (int)EvalOperand(SPSData.inputOperand[2], SPSData.lastAddress, false, true, StatementCheck.ADDR_ODD);
-					SPSData.address = SPSData.labelAddress - ((len > 0) ? 2 * len - 1 : 0);
+					ctx.labelAddress = (int)EvalOperand(ctx, ctx.inputOperand[2], ctx.lastAddress, false, true, StatementCheck.ADDR_ODD);
+					ctx.address = ctx.labelAddress - ((len > 0) ? 2 * len - 1 : 0);
 				}
-				if ((SPSData.address + SPSData.length) > SPSData.memorySize) {
-					SPSOutput.ReportError("outside memory bounds");
+				if ((ctx.address + ctx.length) > ctx.memorySize) {
+					SPSOutput.ReportError(ctx, "outside memory bounds");
 				}
 
-				if (SPSData.pass == 1) {
-					SPSSymbol.Add(SPSData.inputLabel, SPSData.labelAddress, SPSData.lineNumber);
+				if (ctx.pass == 1) {
+					SPSSymbol.Add(ctx, ctx.inputLabel, ctx.labelAddress, ctx.lineNumber);
 				} else {
-					SPSSymbol.Verify(SPSData.inputLabel, SPSData.lineNumber);
+					SPSSymbol.Verify(ctx, ctx.inputLabel, ctx.lineNumber);
 					if (len > 0) {
-						SPSValue.SetAlphaValue(len, SPSData.inputOperand[1]);
-						SPSData.value[0] |= SPSData.MASK_FLAG;
+						SPSValue.SetAlphaValue(ctx, len, ctx.inputOperand[1]);
+						ctx.value[0] |= SPSData.MASK_FLAG;
 					}
 				}
 				break;
 
 			case DSB:
-				size = (int)EvalOperand(SPSData.inputOperand[0], SPSData.lastAddress, false, true, StatementCheck.VAL_POSITIVE);
-				len =  size * (int)EvalOperand(SPSData.inputOperand[1], SPSData.lastAddress, false, true, StatementCheck.VAL_POSITIVE);
-				SPSData.length = len;
-				SPSData.address = SPSData.addressCounter;
-				if (SPSUtility.IsEmpty(SPSData.inputOperand[2])) {
-					SPSData.labelAddress = SPSData.addressCounter + ((len > 0) ? size - 1 : 0);
-					SPSData.addressCounter += len;
-					SPSData.lastAddress = SPSData.addressCounter - ((len > 0) ? 1 : 0);
+				size = (int)EvalOperand(ctx, ctx.inputOperand[0], ctx.lastAddress, false, true, StatementCheck.VAL_POSITIVE);
+				len =  size * (int)EvalOperand(ctx, ctx.inputOperand[1], ctx.lastAddress, false, true, StatementCheck.VAL_POSITIVE);
+				ctx.length = len;
+				ctx.address = ctx.addressCounter;
+				if (SPSUtility.IsEmpty(ctx.inputOperand[2])) {
+					ctx.labelAddress = ctx.addressCounter + ((len > 0) ? size - 1 : 0);
+					ctx.addressCounter += len;
+					ctx.lastAddress = ctx.addressCounter - ((len > 0) ? 1 : 0);
 				} else {
-					SPSData.labelAddress = (int)EvalOperand(SPSData.inputOperand[2], SPSData.lastAddress, false, true, StatementCheck.ADDRESS);
+					ctx.labelAddress = (int)EvalOperand(ctx, ctx.inputOperand[2], ctx.lastAddress, false, true, StatementCheck.ADDRESS);
 				}
-				if ((SPSData.address + SPSData.length) > SPSData.memorySize) {
-					SPSOutput.ReportError("outside memory bounds");
+				if ((ctx.address + ctx.length) > ctx.memorySize) {
+					SPSOutput.ReportError(ctx, "outside memory bounds");
 				}
 
-				if (SPSData.pass == 1) {
-					SPSSymbol.Add(SPSData.inputLabel, SPSData.labelAddress, SPSData.lineNumber);
+				if (ctx.pass == 1) {
+					SPSSymbol.Add(ctx, ctx.inputLabel, ctx.labelAddress, ctx.lineNumber);
 				} else {
-					SPSSymbol.Verify(SPSData.inputLabel, SPSData.lineNumber);
+					SPSSymbol.Verify(ctx, ctx.inputLabel, ctx.lineNumber);
 				}
 				break;
 			
 			case DSC:
-				len = (int)EvalOperand(SPSData.inputOperand[0], SPSData.lastAddress, false, true, StatementCheck.VAL_POSITIVE);
+				len = (int)EvalOperand(ctx, ctx.inputOperand[0], ctx.lastAddress, false, true, StatementCheck.VAL_POSITIVE);
 				if (len > 50) {
-					SPSOutput.ReportError("length greater than 50");
+					SPSOutput.ReportError(ctx, "length greater than 50");
 					len = 50;
 				}
-				SPSData.length = len;
-				if (SPSUtility.IsEmpty(SPSData.inputOperand[2])) {
-					SPSData.labelAddress = SPSData.addressCounter;
-					SPSData.address = SPSData.labelAddress;
-					SPSData.addressCounter += len;
-					SPSData.lastAddress = SPSData.addressCounter - ((len > 0) ? 1 : 0);
+				ctx.length = len;
+				if (SPSUtility.IsEmpty(ctx.inputOperand[2])) {
+					ctx.labelAddress = ctx.addressCounter;
+					ctx.address = ctx.labelAddress;
+					ctx.addressCounter += len;
+					ctx.lastAddress = ctx.addressCounter - ((len > 0) ? 1 : 0);
 				} else {
-					SPSData.labelAddress = (int)EvalOperand(SPSData.inputOperand[2], SPSData.lastAddress, false, true, StatementCheck.ADDRESS);
-					SPSData.address = SPSData.labelAddress;
+					ctx.labelAddress = (int)EvalOperand(ctx, ctx.inputOperand[2], ctx.lastAddress, false, true, StatementCheck.ADDRESS);
+					ctx.address = ctx.labelAddress;
 				}
-				if ((SPSData.address + SPSData.length) > SPSData.memorySize) {
-					SPSOutput.ReportError("outside memory bounds");
+				if ((ctx.address + ctx.length) > ctx.memorySize) {
+					SPSOutput.ReportError(ctx, "outside memory bounds");
 				}
 
-				if (SPSData.pass == 1) {
-					SPSSymbol.Add(SPSData.inputLabel, SPSData.labelAddress, SPSData.lineNumber);
+				if (ctx.pass == 1) {
+					SPSSymbol.Add(ctx, ctx.inputLabel, ctx.labelAddress, ctx.lineNumber);
 				} else {
-					SPSSymbol.Verify(SPSData.inputLabel, SPSData.lineNumber);
-					if (len > 0) SPSValue.SetNumValue(len, true, SPSData.inputOperand[1]);
+					SPSSymbol.Verify(ctx, ctx.inputLabel, ctx.lineNumber);
+					if (len > 0) SPSValue.SetNumValue(ctx, len, true, ctx.inputOperand[1]);
 				}
 				break;
 			
 			case DSS:
-				len = (int)EvalOperand(SPSData.inputOperand[0], SPSData.lastAddress, false, true, StatementCheck.VAL_POSITIVE);
-				SPSData.length = len;
-				if (SPSUtility.IsEmpty(SPSData.inputOperand[1])) {
-					SPSData.labelAddress = SPSData.addressCounter;
-					SPSData.address = SPSData.labelAddress;
-					SPSData.addressCounter += len;
-					SPSData.lastAddress = SPSData.addressCounter - ((len > 0) ? 1 : 0);
+				len = (int)EvalOperand(ctx, ctx.inputOperand[0], ctx.lastAddress, false, true, StatementCheck.VAL_POSITIVE);
+				ctx.length = len;
+				if (SPSUtility.IsEmpty(ctx.inputOperand[1])) {
+					ctx.labelAddress = ctx.addressCounter;
+					ctx.address = ctx.labelAddress;
+					ctx.addressCounter += len;
+					ctx.lastAddress = ctx.addressCounter - ((len > 0) ? 1 : 0);
 				} else {
-					SPSData.labelAddress = (int)EvalOperand(SPSData.inputOperand[1], SPSData.lastAddress, false, true, StatementCheck.ADDRESS);
-					SPSData.address = SPSData.labelAddress;
+					ctx.labelAddress = (int)EvalOperand(ctx, ctx.inputOperand[1], ctx.lastAddress, false, true, StatementCheck.ADDRESS);
+					ctx.address = ctx.labelAddress;
 				}
-				if ((SPSData.address + SPSData.length) > SPSData.memorySize) {
-					SPSOutput.ReportError("outside memory bounds");
+				if ((ctx.address + ctx.length) > ctx.memorySize) {
+					SPSOutput.ReportError(ctx, "outside memory bounds");
 				}
 
-				if (SPSData.pass == 1) {
-					SPSSymbol.Add(SPSData.inputLabel, SPSData.labelAddress, SPSData.lineNumber);
+				if (ctx.pass == 1) {
+					SPSSymbol.Add(ctx, ctx.inputLabel, ctx.labelAddress, ctx.lineNumber);
 				} else {
-					SPSSymbol.Verify(SPSData.inputLabel, SPSData.lineNumber);
+					SPSSymbol.Verify(ctx, ctx.inputLabel, ctx.lineNumber);
 				}
 				break;
 			
 			case DVLC:
 				len = 0;
 				for (int i = 1, j = 0; i < 40; i += 2) {
-					temp = (int)EvalOperand(SPSData.inputOperand[i], SPSData.lastAddress, false, true, StatementCheck.VAL_POSITIVE);
+					temp = (int)EvalOperand(ctx, ctx.inputOperand[i], ctx.lastAddress, false, true, StatementCheck.VAL_POSITIVE);
 					lens[j] = temp;
 					len += temp;
 					++j;
 				}
 				if (len > 50) {
-					SPSOutput.ReportError("total length greater than 50");
+					SPSOutput.ReportError(ctx, "total length greater than 50");
 					len = 50;
 				}
-				SPSData.length = len;
-				if (SPSUtility.IsEmpty(SPSData.inputOperand[0])) {
-					SPSData.address = SPSData.addressCounter;
-					SPSData.addressCounter += len;
-					SPSData.lastAddress = SPSData.addressCounter - ((len > 0) ? 1 : 0);
-					SPSData.labelAddress = SPSData.address + lens[0] - ((lens[0] > 0) ? 1 : 0);
+				ctx.length = len;
+				if (SPSUtility.IsEmpty(ctx.inputOperand[0])) {
+					ctx.address = ctx.addressCounter;
+					ctx.addressCounter += len;
+					ctx.lastAddress = ctx.addressCounter - ((len > 0) ? 1 : 0);
+					ctx.labelAddress = ctx.address + lens[0] - ((lens[0] > 0) ? 1 : 0);
 				} else {
-					SPSData.labelAddress = (int)EvalOperand(SPSData.inputOperand[0], SPSData.lastAddress, false, true, StatementCheck.ADDRESS);
-					SPSData.address = SPSData.labelAddress - ((lens[0] > 0) ? lens[0] - 1 : 0);
+					ctx.labelAddress = (int)EvalOperand(ctx, ctx.inputOperand[0], ctx.lastAddress, false, true, StatementCheck.ADDRESS);
+					ctx.address = ctx.labelAddress - ((lens[0] > 0) ? lens[0] - 1 : 0);
 				}
-				if ((SPSData.address + SPSData.length) > SPSData.memorySize) {
-					SPSOutput.ReportError("outside memory bounds");
+				if ((ctx.address + ctx.length) > ctx.memorySize) {
+					SPSOutput.ReportError(ctx, "outside memory bounds");
 				}
 
-				if (SPSData.pass == 1) {
-					SPSSymbol.Add(SPSData.inputLabel, SPSData.labelAddress, SPSData.lineNumber);
+				if (ctx.pass == 1) {
+					SPSSymbol.Add(ctx, ctx.inputLabel, ctx.labelAddress, ctx.lineNumber);
 				} else {
-					SPSSymbol.Verify(SPSData.inputLabel, SPSData.lineNumber);
-					SPSData.value = new byte[len];
+					SPSSymbol.Verify(ctx, ctx.inputLabel, ctx.lineNumber);
+					ctx.value = new byte[len];
 					if (len > 0) {
 						pos = -1;
 						for (int i = 2, j = 0; i < 40; i += 2) {
 							pos += lens[j];
-							SPSValue.SetField(pos, lens[j], true, EvalOperand(SPSData.inputOperand[i], 0, false, false, StatementCheck.VAL_DOUBLE));
+							SPSValue.SetField(ctx, pos, lens[j], true, EvalOperand(ctx, ctx.inputOperand[i], 0, false, false, StatementCheck.VAL_DOUBLE));
 							++j;
 						}
 					}
@@ -889,383 +891,293 @@ public class SPSStatement {
 			/*  IMPERATIVE  */
 
 			case INSTRUCTION:
-				if ((SPSData.addressCounter & 1) == 1) SPSData.addressCounter += 1;
-				SPSData.labelAddress = SPSData.addressCounter;
-				SPSData.address = SPSData.addressCounter;
-				if ((SPSData.inputStatement.OpCode == 42) && (SPSData.inputOperation.equals("BB2"))) {
-					SPSData.length = 2;
-				} else if ((SPSData.inputStatement.OpCode == 49) && (SPSData.inputOperation.equals("B7"))) {
-					SPSData.length = 7;
+				if ((ctx.addressCounter & 1) == 1) ctx.addressCounter += 1;
+				ctx.labelAddress = ctx.addressCounter;
+				ctx.address = ctx.addressCounter;
+				if ((ctx.inputStatement.OpCode == 42) && (ctx.inputOperation.equals("BB2"))) {
+					ctx.length = 2;
+				} else if ((ctx.inputStatement.OpCode == 49) && (ctx.inputOperation.equals("B7"))) {
+					ctx.length = 7;
 				} else {
-					SPSData.length = 12;
+					ctx.length = 12;
 				}
-				SPSData.addressCounter += SPSData.length;
-				SPSData.lastAddress = SPSData.addressCounter - 1;
-				if ((SPSData.address + SPSData.length) > SPSData.memorySize) {
-					SPSOutput.ReportError("outside memory bounds");
+				ctx.addressCounter += ctx.length;
+				ctx.lastAddress = ctx.addressCounter - 1;
+				if ((ctx.address + ctx.length) > ctx.memorySize) {
+					SPSOutput.ReportError(ctx, "outside memory bounds");
 				}
 
-				if (SPSData.pass == 1) {
-					SPSSymbol.Add(SPSData.inputLabel, SPSData.labelAddress, SPSData.lineNumber);
+				if (ctx.pass == 1) {
+					SPSSymbol.Add(ctx, ctx.inputLabel, ctx.labelAddress, ctx.lineNumber);
 				} else {
-					SPSSymbol.Verify(SPSData.inputLabel, SPSData.lineNumber);
-					SPSData.value = new byte[12];
-					SPSValue.SetField(SPSData.FIELD_OP, 2, false, SPSData.inputStatement.OpCode);
-					SPSValue.SetField(SPSData.FIELD_P, 5, false, EvalPOperand());
-					SPSValue.SetIndexFlags(SPSData.FIELD_P);
-					if ((SPSData.inputStatement.QField == Q_IMMEDIATE) && SPSUtility.IsEmpty(SPSData.inputOperand[2])) {
-						SPSValue.SetField(SPSData.FIELD_Q, 5, true, EvalQOperand());
-					} else if (SPSData.inputStatement.QField == Q_IMM_INDEX) {
-						SPSValue.SetField(SPSData.FIELD_Q, 5, true, EvalQOperand());
-						SPSValue.SetIndexFlags(SPSData.FIELD_Q);
+					SPSSymbol.Verify(ctx, ctx.inputLabel, ctx.lineNumber);
+					ctx.value = new byte[12];
+					SPSValue.SetField(ctx, SPSData.FIELD_OP, 2, false, ctx.inputStatement.OpCode);
+					SPSValue.SetField(ctx, SPSData.FIELD_P, 5, false, EvalPOperand(ctx));
+					SPSValue.SetIndexFlags(ctx, SPSData.FIELD_P);
+					if ((ctx.inputStatement.QField == Q_IMMEDIATE) && SPSUtility.IsEmpty(ctx.inputOperand[2])) {
+						SPSValue.SetField(ctx, SPSData.FIELD_Q, 5, true, EvalQOperand(ctx));
+					} else if (ctx.inputStatement.QField == Q_IMM_INDEX) {
+						SPSValue.SetField(ctx, SPSData.FIELD_Q, 5, true, EvalQOperand(ctx));
+						SPSValue.SetIndexFlags(ctx, SPSData.FIELD_Q);
 					} else {
-						SPSValue.SetField(SPSData.FIELD_Q, 5, false, EvalQOperand());
-						SPSValue.SetIndexFlags(SPSData.FIELD_Q);
+						SPSValue.SetField(ctx, SPSData.FIELD_Q, 5, false, EvalQOperand(ctx));
+						SPSValue.SetIndexFlags(ctx, SPSData.FIELD_Q);
 					}
-					if (SPSData.inputStatement.QField != Q_REF_BIT) {
-						SPSValue.SetFlags(SPSData.inputOperand[2]);
+					if (ctx.inputStatement.QField != Q_REF_BIT) {
+						SPSValue.SetFlags(ctx, ctx.inputOperand[2]);
 					} else {
-						SPSValue.SetFlags(SPSData.inputOperand[3]);
+						SPSValue.SetFlags(ctx, ctx.inputOperand[3]);
 					}
 				}
 				break;
 		}
 	}
 
-	public static long EvalOperand(String operand, int asterisk, boolean indexOk, boolean symbolCheck, StatementCheck valueCheck) {
-		int errs = SPSData.errorCount;
-		int pos = 0;
-		int last = -1;
-		boolean idx = false;
-		int size = operand.length();
-		char chr = 0;
-		String term = "";
-		long[] expr = new long[SPSData.SIZE_EXPR_STACK];
-		
-		SPSData.operandIndex = 0;
-		
-		if (SPSUtility.IsEmpty(operand)) return 0L;
-		
-		if (operand.charAt(0) == '-') {
-			expr[++last] = 0L;
-			expr[++last] = '-';
-			++pos;
-			if (pos == size) return 0L;
-		}
-		
-		while (true) {
-			term = Character.toString(operand.charAt(pos++));
-			while (pos < size) {
-				chr = operand.charAt(pos);
-				if ((chr == '+') || (chr == '-') || (chr == '*') || ((chr == '/') && !SPSData.symbolDivide)) break;
-				if (chr == '(') {
-					idx = true;
-					break;
-				}
-				term += chr;
-				++pos;
-			}
-			if (term.equals("*")) {
-				expr[++last] = asterisk;
-			} else if (SPSUtility.IsValidNumber(term)) {
-				expr[++last] = Long.parseLong(term);
-			} else if (SPSUtility.IsValidSymbol(term)){
-				expr[++last] = SPSSymbol.Lookup(term, SPSData.lineNumber, symbolCheck);
-			} else {
-				SPSOutput.ReportError("invalid operand (" + operand + ")");
-				return 0L;
-			}
-			if ((pos == size) || idx) break;
-			
-			expr[++last] = chr;
-			++pos;
-			if (pos == size) break;
-		}
-		
-		if (idx & !indexOk) {
-			SPSOutput.ReportError("indexing not supported " + SPSUtility.Substring(operand, pos, size));
-		}
-		
-		if ((last & 0x1) == 1) {
-			SPSOutput.ReportError("invalid operand (" + operand + ")");
-			return 0L;
-		}
+	public static long EvalOperand(SPSContext ctx, String operand, int asterisk, boolean indexOk, boolean symbolCheck, StatementCheck valueCheck) {
+		return SPSExpression.Get(ctx, operand).Evaluate(ctx, asterisk, indexOk, symbolCheck, valueCheck);
+	}
 
-		int i = 1;
-		while (i < last) {
-			if (expr[i] == '*') {
-				expr[i - 1] *= expr[i + 1];
-				for (int j = i + 2; j <= last; ++j) expr[j - 2] = expr[j];
-				last -= 2;
-			} else if (expr[i] == '/') {
-				if (expr[i + 1] == 0) {
-					SPSOutput.ReportError("divide by zero");
-					return 0L;
-				}
-				expr[i - 1] /= expr[i + 1];
-				for (int j = i + 2; j <= last; ++j) expr[j - 2] = expr[j];
-				last -= 2;
-			} else {
-				i += 2;
-			}
-		}
-		
-		for (int ii = 1; ii < last; ii += 2) {
-			if (expr[ii] == '+') {
-				expr[0] += expr[ii + 1];
-			} else if (expr[ii] == '-'){
-				expr[0] -= expr[ii + 1];
-			}
-		}
-		
+	public static long CheckValue(SPSContext ctx, long value, StatementCheck valueCheck) {
 		switch (valueCheck) {
 
 			case ADDRESS:
 
-				if (expr[0] < 0L) {
-					SPSOutput.ReportError("address must be positive (" + expr[0] + ")");
-					expr[0] = -expr[0];
+				if (value < 0L) {
+					SPSOutput.ReportError(ctx, "address must be positive (" + value + ")");
+					value = -value;
 				}
-				if (expr[0] >= SPSData.memorySize) {
-					SPSOutput.ReportError("address too large (" + expr[0] + ")");
-					expr[0] = 0L;
+				if (value >= ctx.memorySize) {
+					SPSOutput.ReportError(ctx, "address too large (" + value + ")");
+					value = 0L;
 				}
 				break;
 
 			case ADDR_EVEN:
 
-				if (expr[0] < 0L) {
-					SPSOutput.ReportError("address must be positive (" + expr[0] + ")");
-					expr[0] = -expr[0];
+				if (value < 0L) {
+					SPSOutput.ReportError(ctx, "address must be positive (" + value + ")");
+					value = -value;
 				}
-				if ((expr[0] & 1L) != 0L) {
-					SPSOutput.ReportError("address must be even (" + expr[0] + ")");
-					expr[0] += 1L;
+				if ((value & 1L) != 0L) {
+					SPSOutput.ReportError(ctx, "address must be even (" + value + ")");
+					value += 1L;
 				}
-				if (expr[0] >= SPSData.memorySize) {
-					SPSOutput.ReportError("address too large (" + expr[0] + ")");
-					expr[0] = 0L;
+				if (value >= ctx.memorySize) {
+					SPSOutput.ReportError(ctx, "address too large (" + value + ")");
+					value = 0L;
 				}
 				break;
 
 			case ADDR_ODD:
 
-				if (expr[0] < 0L) {
-					SPSOutput.ReportError("address must be positive (" + expr[0] + ")");
-					expr[0] = -expr[0];
+				if (value < 0L) {
+					SPSOutput.ReportError(ctx, "address must be positive (" + value + ")");
+					value = -value;
 				}
-				if ((expr[0] & 1L) != 1L) {
-					SPSOutput.ReportError("address must be odd (" + expr[0] + ")");
-					expr[0] += 1L;
+				if ((value & 1L) != 1L) {
+					SPSOutput.ReportError(ctx, "address must be odd (" + value + ")");
+					value += 1L;
 				}
-				if (expr[0] >= SPSData.memorySize) {
-					SPSOutput.ReportError("address too large (" + expr[0] + ")");
-					expr[0] = 1L;
+				if (value >= ctx.memorySize) {
+					SPSOutput.ReportError(ctx, "address too large (" + value + ")");
+					value = 1L;
 				}
 				break;
 
 			case REFERENCE:
 
-				if (Math.abs(expr[0]) >= SPSData.memorySize) {
-					SPSOutput.ReportWarning("address too large (" + expr[0] + ")");
+				if (Math.abs(value) >= ctx.memorySize) {
+					SPSOutput.ReportWarning(ctx, "address too large (" + value + ")");
 				}
 				break;
 
 			case REF_EVEN:
 
-				if ((expr[0] >= 0L) && (expr[0] & 1L) != 0L) {
-					SPSOutput.ReportWarning("address must be even (" + expr[0] + ")");
+				if ((value >= 0L) && (value & 1L) != 0L) {
+					SPSOutput.ReportWarning(ctx, "address must be even (" + value + ")");
 				}
-				if (Math.abs(expr[0]) >= SPSData.memorySize) {
-					SPSOutput.ReportWarning("address too large (" + expr[0] + ")");
+				if (Math.abs(value) >= ctx.memorySize) {
+					SPSOutput.ReportWarning(ctx, "address too large (" + value + ")");
 				}
 				break;
 
 			case REF_ODD:
 
-				if ((expr[0] >= 0L) && (expr[0] & 1L) != 1L) {
-					SPSOutput.ReportWarning("address must be odd (" + expr[0] + ")");
+				if ((value >= 0L) && (value & 1L) != 1L) {
+					SPSOutput.ReportWarning(ctx, "address must be odd (" + value + ")");
 				}
-				if (Math.abs(expr[0]) >= SPSData.memorySize) {
-					SPSOutput.ReportWarning("address too large (" + expr[0] + ")");
+				if (Math.abs(value) >= ctx.memorySize) {
+					SPSOutput.ReportWarning(ctx, "address too large (" + value + ")");
 				}
 				break;
 
 			case VALUE:
 
-				if (Math.abs(expr[0]) > 99999L) {
-					SPSOutput.ReportError("value too large (" + expr[0] + ")");
-					expr[0] = 0L;
+				if (Math.abs(value) > 99999L) {
+					SPSOutput.ReportError(ctx, "value too large (" + value + ")");
+					value = 0L;
 				}
 				break;
 
 			case VAL_POSITIVE:
 
-				if (expr[0] < 0L) {
-					SPSOutput.ReportError("value must be positive (" + expr[0] + ")");
-					expr[0] = -expr[0];
+				if (value < 0L) {
+					SPSOutput.ReportError(ctx, "value must be positive (" + value + ")");
+					value = -value;
 				}
-				if (Math.abs(expr[0]) > 99999L) {
-					SPSOutput.ReportError("value too large (" + expr[0] + ")");
-					expr[0] = 0L;
+				if (Math.abs(value) > 99999L) {
+					SPSOutput.ReportError(ctx, "value too large (" + value + ")");
+					value = 0L;
 				}
 				break;
 
 			case VAL_DOUBLE:
 
-				if (Math.abs(expr[0]) > 9999999999L) {
-					SPSOutput.ReportError("value too large (" + expr[0] + ")");
-					expr[0] = 0L;
+				if (Math.abs(value) > 9999999999L) {
+					SPSOutput.ReportError(ctx, "value too large (" + value + ")");
+					value = 0L;
 				}
 				break;
 
 		}
 		
-		if (idx && indexOk) {
-			String str = SPSUtility.Substring(operand, pos, size);
-			if (SPSUtility.IsValidIndex(str))  {
-				SPSData.operandIndex = SPSUtility.CharAt(operand, size - 2) - '0';
-			} else {
-				SPSOutput.ReportError("invalid index " + str);
-			}
-		}
-		
-		return expr[0];
+		return value;
 	}
 
-	public static long EvalPOperand() {
+	public static long EvalPOperand(SPSContext ctx) {
 		long p = 0L;
 		
-		switch (SPSData.inputStatement.PField) {
+		switch (ctx.inputStatement.PField) {
 
 			case P_NONE:
-				if (!SPSUtility.IsEmpty(SPSData.inputOperand[0])) {
-					SPSOutput.ReportWarning("P operand is ignored (" + SPSData.inputOperand[0] + ")");
+				if (!SPSUtility.IsEmpty(ctx.inputOperand[0])) {
+					SPSOutput.ReportWarning(ctx, "P operand is ignored (" + ctx.inputOperand[0] + ")");
 				}
 				break;
 
 			case P_REFERENCE:
-				p = EvalOperand(SPSData.inputOperand[0], SPSData.address, SPSData.indexOk, false, StatementCheck.REFERENCE);
+				p = EvalOperand(ctx, ctx.inputOperand[0], ctx.address, ctx.indexOk, false, StatementCheck.REFERENCE);
 				break;
 
 			case P_REF_EVEN:
-				if (!(SPSData.inputStatement.QField == Q_REF_BIT)) {
-					if (SPSUtility.Contains(SPSData.inputOperand[2], "6")) {
-						p = EvalOperand(SPSData.inputOperand[0], SPSData.address, SPSData.indexOk, false, StatementCheck.REFERENCE);
+				if (!(ctx.inputStatement.QField == Q_REF_BIT)) {
+					if (SPSUtility.Contains(ctx.inputOperand[2], "6")) {
+						p = EvalOperand(ctx, ctx.inputOperand[0], ctx.address, ctx.indexOk, false, StatementCheck.REFERENCE);
 					} else {
-						p = EvalOperand(SPSData.inputOperand[0], SPSData.address, SPSData.indexOk, false, StatementCheck.REF_EVEN);
+						p = EvalOperand(ctx, ctx.inputOperand[0], ctx.address, ctx.indexOk, false, StatementCheck.REF_EVEN);
 					}
 				} else {
-					if (SPSUtility.Contains(SPSData.inputOperand[3], "6")) {
-						p = EvalOperand(SPSData.inputOperand[0], SPSData.address, SPSData.indexOk, false, StatementCheck.REFERENCE);
+					if (SPSUtility.Contains(ctx.inputOperand[3], "6")) {
+						p = EvalOperand(ctx, ctx.inputOperand[0], ctx.address, ctx.indexOk, false, StatementCheck.REFERENCE);
 					} else {
-						p = EvalOperand(SPSData.inputOperand[0], SPSData.address, SPSData.indexOk, false, StatementCheck.REF_EVEN);
+						p = EvalOperand(ctx, ctx.inputOperand[0], ctx.address, ctx.indexOk, false, StatementCheck.REF_EVEN);
 					}
 				}
 				break;
 
 			case P_REF_ODD:
-				if (!(SPSData.inputStatement.QField == Q_REF_BIT)) {
-					if (SPSUtility.Contains(SPSData.inputOperand[2], "6")) {
-						p = EvalOperand(SPSData.inputOperand[0], SPSData.address, SPSData.indexOk, false, StatementCheck.REFERENCE);
+				if (!(ctx.inputStatement.QField == Q_REF_BIT)) {
+					if (SPSUtility.Contains(ctx.inputOperand[2], "6")) {
+						p = EvalOperand(ctx, ctx.inputOperand[0], ctx.address, ctx.indexOk, false, StatementCheck.REFERENCE);
 					} else {
-						p = EvalOperand(SPSData.inputOperand[0], SPSData.address, SPSData.indexOk, false, StatementCheck.REF_ODD);
+						p = EvalOperand(ctx, ctx.inputOperand[0], ctx.address, ctx.indexOk, false, StatementCheck.REF_ODD);
 					}
 				} else {
-					if (SPSUtility.Contains(SPSData.inputOperand[3], "6")) {
-						p = EvalOperand(SPSData.inputOperand[0], SPSData.address, SPSData.indexOk, false, StatementCheck.REFERENCE);
+					if (SPSUtility.Contains(ctx.inputOperand[3], "6")) {
+						p = EvalOperand(ctx, ctx.inputOperand[0], ctx.address, ctx.indexOk, false, StatementCheck.REFERENCE);
 					} else {
-						p = EvalOperand(SPSData.inputOperand[0], SPSData.address, SPSData.indexOk, false, StatementCheck.REF_ODD);
+						p = EvalOperand(ctx, ctx.inputOperand[0], ctx.address, ctx.indexOk, false, StatementCheck.REF_ODD);
 					}
 				}
 				break;
 
 			case P_VALUE:
-				p = EvalOperand(SPSData.inputOperand[0], SPSData.address, SPSData.indexOk, false, StatementCheck.VALUE);
+				p = EvalOperand(ctx, ctx.inputOperand[0], ctx.address, ctx.indexOk, false, StatementCheck.VALUE);
 				break;
 		}
 
 		return p;
 	}
 
-	public static long EvalQOperand() {
+	public static long EvalQOperand(SPSContext ctx) {
 		int q;
 		int q2;
 		int d;
 		
-		switch (SPSData.inputStatement.QField) {
+		switch (ctx.inputStatement.QField) {
 
 			case Q_NONE:
-				if (!SPSUtility.IsEmpty(SPSData.inputOperand[1])) {
-					SPSOutput.ReportWarning("Q operand is ignored (" + SPSData.inputOperand[1] + ")");
+				if (!SPSUtility.IsEmpty(ctx.inputOperand[1])) {
+					SPSOutput.ReportWarning(ctx, "Q operand is ignored (" + ctx.inputOperand[1] + ")");
 				}
 				break;
 
 			case Q_REFERENCE:
-				return EvalOperand(SPSData.inputOperand[1], SPSData.address, SPSData.indexOk, false, StatementCheck.REFERENCE);
+				return EvalOperand(ctx, ctx.inputOperand[1], ctx.address, ctx.indexOk, false, StatementCheck.REFERENCE);
 
 			case Q_REF_BIT:
-				q = (int)EvalOperand(SPSData.inputOperand[1], SPSData.address, false, false, StatementCheck.NONE);
-				d = (int)EvalOperand(SPSData.inputOperand[2], 0, false, false, StatementCheck.VAL_POSITIVE) % 10;
+				q = (int)EvalOperand(ctx, ctx.inputOperand[1], ctx.address, false, false, StatementCheck.NONE);
+				d = (int)EvalOperand(ctx, ctx.inputOperand[2], 0, false, false, StatementCheck.VAL_POSITIVE) % 10;
 				q2 = Math.abs(q);
 				if (q2 < 10000) {
 					return (long)(((q >= 0) ? 1: -1) * (10000 * d + q2));
 				} else {
-					SPSOutput.ReportError("address greater than 9999 (" + q + ")");
+					SPSOutput.ReportError(ctx, "address greater than 9999 (" + q + ")");
 				}
 				break;
 
 			case Q_IMMEDIATE:
-				return EvalOperand(SPSData.inputOperand[1], SPSData.address, false, false, StatementCheck.VALUE);
+				return EvalOperand(ctx, ctx.inputOperand[1], ctx.address, false, false, StatementCheck.VALUE);
 
 			case Q_IMM_INDEX:
-				return EvalOperand(SPSData.inputOperand[1], SPSData.address, SPSData.indexOk, false, StatementCheck.VALUE);
+				return EvalOperand(ctx, ctx.inputOperand[1], ctx.address, ctx.indexOk, false, StatementCheck.VALUE);
 
 			case Q_VALUE:
-				return EvalOperand(SPSData.inputOperand[1], SPSData.address, SPSData.indexOk, false, StatementCheck.VALUE);
+				return EvalOperand(ctx, ctx.inputOperand[1], ctx.address, ctx.indexOk, false, StatementCheck.VALUE);
 		
 			case Q_SKIP:
-				q = (int)EvalOperand(SPSData.inputOperand[1], SPSData.address, false, false, StatementCheck.NONE);
+				q = (int)EvalOperand(ctx, ctx.inputOperand[1], ctx.address, false, false, StatementCheck.NONE);
 				if ((q >= 1) && (q <= 12)) {
 					return (long)SPSData.skipQField[q - 1];
 				} else {
-					SPSOutput.ReportError("skip not in range 1 - 12 (" + q + ")");
+					SPSOutput.ReportError(ctx, "skip not in range 1 - 12 (" + q + ")");
 				}
 				break;
 				
 			case Q_SKAP:
-				q = (int)EvalOperand(SPSData.inputOperand[1], SPSData.address, false, false, StatementCheck.NONE);
+				q = (int)EvalOperand(ctx, ctx.inputOperand[1], ctx.address, false, false, StatementCheck.NONE);
 				if ((q >= 1) && (q <= 12)) {
 					return (long)SPSData.skapQField[q - 1];
 				} else {
-					SPSOutput.ReportError("skip not in range 1 - 12 (" + q + ")");
+					SPSOutput.ReportError(ctx, "skip not in range 1 - 12 (" + q + ")");
 				}
 				break;
 				
 			case Q_SPIM:
-				q = (int)EvalOperand(SPSData.inputOperand[1], SPSData.address, false, false, StatementCheck.NONE);
+				q = (int)EvalOperand(ctx, ctx.inputOperand[1], ctx.address, false, false, StatementCheck.NONE);
 				if ((q >= 1) && (q <= 3)) {
 					return (long)SPSData.spimQField[q - 1];
 				} else {
-					SPSOutput.ReportError("space not in range 1 - 3 (" + q + ")");
+					SPSOutput.ReportError(ctx, "space not in range 1 - 3 (" + q + ")");
 				}
 				break;
 				
 			case Q_SPAP:
-				q = (int)EvalOperand(SPSData.inputOperand[1], SPSData.address, false, false, StatementCheck.NONE);
+				q = (int)EvalOperand(ctx, ctx.inputOperand[1], ctx.address, false, false, StatementCheck.NONE);
 				if ((q >= 1) && (q <= 3)) {
 					return (long)SPSData.spapQField[q - 1];
 				} else {
-					SPSOutput.ReportError("space not in range 1 - 13 (" + q + ")");
+					SPSOutput.ReportError(ctx, "space not in range 1 - 13 (" + q + ")");
 				}
 				break;
 
 			default:
-				if (!SPSUtility.IsEmpty(SPSData.inputOperand[1])) {
-					SPSOutput.ReportWarning("Q operand overrides default(" + SPSData.inputOperand[1] + ")");
-					return EvalOperand(SPSData.inputOperand[1], SPSData.address, false, false, StatementCheck.NONE);
+				if (!SPSUtility.IsEmpty(ctx.inputOperand[1])) {
+					SPSOutput.ReportWarning(ctx, "Q operand overrides default(" + ctx.inputOperand[1] + ")");
+					return EvalOperand(ctx, ctx.inputOperand[1], ctx.address, false, false, StatementCheck.NONE);
 				} else {
-					return SPSData.inputStatement.QField;
+					return ctx.inputStatement.QField;
 				}
 		}
 		
@@ -17,10 +17,7 @@ package SPS1620;
  *   David Wise       - IBM 1620 expert
  */
 
-import java.util.Collections;
-import java.util.LinkedList;
-import java.util.Map;
-import java.util.TreeMap;
+import java.util.Arrays;
 
 public class SPSSymbol {
 	
@@ -29,9 +26,7 @@ public class SPSSymbol {
 	public int Address;
 	public SPSStatement.StatementType Type;
 	public int Defined;
-	public LinkedList<Integer> References;
-	
-	private static Map<String, SPSSymbol> symbolTable = new TreeMap<String, SPSSymbol>();
+	public int[] References;
 	
 	// Constructor
 	
@@ -44,132 +39,187 @@ public class SPSSymbol {
 	
 	// Methods
 	
-	public static void Add(String symbol, int address, int line) {
-		if (SPSUtility.IsEmpty(symbol)) return;
-		if (!SPSUtility.IsValidLabel(symbol)) {
-			SPSOutput.ReportError("invalid label (" + symbol + ")");
-			return;
-		}
+	public static void Add(SPSContext ctx, String symbol, int address, int line) {
+		if (SPSUtility.IsEmpty(symbol) || ctx.deferLabels) return;
 		
-		String symbol2;
-		if ((SPSData.symbolHead != ' ') && (symbol.length() < 6)) {
-			symbol2 = SPSData.symbolHead + "$" + symbol;
-		} else {
-			symbol2 = symbol;
+		long key = LabelKey(ctx, symbol);
+		if (key != -1) {
+			Define(ctx, key, address, ctx.inputStatement.Type, line);
 		}
-		if (!symbolTable.containsKey(symbol2)) {
-			symbolTable.put(symbol2, new SPSSymbol(address, SPSData.inputStatement.Type, line));
-		} else {
-			SPSOutput.ReportError("duplicate label (" + symbol2 + ")");
+	}
+	
+	public static long LabelKey(SPSContext ctx, String symbol) {
+		if (!SPSUtility.IsValidLabel(ctx, symbol)) {
+			SPSOutput.ReportError(ctx, "invalid label (" + symbol + ")");
+			return -1;
+		}
+		
+		return SPSSymbolTable.Key((symbol.length() < 6) ? ctx.symbolHead : ' ', symbol, 0, symbol.length());
+	}
+	
+	public static int Define(SPSContext ctx, long key, int address, SPSStatement.StatementType type, int line) {
+		if (ctx.symbolTable.Find(key) == -1) {
+			return ctx.symbolTable.Add(key, address, type, line);
 		}
+		
+		SPSOutput.ReportError(ctx, "duplicate label (" + SPSSymbolTable.Name(key) + ")");
+		return -1;
 	}
 	
-	public static void Verify(String symbol, int line) {
+	public static void Verify(SPSContext ctx, String symbol, int line) {
 		if (SPSUtility.IsEmpty(symbol)) return;
-		if (!SPSUtility.IsValidSymbol(symbol)) {
-			SPSOutput.ReportError("invalid label (" + symbol + ")");
+		if (!SPSUtility.IsValidSymbol(ctx, symbol)) {
+			SPSOutput.ReportError(ctx, "invalid label (" + symbol + ")");
 			return;
 		}
 		
-		String symbol2;
-		if ((SPSData.symbolHead != ' ') && (symbol.length() < 6)) {
-			symbol2 = SPSData.symbolHead + "$" + symbol;
-		} else {
-			symbol2 = symbol;
+		long key = SPSSymbolTable.Key((symbol.length() < 6) ? ctx.symbolHead : ' ', symbol, 0, symbol.length());
+		int entry = ctx.symbolTable.Find(key);
+		if (ctx.onePassDefine) {
+			if (!SPSUtility.IsValidLabel(ctx, symbol)) return;
+			if (entry == -1) {
+				ctx.symbolTable.Add(key, ctx.labelAddress, ctx.inputStatement.Type, line);
+				return;
+			}
+		}
+		if (ctx.lookupLog != null) {
+			LogLookup(ctx, key, line, false);
 		}
-		if (symbolTable.containsKey(symbol2) && (symbolTable.get(symbol2).Defined != line)) {
-			SPSOutput.ReportError("duplicate label (" + symbol2 + ")");
+		if ((entry != -1) && (ctx.symbolTable.Defined(entry) != line)) {
+			SPSOutput.ReportError(ctx, "duplicate label (" + SPSSymbolTable.Name(key) + ")");
 		}
 	}
 	
-	public static int Lookup(String symbol, int line, boolean check) {
+	public static int Lookup(SPSContext ctx, String symbol, int line, boolean check) {
 		if (SPSUtility.IsEmpty(symbol)) return 0;
 		
-		String symbol2;
+		long key;
 		int pos = symbol.indexOf('$');
 		if (pos == -1) {
-			if (!SPSUtility.IsValidSymbol(symbol)) {
-				SPSOutput.ReportError("invalid symbol (" + symbol + ")");
+			if (!SPSUtility.IsValidSymbol(ctx, symbol)) {
+				SPSOutput.ReportError(ctx, "invalid symbol (" + symbol + ")");
 				return 0;
 			}
-			if ((SPSData.symbolHead != ' ') && (symbol.length() < 6)) {
-				symbol2 = SPSData.symbolHead + "$" + symbol;
-			} else {
-				symbol2 = symbol;
-			}
+			key = SPSSymbolTable.Key((symbol.length() < 6) ? ctx.symbolHead : ' ', symbol, 0, symbol.length());
 		} else if (pos == 0) {
-			symbol2 = symbol.substring(1);
+			key = SPSSymbolTable.Key(' ', symbol, 1, symbol.length());
 		} else if (pos == 1) {
 			if (!SPSUtility.IsValidHead(symbol.charAt(0))) {
-				SPSOutput.ReportError("invalid symbol head (" + symbol.charAt(0) + ")");
+				SPSOutput.ReportError(ctx, "invalid symbol head (" + symbol.charAt(0) + ")");
 				return 0;
 			}
-			String temp = symbol.substring(2);
-			if (!SPSUtility.IsValidSymbol(temp)) {
-				SPSOutput.ReportError("invalid symbol (" + temp + ")");
+			if (!SPSUtility.IsValidSymbol(ctx, symbol, 2, symbol.length())) {
+				SPSOutput.ReportError(ctx, "invalid symbol (" + symbol.substring(2) + ")");
 				return 0;
 			}
-			symbol2 = symbol;
+			key = SPSSymbolTable.Key(' ', symbol, 0, symbol.length());
 		} else {
-			SPSOutput.ReportError("invalid symbol head (" + symbol.substring(0, pos) + ")");
+			SPSOutput.ReportError(ctx, "invalid symbol head (" + symbol.substring(0, pos) + ")");
 			return 0;
 		}
 		
-		if (symbolTable.containsKey(symbol2)) {
-			SPSSymbol sym = symbolTable.get(symbol2);
-			if (check && (sym.Defined > line)) {
-				SPSOutput.ReportError("undefined [forward reference] symbol (" + symbol2 + ")");
+		return Lookup(ctx, key, symbol, pos, line, check);
+	}
+	
+	public static int Lookup(SPSContext ctx, long key, String symbol, int pos, int line, boolean check) {
+		int entry = ctx.symbolTable.Find(key);
+		if (ctx.lookupLog != null) {
+			LogLookup(ctx, key, line, (entry != -1) && !(check && (ctx.symbolTable.Defined(entry) > line)));
+		}
+		if (entry != -1) {
+			if (check && (ctx.symbolTable.Defined(entry) > line)) {
+				SPSOutput.ReportError(ctx, "undefined [forward reference] symbol (" + SPSSymbolTable.Name(key) + ")");
 				return 0;
 			}
-			if (sym.References == null) sym.References = new LinkedList<Integer>();
-			if (!sym.References.contains(line)) {
-				sym.References.add(line);
+			if (ctx.referenceLog != null) {
+				LogReference(ctx, entry, line);
+			} else {
+				ctx.symbolTable.AddReference(entry, line);
 			}
-			return sym.Address;
+			return ctx.symbolTable.Address(entry);
 		} else {
-			SPSOutput.ReportError("undefined symbol (" + symbol2 + ")");
+			ctx.unresolvedSymbol = true;
+			if (ctx.onePassDefine && (key == OwnLabelKey(ctx))) {
+				ctx.ownLabelReference = true;
+			}
+			SPSOutput.ReportError(ctx, "undefined symbol (" + Name(ctx, symbol, pos) + ")");
 			return 0;
 		}
 	}
 	
-	public static void Print() {
+	private static long OwnLabelKey(SPSContext ctx) {
+		String label = ctx.inputLabel;
+		
+		if (SPSUtility.IsEmpty(label)) return -1;
+		return SPSSymbolTable.Key((label.length() < 6) ? ctx.symbolHead : ' ', label, 0, label.length());
+	}
+	
+	private static void LogReference(SPSContext ctx, int entry, int line) {
+		if ((ctx.referenceLogLength + 2) > ctx.referenceLog.length) {
+			ctx.referenceLog = Arrays.copyOf(ctx.referenceLog, 2 * ctx.referenceLog.length);
+		}
+		ctx.referenceLog[ctx.referenceLogLength++] = entry;
+		ctx.referenceLog[ctx.referenceLogLength++] = line;
+	}
+	
+	public static void LogLookup(SPSContext ctx, long key, int line, boolean referenced) {
+		if ((ctx.lookupLogLength + 2) > ctx.lookupLog.length) {
+			ctx.lookupLog = Arrays.copyOf(ctx.lookupLog, 2 * ctx.lookupLog.length);
+		}
+		ctx.lookupLog[ctx.lookupLogLength++] = key;
+		ctx.lookupLog[ctx.lookupLogLength++] = ((long)line << 1) | (referenced ? 1 : 0);
+	}
+	
+	private static String Name(SPSContext ctx, String symbol, int pos) {
+		if (pos == 0) {
+			return symbol.substring(1);
+		} else if ((pos == -1) && (ctx.symbolHead != ' ') && (symbol.length() < 6)) {
+			return ctx.symbolHead + "$" + symbol;
+		} else {
+			return symbol;
+		}
+	}
+	
+	public static void Print(SPSContext ctx) {
 
-		if (SPSData.lstFile == null) return;
+		if (ctx.lstFile == null) return;
 		
-		SPSData.lstWriter.write("\f\n                                 Symbol Cross-Reference Table\n");
-		SPSData.lstWriter.write("                                 ============================\n");
+		ctx.lstWriter.write("\f\n                                 Symbol Cross-Reference Table\n");
+		ctx.lstWriter.write("                                 ============================\n");
 		
-		if (SPSData.sourceMultipleFiles) {
-			SPSData.lstWriter.write("\n\n  Id  Source File\n");
-			SPSData.lstWriter.write("  --  --------------------------------------------------\n");
-			for (int i = 0; i < SPSData.sourceFileCount; ++i) {
-				SPSData.lstWriter.format("  %2d  %s\n", (i + 1), SPSData.sourceFilenames[i]);
+		if (ctx.sourceMultipleFiles) {
+			ctx.lstWriter.write("\n\n  Id  Source File\n");
+			ctx.lstWriter.write("  --  --------------------------------------------------\n");
+			for (int i = 0; i < ctx.sourceFileCount; ++i) {
+				ctx.lstWriter.format("  %2d  %s\n", (i + 1), ctx.sourceFilenames[i]);
 			}
 		}
 		
-		SPSData.lstWriter.write("\n\n  Symbol   Addr.  Type    Defined  References\n");
-		SPSData.lstWriter.write("  -------  -----  ------  -------  -------------------------------------------------------------\n");
+		ctx.lstWriter.write("\n\n  Symbol   Addr.  Type    Defined  References\n");
+		ctx.lstWriter.write("  -------  -----  ------  -------  -------------------------------------------------------------\n");
 		
-		Object[] keys = symbolTable.keySet().toArray();
-		for (int i = 0; i < keys.length; ++i) {
-			SPSSymbol sym = symbolTable.get(keys[i]);
-			if (sym.Type == SPSStatement.StatementType.INSTRUCTION) {
-				SPSData.lstWriter.format("  %-7s  %05d  <inst>  %7s", keys[i], sym.Address, SPSOutput.LineNumber(sym.Defined));
+		SPSSymbolTable table = ctx.symbolTable;
+		for (int entry: table.Sorted()) {
+			String name = SPSSymbolTable.Name(table.Key(entry));
+			String defined = SPSOutput.LineNumber(ctx, table.Defined(entry));
+			if (table.Type(entry) == SPSStatement.StatementType.INSTRUCTION) {
+				ctx.lstWriter.format("  %-7s  %05d  <inst>  %7s", name, table.Address(entry), defined);
 			} else {
-				SPSData.lstWriter.format("  %-7s  %05d  %-6s  %7s", keys[i], sym.Address, sym.Type, SPSOutput.LineNumber(sym.Defined));
+				ctx.lstWriter.format("  %-7s  %05d  %-6s  %7s", name, table.Address(entry), table.Type(entry), defined);
 			}
-			if (sym.References != null) {
-				Collections.sort(sym.References);
+			int references = table.ReferenceCount(entry);
+			if (references > 0) {
 				int cnt = 0;
-				for (int line: sym.References) {
+				for (int i = 0; i < references; ++i) {
+					int line = table.Reference(entry, i);
 					if (++cnt == SPSData.SIZE_XREF_LINE) {
-						SPSData.lstWriter.write("\n                                 ");
+						ctx.lstWriter.write("\n                                 ");
 						cnt = 1;
 					}
-					SPSData.lstWriter.format("  %7s", SPSOutput.LineNumber(line));
+					ctx.lstWriter.format("  %7s", SPSOutput.LineNumber(ctx, line));
 				}
 			}
-			SPSData.lstWriter.write("\n");
+			ctx.lstWriter.write("\n");
 		}
 	}
 }
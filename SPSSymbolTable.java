@@ -0,0 +1,235 @@
+package SPS1620;
+
+/*
+ *  SPSSymbolTable.java - open addressing symbol table keyed by the packed symbol name
+ *
+ *  IBM 1620 Jr Project, Computer History Museum, 2017-2024
+ *
+ *  To recreate the experience (visual, auditory, tactile, visceral) of running historic software on a 1960s-era computer.
+ *
+ *   Dave Babcock     - project lead, software, library
+ *   John M. Bohn Jr. - software
+ *   David Brock      - CHM sponsor
+ *   Steve Casner     - hardware, software
+ *   Joe Fredrick     - hardware, firmware
+ *   Len Shustek      - CHM advisor
+ *   Dag Spicer       - CHM advisor
+ *   David Wise       - IBM 1620 expert
+ */
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/*
+ *  A symbol name, with its head if any (e.g. "A$LOOP"), is at most 7 characters from SYMBOL_CHARS.  Each
+ *  character becomes a 6-bit code, first character in the high bits and short names padded with 0, so the
+ *  packed keys sort exactly like the names themselves.  Entries are kept in parallel arrays in the order
+ *  they were added; the open addressing slots hold entry numbers plus one, 0 being an empty slot.
+ *
+ *  Line numbers only increase within a pass, so a reference is dropped only when it repeats the last one
+ *  kept for the symbol.  Both passes add references, so each list is sorted and deduplicated once when
+ *  it is asked for.
+ */
+
+public class SPSSymbolTable {
+
+	// Data
+
+	public static final String SYMBOL_CHARS = "$./0123456789=@ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+	public static final int SIZE_NAME = 7;
+
+	private static final byte[] charCode = new byte[128];
+	private static final SPSStatement.StatementType[] types = SPSStatement.StatementType.values();
+
+	static {
+		for (int i = 0; i < SYMBOL_CHARS.length(); ++i) {
+			charCode[SYMBOL_CHARS.charAt(i)] = (byte)(i + 1);
+		}
+	}
+
+	public int Count = 0;
+
+	private long[] keys = new long[64];
+	private int[] addresses = new int[64];
+	private int[] typeCodes = new int[64];
+	private int[] defined = new int[64];
+	private int[][] references = new int[64][];
+	private int[] referenceCounts = new int[64];
+	private boolean[] referencesSorted = new boolean[64];
+	private int[] slots = new int[128];
+
+	// Methods
+
+	public static long Key(char head, CharSequence symbol, int start, int end) {
+		long key = 0;
+		int length = 0;
+
+		if (head != ' ') {
+			key = (Code(head) << 6) | Code('$');
+			length = 2;
+		}
+		for (int i = start; i < end; ++i) {
+			long code = Code(symbol.charAt(i));
+			if (code == 0) return -1;
+			key = (key << 6) | code;
+			++length;
+		}
+		if ((length == 0) || (length > SIZE_NAME)) return -1;
+
+		return key << (6 * (SIZE_NAME - length));
+	}
+
+	public static long Key(char head, long key) {
+		if (head == ' ') return key;
+		return (((Code(head) << 6) | Code('$')) << (6 * (SIZE_NAME - 2))) | (key >>> 12);
+	}
+
+	public static String Name(long key) {
+		StringBuilder name = new StringBuilder(SIZE_NAME);
+		for (int shift = 6 * (SIZE_NAME - 1); shift >= 0; shift -= 6) {
+			int code = (int)(key >>> shift) & 0x3f;
+			if (code == 0) break;
+			name.append(SYMBOL_CHARS.charAt(code - 1));
+		}
+		return name.toString();
+	}
+
+	public int Find(long key) {
+		if (key <= 0) return -1;
+		int mask = slots.length - 1;
+		for (int slot = Hash(key, mask); slots[slot] != 0; slot = (slot + 1) & mask) {
+			if (keys[slots[slot] - 1] == key) return slots[slot] - 1;
+		}
+		return -1;
+	}
+
+	public int Add(long key, int address, SPSStatement.StatementType type, int line) {
+		if (Count == keys.length) {
+			keys = Arrays.copyOf(keys, 2 * Count);
+			addresses = Arrays.copyOf(addresses, 2 * Count);
+			typeCodes = Arrays.copyOf(typeCodes, 2 * Count);
+			defined = Arrays.copyOf(defined, 2 * Count);
+			references = Arrays.copyOf(references, 2 * Count);
+			referenceCounts = Arrays.copyOf(referenceCounts, 2 * Count);
+			referencesSorted = Arrays.copyOf(referencesSorted, 2 * Count);
+		}
+		if ((2 * (Count + 1)) > slots.length) {
+			Rehash(2 * slots.length);
+		}
+
+		int entry = Count++;
+		keys[entry] = key;
+		addresses[entry] = address;
+		typeCodes[entry] = type.ordinal();
+		defined[entry] = line;
+		Place(entry);
+
+		return entry;
+	}
+
+	public long Key(int entry) {
+		return keys[entry];
+	}
+
+	public int Address(int entry) {
+		return addresses[entry];
+	}
+
+	public SPSStatement.StatementType Type(int entry) {
+		return types[typeCodes[entry]];
+	}
+
+	public int Defined(int entry) {
+		return defined[entry];
+	}
+
+	public int ReferenceCount(int entry) {
+		SortReferences(entry);
+		return referenceCounts[entry];
+	}
+
+	public int Reference(int entry, int i) {
+		SortReferences(entry);
+		return references[entry][i];
+	}
+
+	public void AddReference(int entry, int line) {
+		int count = referenceCounts[entry];
+		int[] refs = references[entry];
+		if ((count > 0) && (refs[count - 1] == line)) return;
+
+		if (refs == null) {
+			refs = references[entry] = new int[4];
+		} else if (count == refs.length) {
+			refs = references[entry] = Arrays.copyOf(refs, 2 * count);
+		}
+		refs[count] = line;
+		referenceCounts[entry] = count + 1;
+		referencesSorted[entry] = false;
+	}
+
+	public int[] Sorted() {
+		long[] sorted = Arrays.copyOf(keys, Count);
+		Arrays.sort(sorted);
+
+		int[] entries = new int[Count];
+		for (int i = 0; i < Count; ++i) {
+			entries[i] = Find(sorted[i]);
+		}
+		return entries;
+	}
+
+	public Map<String, SPSSymbol> ToMap() {
+		Map<String, SPSSymbol> map = new TreeMap<String, SPSSymbol>();
+		for (int entry = 0; entry < Count; ++entry) {
+			SPSSymbol sym = new SPSSymbol(addresses[entry], Type(entry), defined[entry]);
+			if (ReferenceCount(entry) > 0) {
+				sym.References = Arrays.copyOf(references[entry], referenceCounts[entry]);
+			}
+			map.put(Name(keys[entry]), sym);
+		}
+		return map;
+	}
+
+	private static long Code(char c) {
+		return (c < 128) ? charCode[c] : 0;
+	}
+
+	private static int Hash(long key, int mask) {
+		long hash = key * 0x9e3779b97f4a7c15L;
+		return (int)(hash ^ (hash >>> 32)) & mask;
+	}
+
+	private void SortReferences(int entry) {
+		if (referencesSorted[entry]) return;
+
+		int[] refs = references[entry];
+		int count = referenceCounts[entry];
+		if (count > 1) {
+			Arrays.sort(refs, 0, count);
+			int last = 0;
+			for (int i = 1; i < count; ++i) {
+				if (refs[i] != refs[last]) refs[++last] = refs[i];
+			}
+			referenceCounts[entry] = last + 1;
+		}
+		referencesSorted[entry] = true;
+	}
+
+	private void Place(int entry) {
+		int mask = slots.length - 1;
+		int slot = Hash(keys[entry], mask);
+		while (slots[slot] != 0) {
+			slot = (slot + 1) & mask;
+		}
+		slots[slot] = entry + 1;
+	}
+
+	private void Rehash(int size) {
+		slots = new int[size];
+		for (int entry = 0; entry < Count; ++entry) {
+			Place(entry);
+		}
+	}
+}
@@ -17,10 +17,18 @@ package SPS1620;
  *   David Wise       - IBM 1620 expert
  */
 
+import java.io.File;
+
 public class SPSUtility {
 	
 	// Methods
 	
+	public static File GetFile(SPSContext ctx, String name) {
+		File file = new File(name);
+		if ((ctx.directory == null) || file.isAbsolute()) return file;
+		return new File(ctx.directory, name);
+	}
+	
 	public static boolean IsEmpty(String str) {
 		if (str == null) return true;
 		if (str.length() == 0) return true;
@@ -62,6 +70,17 @@ public class SPSUtility {
 		return nstr;
 	}
 	
+	public static String Strip(String str, int start, int end) {
+		int i = start;
+		while ((i < end) && (str.charAt(i) != ' ') && (str.charAt(i) != '\t')) ++i;
+		if (i == end) return (start == end) ? "" : str.substring(start, end);
+		StringBuilder nstr = new StringBuilder(str.substring(start, i));
+		for (; i < end; ++i) {
+			if ((str.charAt(i) != ' ') && (str.charAt(i) != '\t')) nstr.append(str.charAt(i));
+		}
+		return nstr.toString();
+	}
+	
 	public static String LTrim(String str) {
 		if (IsEmpty(str)) return "";
 		for (int i = 0; i < str.length(); ++i) {
@@ -83,13 +102,13 @@ public class SPSUtility {
 		return str.trim();
 	}
 	
-	public static String ExpandTabs(String str) {
+	public static String ExpandTabs(SPSContext ctx, String str) {
 		if (IsEmpty(str)) return "";
-		if (SPSData.sourceFormat == SPSData.SourceFormat.FIXED) return str;
+		if (ctx.sourceFormat == SPSData.SourceFormat.FIXED) return str;
 		if (str.indexOf('\t') == -1) return str;
 		
-		boolean single = (SPSData.tabTable.length == 1);
-		int tabs = SPSData.tabTable[0];
+		boolean single = (ctx.tabTable.length == 1);
+		int tabs = ctx.tabTable[0];
 		char[] chr = str.toCharArray();
 		
 		String str2 = "";
@@ -104,9 +123,9 @@ public class SPSUtility {
 			} else {
 				int pos = str2.length();
 				int spaces = 1;
-				for (int j = 0; j < SPSData.tabTable.length; ++j) {
-					if (pos < SPSData.tabTable[j]) {
-						spaces = SPSData.tabTable[j] - pos - 1;
+				for (int j = 0; j < ctx.tabTable.length; ++j) {
+					if (pos < ctx.tabTable[j]) {
+						spaces = ctx.tabTable[j] - pos - 1;
 						break;
 					}
 				}
@@ -125,15 +144,125 @@ public class SPSUtility {
 	}
 	
 	public static boolean IsValidLine(String str) {
-		return SPSData.PATTERN_LINE.matcher(str).matches();
+		return IsValidLine(str, 0, str.length());
+	}
+	
+	public static boolean IsValidLine(CharSequence str, int start, int end) {
+		return IsAll(str, start, end, SPSData.CLASS_LINE);
 	}
 	
 	public static boolean IsValidHead(char head) {
 		return (SPSData.VALID_HEAD.indexOf(head) != -1);
 	}
 	
-	public static boolean IsValidLabel(String str) {
-		if (SPSData.symbolDivide) {
+	public static boolean IsValidLabel(SPSContext ctx, String str) {
+		return IsValidLabel(ctx, str, 0, str.length());
+	}
+	
+	public static boolean IsValidLabel(SPSContext ctx, CharSequence str, int start, int end) {
+		int len = end - start;
+		return (len >= 1) && (len <= 6) && IsAll(str, start, end, ctx.symbolDivide ? SPSData.CLASS_SYMBOL : SPSData.CLASS_SYMBOLX) &&
+			   !IsAll(str, start, end, SPSData.CLASS_DIGIT);
+	}
+	
+	public static boolean IsValidSymbol(SPSContext ctx, String str) {
+		return IsValidSymbol(ctx, str, 0, str.length());
+	}
+	
+	public static boolean IsValidSymbol(SPSContext ctx, CharSequence str, int start, int end) {
+		byte cls = ctx.symbolDivide ? SPSData.CLASS_SYMBOL : SPSData.CLASS_SYMBOLX;
+		int len = end - start;
+		int body;
+		
+		if ((len >= 1) && (len <= 6) && IsAll(str, start, end, cls)) {
+			return !IsAll(str, start, end, SPSData.CLASS_DIGIT);
+		} else if ((len >= 1) && (str.charAt(start) == '$')) {
+			body = start + 1;
+		} else if ((len >= 2) && IsClass(str.charAt(start), SPSData.CLASS_ALNUM) && (str.charAt(start + 1) == '$')) {
+			body = start + 2;
+		} else {
+			return false;
+		}
+		return ((end - body) >= 1) && ((end - body) <= 5) && IsAll(str, body, end, cls);
+	}
+	
+	public static boolean IsValidNumber(String str) {
+		return IsValidNumber(str, 0, str.length());
+	}
+	
+	public static boolean IsValidNumber(CharSequence str, int start, int end) {
+		return (start < end) && IsAll(str, start, end, SPSData.CLASS_DIGIT);
+	}
+	
+	public static boolean IsValidNumberX(String str) {
+		return IsValidNumberX(str, 0, str.length());
+	}
+	
+	public static boolean IsValidNumberX(CharSequence str, int start, int end) {
+		return (start < end) && IsAll(str, start, end, SPSData.CLASS_NUMBERX);
+	}
+	
+	public static boolean IsValidAlpha(String str) {
+		return IsValidAlpha(str, 0, str.length());
+	}
+	
+	public static boolean IsValidAlpha(CharSequence str, int start, int end) {
+		return IsAll(str, start, end, SPSData.CLASS_ALPHA);
+	}
+	
+	public static boolean IsValidIndex(String str) {
+		return IsValidIndex(str, 0, str.length());
+	}
+	
+	public static boolean IsValidIndex(CharSequence str, int start, int end) {
+		int len = end - start;
+		if ((len < 3) || (len > 4) || (str.charAt(start) != '(') || (str.charAt(end - 1) != ')')) return false;
+		char digit = str.charAt(end - 2);
+		if ((digit < '0') || (digit > '7')) return false;
+		return (len == 3) || (str.charAt(start + 1) == 'A') || (str.charAt(start + 1) == 'B');
+	}
+	
+	public static boolean IsValidFlags(String str) {
+		return IsValidFlags(str, 0, str.length());
+	}
+	
+	public static boolean IsValidFlags(CharSequence str, int start, int end) {
+		return MatchFlags(str, start, end, 0);
+	}
+	
+	private static boolean MatchFlags(CharSequence str, int pos, int end, int next) {
+		if (pos == end) return true;
+		char c = str.charAt(pos);
+		for (int flag = next; flag <= 11; ++flag) {
+			if (flag < 10) {
+				if ((c == ('0' + flag)) && MatchFlags(str, pos + 1, end, flag + 1)) return true;
+			} else if ((c == '1') && ((pos + 1) < end) && (str.charAt(pos + 1) == ('0' + flag - 10)) &&
+					   MatchFlags(str, pos + 2, end, flag + 1)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private static boolean IsClass(char c, byte cls) {
+		return (c < 128) && ((SPSData.charClass[c] & cls) != 0);
+	}
+	
+	private static boolean IsAll(CharSequence str, int start, int end, byte cls) {
+		for (int i = start; i < end; ++i) {
+			if (!IsClass(str.charAt(i), cls)) return false;
+		}
+		return true;
+	}
+	
+	// Regular expression versions of the checks above, the reference SPSPatternCheck compares them against
+	
+	public static boolean IsValidLinePattern(String str) {
+		return SPSData.PATTERN_LINE.matcher(str).matches();
+	}
+	
+	public static boolean IsValidLabelPattern(SPSContext ctx, String str) {
+		if (ctx.symbolDivide) {
 			return SPSData.PATTERN_LABEL.matcher(str).matches() &&
 				   !SPSData.PATTERN_NUMBER.matcher(str).matches();
 		} else {
@@ -142,8 +271,8 @@ public class SPSUtility {
 		}
 	}
 	
-	public static boolean IsValidSymbol(String str) {
-		if (SPSData.symbolDivide) {
+	public static boolean IsValidSymbolPattern(SPSContext ctx, String str) {
+		if (ctx.symbolDivide) {
 			return (SPSData.PATTERN_SYMBOL.matcher(str).matches() ||
 				    SPSData.PATTERN_SYMBOLH.matcher(str).matches()) &&
 			       !SPSData.PATTERN_NUMBER.matcher(str).matches();
@@ -154,23 +283,23 @@ public class SPSUtility {
 		}
 	}
 	
-	public static boolean IsValidNumber(String str) {
+	public static boolean IsValidNumberPattern(String str) {
 		return SPSData.PATTERN_NUMBER.matcher(str).matches();
 	}
 	
-	public static boolean IsValidNumberX(String str) {
+	public static boolean IsValidNumberXPattern(String str) {
 		return SPSData.PATTERN_NUMBERX.matcher(str).matches();
 	}
 	
-	public static boolean IsValidAlpha(String str) {
+	public static boolean IsValidAlphaPattern(String str) {
 		return SPSData.PATTERN_ALPHA.matcher(str).matches();
 	}
 	
-	public static boolean IsValidIndex(String str) {
+	public static boolean IsValidIndexPattern(String str) {
 		return SPSData.PATTERN_INDEX.matcher(str).matches();
 	}
 	
-	public static boolean IsValidFlags(String str) {
+	public static boolean IsValidFlagsPattern(String str) {
 		return SPSData.PATTERN_FLAGS.matcher(str).matches();
 	}
 }
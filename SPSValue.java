@@ -21,26 +21,26 @@ public class SPSValue {
 	
 	// Methods
 	
-	public static void SetField(int offset, int length, boolean flag, long value) {
+	public static void SetField(SPSContext ctx, int offset, int length, boolean flag, long value) {
 		int off = offset;
 		long val = Math.abs(value);
 
 		if (length == 0) return;
 		
 		for (int i = 0; i < length; ++i) {
-			SPSData.value[off--] = (byte)(val % 10L);
+			ctx.value[off--] = (byte)(val % 10L);
 			val /= 10L;
 		}
 
-		if (value < 0) SPSData.value[offset] |= SPSData.MASK_FLAG;
-		if (flag) SPSData.value[offset - length + 1] |= SPSData.MASK_FLAG;
+		if (value < 0) ctx.value[offset] |= SPSData.MASK_FLAG;
+		if (flag) ctx.value[offset - length + 1] |= SPSData.MASK_FLAG;
 	}
 	
-	public static void SetFlags(String flags) {
+	public static void SetFlags(SPSContext ctx, String flags) {
 		if (SPSUtility.IsEmpty(flags)) return;
 		
 		if (!SPSUtility.IsValidFlags(flags)) {
-			SPSOutput.ReportError("invalid flags (" + flags + ")");
+			SPSOutput.ReportError(ctx, "invalid flags (" + flags + ")");
 			return;
 		}
 		
@@ -56,107 +56,105 @@ public class SPSValue {
 					++i;
 				}
 			}
-			SPSData.value[flag] |= SPSData.MASK_FLAG;
+			ctx.value[flag] |= SPSData.MASK_FLAG;
 		}
 	}
 	
-	public static void SetIndexFlags(int offset) {
-		if (SPSData.operandIndex == 0) return;
-		if ((SPSData.operandIndex & 0x4) != 0) SPSData.value[offset - 3] |= SPSData.MASK_FLAG;
-		if ((SPSData.operandIndex & 0x2) != 0) SPSData.value[offset - 2] |= SPSData.MASK_FLAG;
-		if ((SPSData.operandIndex & 0x1) != 0) SPSData.value[offset - 1] |= SPSData.MASK_FLAG;
+	public static void SetIndexFlags(SPSContext ctx, int offset) {
+		if (ctx.operandIndex == 0) return;
+		if ((ctx.operandIndex & 0x4) != 0) ctx.value[offset - 3] |= SPSData.MASK_FLAG;
+		if ((ctx.operandIndex & 0x2) != 0) ctx.value[offset - 2] |= SPSData.MASK_FLAG;
+		if ((ctx.operandIndex & 0x1) != 0) ctx.value[offset - 1] |= SPSData.MASK_FLAG;
 	}
 	
-	public static void SetNumValue(int length, boolean isDSC, String value) {
+	public static void SetNumValue(SPSContext ctx, int length, boolean isDSC, String value) {
 		boolean neg = SPSUtility.CharAt(value, 0) == '-';
 		boolean rm = SPSUtility.CharAt(value, value.length() - 1) == '@';
 		int first = neg ? 1 : 0;
 		int pos = length - 1;
 		int pos2 = value.length() - 1;
 		
-		SPSData.value = new byte[length];
+		ctx.value = new byte[length];
 		
 		if (rm && (pos >= 0)) {
-			SPSData.value[pos--] = SPSData.MEMORY_RM;
+			ctx.value[pos--] = SPSData.MEMORY_RM;
 			--pos2;
 		}		
 
-		if ((first <= pos2) && !(isDSC ? SPSUtility.IsValidNumberX(value.substring(first, pos2 + 1))
-									   : SPSUtility.IsValidNumber(value.substring(first, pos2 + 1)))) {
-			SPSOutput.ReportError("invalid value (" + value.substring(first, pos2 + 1) + ")");
+		if ((first <= pos2) && !(isDSC ? SPSUtility.IsValidNumberX(value, first, pos2 + 1)
+									   : SPSUtility.IsValidNumber(value, first, pos2 + 1))) {
+			SPSOutput.ReportError(ctx, "invalid value (" + value.substring(first, pos2 + 1) + ")");
 			return;
 		}
 
 		while ((pos >= 0) && (pos2 >= first)) {
 			int val = value.charAt(pos2--);
 			if ((val >= '0') && (val <= '9')) {
-				SPSData.value[pos--] = (byte)(val - '0');
+				ctx.value[pos--] = (byte)(val - '0');
 			} else if (val == ']') {
-				SPSData.value[pos--] = (byte)(0 | SPSData.MASK_FLAG);
+				ctx.value[pos--] = (byte)(0 | SPSData.MASK_FLAG);
 			} else {
-				SPSData.value[pos--] = (byte)(val - 'I' | SPSData.MASK_FLAG);
+				ctx.value[pos--] = (byte)(val - 'I' | SPSData.MASK_FLAG);
 			}
 		}
 		
 		while (pos >= 0) {
-			SPSData.value[pos--] = 0;
+			ctx.value[pos--] = 0;
 		}
 		
 		while (pos2 >= first) {
 			if (value.charAt(pos2--) != '0') {
-				SPSOutput.ReportError("value too large");
+				SPSOutput.ReportError(ctx, "value too large");
 				break;
 			}
 		}
 		
 		if (neg) {
-			if (!rm && (length > 0)) SPSData.value[length - 1] |= SPSData.MASK_FLAG;
-			if (rm && (length > 1)) SPSData.value[length - 2] |= SPSData.MASK_FLAG;
+			if (!rm && (length > 0)) ctx.value[length - 1] |= SPSData.MASK_FLAG;
+			if (rm && (length > 1)) ctx.value[length - 2] |= SPSData.MASK_FLAG;
 		}
 	}
 	
-	public static void SetAlphaValue(int length, String value) {
+	public static void SetAlphaValue(SPSContext ctx, int length, String value) {
 		boolean rm = SPSUtility.CharAt(value, value.length() - 1) == '@';
 		int pos = 0;
 		int pos2 = 0;
 		int last = 2 * (length - (rm ? 2 : 1));
 		int last2 = value.length() - (rm ? 2 : 1);
 		
-		SPSData.value = new byte[2 * length];
+		ctx.value = new byte[2 * length];
 		
-		if ((0 <= last2) && !SPSUtility.IsValidAlpha(value.substring(0, last2 + 1))) {
-			SPSOutput.ReportError("invalid value (" + value + ")");
+		if ((0 <= last2) && !SPSUtility.IsValidAlpha(value, 0, last2 + 1)) {
+			SPSOutput.ReportError(ctx, "invalid value (" + value + ")");
 			return;
 		}
 		
 		while ((pos <= last) && (pos2 <= last2)) {
 			int chr = SPSData.alphaChar[value.charAt(pos2++) & SPSData.MASK_CHARACTER];
-			SPSData.value[pos++] = (byte)(chr / 256);
-			SPSData.value[pos++] = (byte)(chr % 256);
+			ctx.value[pos++] = (byte)(chr / 256);
+			ctx.value[pos++] = (byte)(chr % 256);
 		}
 		
 		while (pos <= last) {
-			SPSData.value[pos++] = 0;
-			SPSData.value[pos++] = 0;
+			ctx.value[pos++] = 0;
+			ctx.value[pos++] = 0;
 		}
 		
 		if (rm & (length > 0)) {
-			SPSData.value[pos++] = 0;
-			SPSData.value[pos++] = SPSData.MEMORY_RM;
+			ctx.value[pos++] = 0;
+			ctx.value[pos++] = SPSData.MEMORY_RM;
 		}
 	}
 	
-	public static void StoreValue() {
-		if ((SPSData.value == null) || (SPSData.value.length == 0)) return;
+	public static void StoreValue(SPSContext ctx) {
+		if ((ctx.value == null) || (ctx.value.length == 0)) return;
 		
-		int addr = SPSData.address;
-		if ((addr < 0) || ((addr + SPSData.value.length) > SPSData.memorySize)) {
-			SPSOutput.ReportError("invalid address (" + addr + ")");
+		int addr = ctx.address;
+		if ((addr < 0) || ((addr + ctx.value.length) > ctx.memorySize)) {
+			SPSOutput.ReportError(ctx, "invalid address (" + addr + ")");
 			return;
 		}
 		
-		for (int i = 0; i < SPSData.value.length; ++i) {
-			SPSData.memory[addr++] = SPSData.value[i];
-		}
+		ctx.memory.Store(addr, ctx.value);
 	}
 }
@@ -0,0 +1,190 @@
+package SPS1620;
+
+/*
+ *  SPSWatch.java - reassembles a program whenever one of its source files is saved
+ *
+ *  IBM 1620 Jr Project, Computer History Museum, 2017-2024
+ *
+ *  To recreate the experience (visual, auditory, tactile, visceral) of running historic software on a 1960s-era computer.
+ *
+ *   Dave Babcock     - project lead, software, library
+ *   John M. Bohn Jr. - software
+ *   David Brock      - CHM sponsor
+ *   Steve Casner     - hardware, software
+ *   Joe Fredrick     - hardware, firmware
+ *   Len Shustek      - CHM advisor
+ *   Dag Spicer       - CHM advisor
+ *   David Wise       - IBM 1620 expert
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/*
+ *  Usage:   java SPS1620.SPSMain <options> <sourcefile1> ... -watch
+ *
+ *  The program is assembled once at start and again each time a source file is created or modified,
+ *  events arriving within SETTLE_TIME of each other counting as one save.  Every assembly runs in a new
+ *  SPSContext seeded from the command line, in the same JVM, so the statement table and compiled code
+ *  stay warm.  With -cache=<directory> pass 2 reads back the results of each file whose lines, and the
+ *  symbols they use, did not change instead of processing it again (see SPSFileCache); pass 1 still scans
+ *  every file.  Outputs are assembled into buffers and a file is only rewritten when its content changed,
+ *  or deleted when the assembly no longer produces it.  Each assembly prints its errors and warnings and one status line, which counts
+ *  the digits of the memory image that differ from the last assembly's (see SPSMemory.Diff).
+ */
+
+public class SPSWatch {
+
+	// Constants
+
+	private static final long SETTLE_TIME = 50;
+
+	// Data
+
+	private static SPSMemory lastMemory = null;
+
+	// Methods
+
+	public static boolean Run(SPSContext defaults) {
+		List<Path> sources = new ArrayList<Path>();
+		Set<Path> directories = new HashSet<Path>();
+
+		if (defaults.sourceFileCount == 0) {
+			SPSOutput.ReportError(defaults, "no source file");
+			return false;
+		}
+		for (int i = 0; i < defaults.sourceFileCount; ++i) {
+			String name = defaults.sourceFilenames[i].endsWith(".sps") ? defaults.sourceFilenames[i] : defaults.sourceFilenames[i] + ".sps";
+			Path source = SPSUtility.GetFile(defaults, name).toPath().toAbsolutePath().normalize();
+			sources.add(source);
+			directories.add(source.getParent());
+		}
+
+		try (WatchService watcher = FileSystems.getDefault().newWatchService()) {
+			for (Path directory: directories) {
+				directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+			}
+			System.out.println("\nWatching " + sources.size() + " source file(s), press Ctrl-C to stop\n");
+
+			Assemble(defaults);
+			while (true) {
+				WatchKey key = watcher.take();
+				boolean changed = false;
+				while (key != null) {
+					for (WatchEvent<?> event: key.pollEvents()) {
+						if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+							changed = true;
+						} else if (sources.contains(((Path)key.watchable()).resolve((Path)event.context()).normalize())) {
+							changed = true;
+						}
+					}
+					key.reset();
+					key = watcher.poll(SETTLE_TIME, TimeUnit.MILLISECONDS);
+				}
+				if (changed) {
+					Assemble(defaults);
+				}
+			}
+		} catch (IOException e) {
+			SPSOutput.ReportError(defaults, "cannot watch source files (" + e.getMessage() + ")");
+			return false;
+		} catch (InterruptedException e) {
+			return true;
+		}
+	}
+
+	public static void Assemble(SPSContext defaults) {
+		SPSContext ctx = new SPSContext(defaults);
+		ByteArrayOutputStream console = new ByteArrayOutputStream();
+		long start = System.nanoTime();
+		boolean completed;
+
+		ctx.console = new PrintStream(console, true);
+		ctx.diagnostics = new ArrayList<String>();
+		ctx.directory = defaults.directory;
+		ctx.outputBuffers = true;
+		ctx.sourceFileCount = defaults.sourceFileCount;
+		ctx.sourceFilenames = defaults.sourceFilenames.clone();
+		ctx.lstFilename = defaults.lstFilename;
+		ctx.cmemFilename = defaults.cmemFilename;
+		ctx.crdFilename = defaults.crdFilename;
+		ctx.ptFilename = defaults.ptFilename;
+		ctx.imgFilename = defaults.imgFilename;
+
+		try {
+			completed = SPSMain.Assemble(ctx);
+		} catch (RuntimeException e) {
+			ctx.diagnostics.add("Error: internal error (" + e + ")");
+			completed = false;
+		}
+
+		List<String> written = new ArrayList<String>();
+		if (completed) {
+			Update(ctx, written, "lst", ctx.lstOption, ctx.lstFilename, ctx.lstBuffer);
+			Update(ctx, written, "cmem", ctx.cmemOption, ctx.cmemFilename, ctx.cmemBuffer);
+			Update(ctx, written, "crd", ctx.crdOption, ctx.crdFilename, ctx.crdBuffer);
+			Update(ctx, written, "pt", ctx.ptOption, ctx.ptFilename, ctx.ptBuffer);
+			Update(ctx, written, "img", ctx.imgOption, ctx.imgFilename, ctx.imgBuffer);
+		}
+		long time = (System.nanoTime() - start) / 1000000;
+
+		String changed = "";
+		if (completed && (ctx.memory != null)) {
+			if (lastMemory != null) {
+				SPSRanges diff = SPSMemory.Diff(lastMemory, ctx.memory);
+				int digits = 0;
+				for (int i = 0; i < diff.Count; ++i) {
+					digits += diff.End(i) - diff.Start(i);
+				}
+				changed = digits + " digit(s) changed, ";
+			}
+			lastMemory = ctx.memory;
+		}
+
+		for (String diagnostic: ctx.diagnostics) {
+			System.out.println("*** " + diagnostic);
+		}
+		System.out.println(new SimpleDateFormat("HH:mm:ss").format(new Date()) + "  " + new File(ctx.sourceFilenames[0]).getName() + ": " +
+						   (completed ? (ctx.lineCount + " lines, " + ctx.errorCount + " error(s), " + ctx.warningCount + " warning(s), " + changed)
+									  : "not assembled, ") +
+						   (written.isEmpty() ? "no output changed" : "updated " + String.join(", ", written)) + " (" + time + " ms)");
+	}
+
+	private static void Update(SPSContext ctx, List<String> written, String kind, boolean option, String filename,
+							   ByteArrayOutputStream buffer) {
+		if (!option || (filename == null)) return;
+
+		File file = SPSUtility.GetFile(ctx, filename);
+		try {
+			if (buffer == null) {
+				if (Files.deleteIfExists(file.toPath())) {
+					written.add(kind + " (deleted)");
+				}
+				return;
+			}
+			byte[] content = buffer.toByteArray();
+			if (file.isFile() && (file.length() == content.length) && Arrays.equals(Files.readAllBytes(file.toPath()), content)) return;
+			Files.write(file.toPath(), content);
+			written.add(kind);
+		} catch (IOException e) {
+			ctx.diagnostics.add("Error: cannot write " + kind + " file (" + filename + ")");
+		}
+	}
+}
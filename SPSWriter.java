@@ -0,0 +1,126 @@
+package SPS1620;
+
+/*
+ *  SPSWriter.java - a thread that writes the listing and cmem file while pass 2 goes on
+ *
+ *  IBM 1620 Jr Project, Computer History Museum, 2017-2024
+ *
+ *  To recreate the experience (visual, auditory, tactile, visceral) of running historic software on a 1960s-era computer.
+ *
+ *   Dave Babcock     - project lead, software, library
+ *   John M. Bohn Jr. - software
+ *   David Brock      - CHM sponsor
+ *   Steve Casner     - hardware, software
+ *   Joe Fredrick     - hardware, firmware
+ *   Len Shustek      - CHM advisor
+ *   Dag Spicer       - CHM advisor
+ *   David Wise       - IBM 1620 expert
+ */
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/*
+ *  With -parallel, SPSPasses hands each finished statement to the writer as a record (see SPSRecord)
+ *  instead of writing it, and goes on with the next one.  The writer thread loads each record into its
+ *  own context, which shares the list and cmem writers, and writes it with the same SPSOutput methods
+ *  the passes use, so the files are the same byte for byte.  At most SIZE_OUTPUT_QUEUE records wait;
+ *  past that, handing one over blocks until the writer catches up.
+ *
+ *  The passes must not touch the list or cmem writer between Start and Finish.  Finish waits for every
+ *  record to be written, after which the passes write the rest of the files themselves.
+ */
+
+public class SPSWriter implements Runnable {
+
+	// Data
+
+	private static final SPSRecord END = new SPSRecord(-1);
+
+	private SPSContext view;
+	private BlockingQueue<SPSRecord> queue = new ArrayBlockingQueue<SPSRecord>(SPSData.SIZE_OUTPUT_QUEUE);
+	private Thread thread;
+	private volatile Throwable failure = null;
+
+	// Constructor
+
+	private SPSWriter(SPSContext ctx) {
+		this.view = new SPSContext(ctx);
+		this.view.pass = 2;
+		this.view.sourceFileCount = ctx.sourceFileCount;
+		this.view.sourceFilenames = ctx.sourceFilenames;
+		this.view.sourceMultipleFiles = ctx.sourceMultipleFiles;
+		this.view.lstFile = ctx.lstFile;
+		this.view.lstWriter = ctx.lstWriter;
+		this.view.cmemFile = ctx.cmemFile;
+		this.view.cmemWriter = ctx.cmemWriter;
+	}
+
+	// Methods
+
+	public static SPSWriter Start(SPSContext ctx) {
+		SPSWriter writer = new SPSWriter(ctx);
+		writer.thread = new Thread(writer, "SPS output writer");
+		writer.thread.setDaemon(true);
+		writer.thread.start();
+		return writer;
+	}
+
+	public void WriteFile(SPSContext ctx) {
+		Put(new SPSRecord(ctx.sourceCurrentFile));
+	}
+
+	public void WriteSource(SPSContext ctx, boolean cmem) {
+		Put(new SPSRecord(ctx, cmem));
+	}
+
+	public void Finish() {
+		Put(END);
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("output writer interrupted", e);
+		}
+		if (failure != null) {
+			throw new IllegalStateException("output writer failed", failure);
+		}
+	}
+
+	public void run() {
+		while (true) {
+			SPSRecord record;
+			try {
+				record = queue.take();
+			} catch (InterruptedException e) {
+				failure = e;
+				return;
+			}
+			if (record == END) return;
+			if (failure != null) continue;
+
+			try {
+				record.Load(view);
+				if (record.Statement == null) {
+					SPSOutput.PrintFile(view);
+				} else {
+					SPSOutput.WriteList(view);
+					if (record.Cmem) {
+						SPSOutput.WriteCmem(view);
+					}
+				}
+			} catch (RuntimeException e) {
+				failure = e;
+			}
+		}
+	}
+
+	private void Put(SPSRecord record) {
+		try {
+			queue.put(record);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("output writer interrupted", e);
+		}
+	}
+}
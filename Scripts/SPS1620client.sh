@@ -0,0 +1,9 @@
+#!/bin/bash
+# Thin client for a warm assembler started with:  java -jar SPS1620.jar -server=$SPS1620_SOCKET
+# Falls back to a normal run when no server is listening.
+SOCKET=${SPS1620_SOCKET:-/tmp/sps1620.sock}
+if [ -S "$SOCKET" ]; then
+	{ printf '%s' "$PWD"; printf '\t%s' "$@"; printf '\n'; } | nc -U "$SOCKET" | awk '/^END [0-9]+$/ {exit $2} {print}'
+else
+	java -jar SPS1620.jar "$@"
+fi